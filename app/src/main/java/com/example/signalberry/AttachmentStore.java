@@ -8,11 +8,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.Arrays;
 import java.util.Comparator;
 
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+
 /**
  * Disk cache for attachments: getFilesDir()/att/<sanitized-id>.
  * Byte-bounded LRU by file mtime — images 48MB, video/other 64MB, with the
@@ -71,20 +76,14 @@ final class AttachmentStore {
             return f;
         }
         File tmp = new File(dir, sanitize(attId) + ".part");
-        try {
-            HttpURLConnection c = (HttpURLConnection)
-                    new URL(baseSignal + "/v1/attachments/" + Uri.encode(attId)).openConnection();
-            c.setConnectTimeout(8000);
-            c.setReadTimeout(60000);
-            Auth.apply(c);
-            if (c.getResponseCode() != 200) { c.disconnect(); return null; }
-            try (InputStream is = c.getInputStream();
+        try (Response r = Http.client(60000).newCall(attachmentRequest(baseSignal, attId)).execute()) {
+            ResponseBody b = r.body();
+            if (r.code() != 200 || b == null) return null;
+            try (InputStream is = b.byteStream();
                  OutputStream os = new FileOutputStream(tmp)) {
                 byte[] buf = new byte[16384];
                 int n;
                 while ((n = is.read(buf)) != -1) os.write(buf, 0, n);
-            } finally {
-                c.disconnect();
             }
             if (!tmp.renameTo(f)) return null;
             evictIfNeeded();
@@ -98,24 +97,25 @@ final class AttachmentStore {
 
     /** HEAD-equivalent size probe (signal-api supports GET only; use Content-Length). */
     long remoteSize(String baseSignal, String attId) {
-        try {
-            HttpURLConnection c = (HttpURLConnection)
-                    new URL(baseSignal + "/v1/attachments/" + Uri.encode(attId)).openConnection();
-            c.setConnectTimeout(8000);
-            c.setReadTimeout(8000);
-            c.setRequestMethod("GET");
-            Auth.apply(c);
-            c.connect();
-            long len = -1;
-            if (c.getResponseCode() == 200) {
-                String h = c.getHeaderField("Content-Length");
-                if (h != null) try { len = Long.parseLong(h); } catch (NumberFormatException ignored) {}
-            }
-            c.disconnect();
-            return len;
+        // closing without reading the body drops this one socket from the pool,
+        // which is still cheaper than pulling a whole video to learn its size
+        try (Response r = Http.client().newCall(attachmentRequest(baseSignal, attId)).execute()) {
+            if (r.code() != 200) return -1;
+            String h = r.header("Content-Length");
+            if (h != null) try { return Long.parseLong(h); } catch (NumberFormatException ignored) {}
+            return -1;
         } catch (Exception e) { return -1; }
     }
 
+    /** Attachments are already-compressed media: ask for identity so OkHttp's
+     *  transparent gzip doesn't hide Content-Length or burn CPU for nothing. */
+    private static Request attachmentRequest(String baseSignal, String attId) {
+        return Http.request(baseSignal + "/v1/attachments/" + Uri.encode(attId))
+                .header("Accept-Encoding", "identity")
+                .get()
+                .build();
+    }
+
     /** Copy a picked content:// (or file://) into the store under a local key.
      *  Returns the stored file, or null. Key form: "local-<nonce>". */
     File importLocal(Uri src, String key) {
@@ -172,7 +172,8 @@ final class AttachmentStore {
     /**
      * POST /v2/send with the attachment streamed as base64 — constant memory
      * (~32KB) instead of the old 6-8x-filesize heap spike. Returns the raw
-     * response timestamp string, or null.
+     * response timestamp string, or null; a non-2xx answer throws
+     * {@link MessageSender.Rejected}.
      */
     static String sendStreaming(String baseSignal, String myNumber, String recipient,
                                 String caption, String mime, File file,
@@ -209,46 +210,36 @@ final class AttachmentStore {
             throw new IOException("body build failed", e);
         }
 
-        HttpURLConnection c = (HttpURLConnection)
-                new URL(baseSignal + "/v2/send").openConnection();
-        c.setConnectTimeout(8000);
-        c.setReadTimeout(120_000); // signal-cli decodes + dispatches before replying
-        c.setRequestMethod("POST");
-        Auth.apply(c);
-        c.setRequestProperty("Content-Type", "application/json; charset=utf-8");
-        c.setDoOutput(true);
-        c.setChunkedStreamingMode(0);
-        try {
-            OutputStream raw = c.getOutputStream();
-            raw.write(prefixJson.getBytes("UTF-8"));
-            // NO_WRAP is load-bearing: the default flag inserts raw newlines,
-            // which are illegal inside a JSON string literal
-            android.util.Base64OutputStream b64 = new android.util.Base64OutputStream(
-                    new NonClosingStream(raw), android.util.Base64.NO_WRAP);
-            try (InputStream is = new java.io.FileInputStream(file)) {
-                byte[] buf = new byte[24 * 1024 * 3]; // multiple of 3: no mid-stream padding
-                int n;
-                while ((n = is.read(buf)) != -1) b64.write(buf, 0, n);
-            }
-            b64.close(); // flushes final base64 block into raw (kept open)
-            raw.write("\"]}".getBytes("UTF-8"));
-            raw.close();
-
-            int code = c.getResponseCode();
-            if (code < 200 || code >= 300) return null;
-            try (InputStream is = c.getInputStream();
-                 java.io.ByteArrayOutputStream bos = new java.io.ByteArrayOutputStream()) {
-                byte[] buf = new byte[1024];
-                int n;
-                while ((n = is.read(buf)) != -1) bos.write(buf, 0, n);
-                String ts = new org.json.JSONObject(bos.toString("UTF-8"))
-                        .optString("timestamp", "");
-                return ts.isEmpty() ? null : ts;
-            } catch (org.json.JSONException e) {
-                return null;
+        final String prefix = prefixJson;
+        RequestBody body = new RequestBody() {
+            @Override public MediaType contentType() { return Http.JSON; }
+
+            @Override public long contentLength() { return -1; } // chunked
+
+            // may run twice if OkHttp retries on a stale pooled socket: it
+            // re-reads the file each time
+            @Override public void writeTo(BufferedSink sink) throws IOException {
+                sink.writeUtf8(prefix);
+                // NO_WRAP is load-bearing: the default flag inserts raw newlines,
+                // which are illegal inside a JSON string literal
+                android.util.Base64OutputStream b64 = new android.util.Base64OutputStream(
+                        new NonClosingStream(sink.outputStream()), android.util.Base64.NO_WRAP);
+                try (InputStream is = new java.io.FileInputStream(file)) {
+                    byte[] buf = new byte[24 * 1024 * 3]; // multiple of 3: no mid-stream padding
+                    int n;
+                    while ((n = is.read(buf)) != -1) b64.write(buf, 0, n);
+                }
+                b64.close(); // flushes final base64 block into the sink (kept open)
+                sink.writeUtf8("\"]}");
             }
-        } finally {
-            c.disconnect();
+        };
+        Request req = Http.request(baseSignal + "/v2/send").post(body).build();
+        // signal-cli decodes + dispatches before replying
+        try (Response r = Http.client(120_000).newCall(req).execute()) {
+            ResponseBody rb = r.body();
+            String resp = rb == null ? "" : rb.string();
+            if (!r.isSuccessful()) throw new MessageSender.Rejected(r.code(), resp);
+            return MessageSender.timestamp(resp);
         }
     }
 
@@ -2,8 +2,6 @@ package com.example.signalberry;
 
 import android.content.SharedPreferences;
 
-import java.net.HttpURLConnection;
-
 /**
  * Central holder for remote-access credentials. Values come from the setup
  * screen (stored in prefs, never in source — the repo is public). Attached to
@@ -29,12 +27,6 @@ final class Auth {
         cfSecret = p.getString("cf_access_secret", "");
     }
 
-    static void apply(HttpURLConnection c) {
-        if (notEmpty(bearer))   c.setRequestProperty("Authorization", "Bearer " + bearer);
-        if (notEmpty(cfId))     c.setRequestProperty("CF-Access-Client-Id", cfId);
-        if (notEmpty(cfSecret)) c.setRequestProperty("CF-Access-Client-Secret", cfSecret);
-    }
-
     static okhttp3.Request.Builder apply(okhttp3.Request.Builder b) {
         if (notEmpty(bearer))   b.header("Authorization", "Bearer " + bearer);
         if (notEmpty(cfId))     b.header("CF-Access-Client-Id", cfId);
@@ -4,16 +4,15 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.util.Log;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map;
 
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
 class AvatarCache {
 
     interface Logger { void log(String msg); }
@@ -131,21 +130,10 @@ class AvatarCache {
     }
 
     private static byte[] getBytes(String urlStr) throws Exception {
-        HttpURLConnection c = (HttpURLConnection) new URL(urlStr).openConnection();
-        c.setConnectTimeout(8000);
-        c.setReadTimeout(8000);
-        c.setRequestMethod("GET");
-        Auth.apply(c);
-        int code = c.getResponseCode();
-        if (code >= 400) { c.disconnect(); return null; }
-        try (InputStream is = c.getInputStream();
-             ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            byte[] buf = new byte[4096];
-            int n;
-            while ((n = is.read(buf)) != -1) bos.write(buf, 0, n);
-            return bos.toByteArray();
-        } finally {
-            c.disconnect();
+        try (Response r = Http.client().newCall(Http.request(urlStr).get().build()).execute()) {
+            ResponseBody b = r.body();
+            if (r.code() >= 400 || b == null) return null;
+            return b.bytes();
         }
     }
 }
@@ -0,0 +1,303 @@
+package com.example.signalberry;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * DB-backed queue of reports owed to the bridge: /v2/sent (confirmed sends,
+ * app-originated edits and remote deletes) and /v2/read-receipts. Survives
+ * process death the same way the old {@code reported} flag did (REDESIGN
+ * §2.5), but drains in batches instead of one blocking POST per message.
+ *
+ * A drain pass takes every due row in id order. /v2/sent rows go up to
+ * {@link #MAX_BATCH} per request as a JSON array (a batch of one keeps the
+ * single-object shape); a bridge that rejects arrays is remembered and fed
+ * one object per request over the same pooled connection. Receipt rows fold
+ * per peer into one /v2/read-receipts call. Delivery is ordered per peer: once
+ * a peer's row fails or is backing off, its later rows wait for the next pass,
+ * while other peers carry on. Failed rows back off exponentially with jitter.
+ */
+final class BridgeOutbox {
+
+    static final String T = "bridge_outbox";
+
+    static final String OP_SENT = "sent", OP_EDIT = "edit", OP_DELETE = "delete",
+            OP_RECEIPTS = "receipts";
+
+    /** Rows per /v2/sent request. */
+    static final int MAX_BATCH = 50;
+    /** Newest timestamps per /v2/read-receipts request (REDESIGN §3.4). */
+    static final int MAX_RECEIPTS = 25;
+    static final long BACKOFF_BASE_MS = 2_000;
+    static final long BACKOFF_MAX_MS = 5 * 60_000L;
+
+    /** The network side of a drain pass; Repo supplies it. */
+    interface Link {
+        /** POST to bridge path; @return the HTTP code. Throws when unreachable. */
+        int post(String path, String json) throws Exception;
+        /** A row reached the bridge (called before it leaves the table). */
+        void delivered(Row r);
+    }
+
+    static final class Row {
+        final long id;
+        final String op, peerKey;
+        final long serverTs;
+        final String payload;
+        final int attempts;
+        final long nextAt;
+
+        Row(long id, String op, String peerKey, long serverTs, String payload,
+            int attempts, long nextAt) {
+            this.id = id; this.op = op; this.peerKey = peerKey; this.serverTs = serverTs;
+            this.payload = payload; this.attempts = attempts; this.nextAt = nextAt;
+        }
+    }
+
+    private final MessageDatabase db;
+    private final DbWriter writer;
+    private final Random rnd = new Random();
+    /** Set after the bridge answers a batch with a client error. */
+    private volatile boolean singleOnly;
+
+    BridgeOutbox(MessageDatabase db, DbWriter writer) {
+        this.db = db;
+        this.writer = writer;
+    }
+
+    static void createTable(SQLiteDatabase d) {
+        d.execSQL("CREATE TABLE IF NOT EXISTS " + T + "(" +
+                "id        INTEGER PRIMARY KEY AUTOINCREMENT," + // delivery order
+                "op        TEXT    NOT NULL," +
+                "peer_key  TEXT    NOT NULL," +
+                "server_ts INTEGER NOT NULL," + // report target; receipts: new watermark
+                "payload   TEXT    NOT NULL," +
+                "attempts  INTEGER NOT NULL DEFAULT 0," +
+                "next_at   INTEGER NOT NULL DEFAULT 0," +
+                "UNIQUE(op, peer_key, server_ts))");
+    }
+
+    // ── enqueue and upkeep (writer thread only, see DbWriter) ─────────────────
+
+    /** Queue a report. A repeat of a queued (op, peer, ts) is dropped, except
+     *  edits, where the newer text replaces the queued one. */
+    void add(String op, String peerKey, long serverTs, JSONObject payload) {
+        ContentValues v = new ContentValues();
+        v.put("op", op);
+        v.put("peer_key", peerKey);
+        v.put("server_ts", serverTs);
+        v.put("payload", payload.toString());
+        try {
+            db.getWritableDatabase().insertWithOnConflict(T, null, v, OP_EDIT.equals(op)
+                    ? SQLiteDatabase.CONFLICT_REPLACE : SQLiteDatabase.CONFLICT_IGNORE);
+        } catch (Exception e) {
+            DebugLog.log("outbox add failed: " + e);
+        }
+    }
+
+    /** Connectivity is back: make every row due now (attempt counts are kept). */
+    void retryNow() {
+        db.getWritableDatabase().execSQL("UPDATE " + T + " SET next_at=0 WHERE next_at>0");
+    }
+
+    /** Purge: reports for wiped rows must not resurrect them on the bridge. */
+    void clear(String peerKey) {
+        if (peerKey == null) db.getWritableDatabase().delete(T, null, null);
+        else db.getWritableDatabase().delete(T, "peer_key=?", new String[]{peerKey});
+    }
+
+    /** Rows waiting for the bridge (metric). */
+    long depth() {
+        return DatabaseUtils.queryNumEntries(db.getReadableDatabase(), T);
+    }
+
+    /** When the next pass should run: the earliest next_at among the rows
+     *  that head their lane (later rows wait on them). 0 when empty. */
+    long nextDueAt() {
+        Set<String> heads = new HashSet<>();
+        long min = 0;
+        for (Row r : load()) {
+            if (!heads.add(lane(r))) continue;
+            long at = Math.max(1, r.nextAt);
+            if (min == 0 || at < min) min = at;
+        }
+        return min;
+    }
+
+    // ── drain (one thread: Repo's report lane; row writes go to the writer) ──
+
+    /** One pass over everything due. @return requests made. */
+    int drain(Link link) {
+        long now = System.currentTimeMillis();
+        List<Row> sent = new ArrayList<>();
+        Map<String, List<Row>> receipts = new LinkedHashMap<>();
+        Set<String> blocked = new HashSet<>();
+        for (Row r : load()) {
+            if (blocked.contains(lane(r))) continue;
+            if (r.nextAt > now) { blocked.add(lane(r)); continue; }
+            if (OP_RECEIPTS.equals(r.op)) {
+                List<Row> l = receipts.get(r.peerKey);
+                if (l == null) receipts.put(r.peerKey, l = new ArrayList<>());
+                l.add(r);
+            } else {
+                sent.add(r);
+            }
+        }
+        // from here on: once the bridge is unreachable, everything left backs off
+        // untried; once a lane fails, its later rows are skipped (still due —
+        // they run behind the failed head on the next pass)
+        boolean offline = false;
+        int requests = 0, delivered = 0;
+        blocked.clear();
+        for (int i = 0; i < sent.size(); i += MAX_BATCH) {
+            List<Row> batch = new ArrayList<>();
+            for (Row r : sent.subList(i, Math.min(sent.size(), i + MAX_BATCH)))
+                if (!blocked.contains(lane(r))) batch.add(r);
+            if (batch.isEmpty()) continue;
+            if (batch.size() > 1 && !singleOnly && !offline) {
+                requests++;
+                int code = post(link, "/v2/sent", sentBody(batch));
+                if (ok(code)) { delivered += done(link, batch); continue; }
+                if (code >= 400 && code < 500) {
+                    singleOnly = true;
+                    DebugLog.log("outbox: bridge refused a batch (" + code + "), reporting singly");
+                } else {
+                    offline |= code == 0;
+                    for (Row r : batch) if (blocked.add(lane(r))) fail(r);
+                    continue;
+                }
+            }
+            for (Row r : batch) {
+                if (blocked.contains(lane(r))) continue;
+                int code = 0;
+                if (!offline) { requests++; code = post(link, "/v2/sent", r.payload); }
+                if (ok(code)) {
+                    delivered += done(link, java.util.Collections.singletonList(r));
+                } else if (code == 400 || code == 422) {
+                    // the bridge rejected this row itself: retrying can't help,
+                    // and holding it would stall the peer's lane forever
+                    DebugLog.log("outbox: bridge rejected " + r.op + " " + r.serverTs + " (" + code + "), dropped");
+                    writer.call(DbWriter.Lane.BULK, () ->
+                            db.getWritableDatabase().delete(T, "id=?", new String[]{String.valueOf(r.id)}));
+                } else {
+                    offline |= code == 0;
+                    fail(r);
+                    blocked.add(lane(r));
+                }
+            }
+        }
+        for (List<Row> rows : receipts.values()) {
+            int code = 0;
+            if (!offline) { requests++; code = post(link, "/v2/read-receipts", receiptBody(rows)); }
+            if (ok(code)) {
+                delivered += done(link, rows);
+            } else {
+                offline |= code == 0;
+                for (Row r : rows) fail(r);
+            }
+        }
+        if (requests > 0)
+            DebugLog.log("outbox: " + delivered + " delivered in " + requests + " requests, depth " + depth());
+        return requests;
+    }
+
+    /** 2s, 4s, 8s … capped at 5 min; each delay drawn from [d/2, d) so a
+     *  fleet of reconnecting clients doesn't retry in lockstep. */
+    static long backoffMs(int attempts, Random rnd) {
+        int shift = Math.max(0, Math.min(attempts - 1, 20));
+        long d = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << shift);
+        return d / 2 + (long) (rnd.nextDouble() * (d / 2));
+    }
+
+    /** /v2/read-receipts for one peer: the union of its queued timestamps
+     *  (newest {@link #MAX_RECEIPTS}), recipient from the latest row. */
+    static String receiptBody(List<Row> rows) {
+        try {
+            TreeSet<Long> ts = new TreeSet<>();
+            JSONObject last = null;
+            for (Row r : rows) {
+                last = new JSONObject(r.payload);
+                JSONArray a = last.optJSONArray("timestamps");
+                if (a != null) for (int i = 0; i < a.length(); i++) ts.add(a.optLong(i));
+            }
+            while (ts.size() > MAX_RECEIPTS) ts.pollFirst();
+            last.put("timestamps", new JSONArray(ts));
+            return last.toString();
+        } catch (Exception e) {
+            return rows.get(rows.size() - 1).payload;
+        }
+    }
+
+    private static String sentBody(List<Row> batch) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(batch.get(i).payload);
+        }
+        return sb.append(']').toString();
+    }
+
+    /** Ordering domain: a peer's /v2/sent rows, or its receipt rows. */
+    private static String lane(Row r) {
+        return (OP_RECEIPTS.equals(r.op) ? "r|" : "s|") + r.peerKey;
+    }
+
+    private static boolean ok(int code) { return code >= 200 && code < 300; }
+
+    private static int post(Link link, String path, String json) {
+        try {
+            return link.post(path, json);
+        } catch (Exception e) {
+            DebugLog.log("outbox post " + path + ": " + e);
+            return 0;
+        }
+    }
+
+    private int done(Link link, List<Row> rows) {
+        return writer.call(DbWriter.Lane.BULK, () -> {
+            SQLiteDatabase d = db.getWritableDatabase();
+            for (Row r : rows) {
+                link.delivered(r);
+                d.delete(T, "id=?", new String[]{String.valueOf(r.id)});
+            }
+            return rows.size();
+        });
+    }
+
+    private void fail(Row r) {
+        int attempts = r.attempts + 1;
+        ContentValues v = new ContentValues();
+        v.put("attempts", attempts);
+        v.put("next_at", System.currentTimeMillis() + backoffMs(attempts, rnd));
+        writer.call(DbWriter.Lane.BULK, () ->
+                db.getWritableDatabase().update(T, v, "id=?", new String[]{String.valueOf(r.id)}));
+    }
+
+    private List<Row> load() {
+        List<Row> out = new ArrayList<>();
+        Cursor c = db.getReadableDatabase().rawQuery("SELECT id, op, peer_key, server_ts, "
+                + "payload, attempts, next_at FROM " + T + " ORDER BY id", null);
+        try {
+            while (c.moveToNext())
+                out.add(new Row(c.getLong(0), c.getString(1), c.getString(2), c.getLong(3),
+                        c.getString(4), c.getInt(5), c.getLong(6)));
+        } finally {
+            c.close();
+        }
+        return out;
+    }
+}
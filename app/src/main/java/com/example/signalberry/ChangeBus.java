@@ -0,0 +1,189 @@
+package com.example.signalberry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Coalescing change events between Repo and the screens. Writers record what
+ * they touched (any thread); everything recorded before the next frame is
+ * folded into one {@link Change} per peer and delivered in a single dispatch
+ * on the main thread — a catch-up moving thousands of rows costs the UI one
+ * callback per frame, not one Runnable per row.
+ *
+ * Listeners live in a copy-on-write list: registration is rare, dispatch is
+ * constant, and a listener may unregister itself mid-dispatch. A writer inside
+ * a transaction calls hold()/release() so nothing is announced before the
+ * commit.
+ */
+final class ChangeBus {
+
+    interface Listener {
+        /** Everything that changed since the previous dispatch, one entry per
+         *  peer. Main thread; the collection is only valid during the call. */
+        void onChanges(Collection<Change> changes);
+        /** Ephemeral, non-persisted event: "typing_started" | "typing_stopped",
+         *  or a queued send's failure (see Repo.sendFailed). */
+        void onEphemeral(String peerKey, String kind);
+    }
+
+    /** What happened to one thread since the last dispatch. Peer "" means
+     *  "every thread" (purge). */
+    static final class Change {
+        final String peerKey;
+        /** server_ts of existing rows that changed (status, reaction, edit,
+         *  delete, pending → confirmed at both the old -nonce and new ts). */
+        final Set<Long> changedTs = new HashSet<>();
+        /** id of newly inserted rows. */
+        final Set<Long> insertedIds = new HashSet<>();
+        /** The conversation-list entry (snippet, time, unread, order) may differ. */
+        boolean summaryChanged;
+        /** The thread changed in ways that weren't itemised (expiry,
+         *  re-key, thread delete, catch-up page): re-read it. */
+        boolean reload;
+
+        Change(String peerKey) { this.peerKey = peerKey; }
+
+        private void merge(Change o) {
+            changedTs.addAll(o.changedTs);
+            insertedIds.addAll(o.insertedIds);
+            summaryChanged |= o.summaryChanged;
+            reload |= o.reload;
+        }
+    }
+
+    /** ~one frame at 60 Hz: the window a burst is folded over. */
+    static final long FRAME_MS = 16;
+
+    private final Executor frame;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Object lock = new Object();
+    private Map<String, Change> pending = new LinkedHashMap<>();
+    private List<String[]> ephemeral = new ArrayList<>();
+    private boolean scheduled;
+    private final ThreadLocal<Map<String, Change>> held = new ThreadLocal<>();
+
+    /** @param frame runs the dispatch on the main thread, about a frame later. */
+    ChangeBus(Executor frame) { this.frame = frame; }
+
+    void addListener(Listener l)    { listeners.add(l); }
+    void removeListener(Listener l) { listeners.remove(l); }
+
+    // ── recording (any thread) ────────────────────────────────────────────────
+
+    void inserted(String peerKey, long rowId) {
+        synchronized (lock) {
+            Change c = entry(peerKey);
+            if (rowId > 0) c.insertedIds.add(rowId);
+            else c.reload = true;
+            c.summaryChanged = true;
+        }
+        schedule();
+    }
+
+    void changed(String peerKey, long serverTs, boolean summary) {
+        synchronized (lock) {
+            Change c = entry(peerKey);
+            if (serverTs != 0) c.changedTs.add(serverTs);
+            else c.reload = true;
+            c.summaryChanged |= summary;
+        }
+        schedule();
+    }
+
+    /** One event for a set of rows (a multi-select delete, a receipt batch). */
+    void changed(String peerKey, long[] serverTs, boolean summary) {
+        synchronized (lock) {
+            Change c = entry(peerKey);
+            for (long ts : serverTs) {
+                if (ts != 0) c.changedTs.add(ts);
+                else c.reload = true;
+            }
+            c.summaryChanged |= summary;
+        }
+        schedule();
+    }
+
+    /** Only the list entry moved (read marker → unread count). */
+    void summary(String peerKey) {
+        synchronized (lock) { entry(peerKey).summaryChanged = true; }
+        schedule();
+    }
+
+    void reload(String peerKey) {
+        synchronized (lock) {
+            Change c = entry(peerKey);
+            c.reload = true;
+            c.summaryChanged = true;
+        }
+        schedule();
+    }
+
+    /** Not DB state, so never held back by a transaction. */
+    void ephemeral(String peerKey, String kind) {
+        synchronized (lock) { ephemeral.add(new String[]{peerKey, kind}); }
+        post(); // even mid-hold: release() only schedules for row changes
+    }
+
+    /** Start collecting this thread's changes privately (a transaction). */
+    void hold() { held.set(new LinkedHashMap<>()); }
+
+    /** Publish what the calling thread collected since hold(). */
+    void release() {
+        Map<String, Change> mine = held.get();
+        held.remove();
+        if (mine == null || mine.isEmpty()) return;
+        synchronized (lock) {
+            for (Change c : mine.values()) entry(c.peerKey).merge(c);
+        }
+        schedule();
+    }
+
+    // ── dispatch ──────────────────────────────────────────────────────────────
+
+    /** Caller holds {@code lock}. */
+    private Change entry(String peerKey) {
+        Map<String, Change> m = held.get();
+        if (m == null) m = pending;
+        Change c = m.get(peerKey);
+        if (c == null) m.put(peerKey, c = new Change(peerKey));
+        return c;
+    }
+
+    private void schedule() {
+        if (held.get() == null) post();
+    }
+
+    private void post() {
+        synchronized (lock) {
+            if (scheduled || (pending.isEmpty() && ephemeral.isEmpty())) return;
+            scheduled = true;
+        }
+        frame.execute(this::dispatch);
+    }
+
+    /** Package-private for tests; otherwise only reached through {@code frame}. */
+    void dispatch() {
+        Map<String, Change> batch;
+        List<String[]> eph;
+        synchronized (lock) {
+            batch = pending;
+            eph = ephemeral;
+            pending = new LinkedHashMap<>();
+            ephemeral = new ArrayList<>();
+            scheduled = false;
+        }
+        Collection<Change> changes = Collections.unmodifiableCollection(batch.values());
+        for (Listener l : listeners) {
+            if (!changes.isEmpty()) l.onChanges(changes);
+            for (String[] e : eph) l.onEphemeral(e[0], e[1]);
+        }
+    }
+}
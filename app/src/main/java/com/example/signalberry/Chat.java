@@ -36,6 +36,7 @@ public class Chat extends AppCompatActivity {
 
     static final int ST_REMOTE_DELETED = MessageDatabase.ST_REMOTE_DELETED;
     static final int ST_FAILED    = MessageDatabase.ST_FAILED;
+    static final int ST_DELETED   = MessageDatabase.ST_DELETED;
     static final int ST_PENDING   = MessageDatabase.ST_PENDING;
     static final int ST_SENT      = MessageDatabase.ST_SENT;
     static final int ST_DELIVERED = MessageDatabase.ST_DELIVERED;
@@ -62,6 +63,14 @@ public class Chat extends AppCompatActivity {
     // Jump target parked across the resume-reload (gallery "View in chat")
     private long pendingJumpTs = 0;
 
+    // Thread window: rawItems is a keyset-paged slice of the thread. Older
+    // pages load as the top comes into view, newer ones (after a jump) as the
+    // bottom does; the side far from the viewport is evicted past MAX_ROWS.
+    private static final int PAGE = 100;
+    private static final int MAX_ROWS = 3 * MessageDatabase.WINDOW;
+    private static final int PAGE_EDGE = 15; // rows from an edge that trigger a page
+    private boolean hasOlder = false, hasNewer = false, pageLoading = false;
+
     // Reply state
     private MessageItem replyToItem = null;
     private long        replyToTs   = 0;
@@ -115,20 +124,51 @@ public class Chat extends AppCompatActivity {
     private android.widget.LinearLayout chatSearchBar;
     private EditText chatSearchInput;
     private android.widget.TextView chatSearchCount;
-    private final List<Integer> searchMatches = new ArrayList<>(); // displayItems positions
+    private final List<Long> searchHits = new ArrayList<>(); // serverTs, display order
     private int searchIndex = -1;
-
-    // Coalesced thread reload: listener events can burst during catch-up
+    private String searchQuery = "";
+    private int searchGen;         // drops results of superseded queries
+    private long searchJumpTs;     // hit we already loaded the full thread for
+
+    // Coalesced thread refresh: ChangeBus events name the rows that moved, so
+    // the usual refresh reads just those (a receipt = one row, one rebind).
+    // Un-itemised changes, oversized deltas and resume fall back to the page.
+    private static final int DELTA_MAX = 200;
     private boolean reloadQueued = false;
+    private boolean fullReload = true;
+    private final java.util.Set<Long> deltaIds = new java.util.HashSet<>();
+    private final java.util.Set<Long> deltaTs  = new java.util.HashSet<>();
+    /** One lane so refresh results land in the order they were read. */
+    private final java.util.concurrent.ExecutorService loadIo =
+            java.util.concurrent.Executors.newSingleThreadExecutor();
     private final Runnable reloadRun = new Runnable() {
         @Override public void run() {
             reloadQueued = false;
-            new Thread(() -> {
-                final List<MessageItem> fresh = repo.getThread(chatDbKey);
+            final boolean full = fullReload || deltaIds.size() + deltaTs.size() > DELTA_MAX;
+            final java.util.Set<Long> ids = new java.util.HashSet<>(deltaIds);
+            final java.util.Set<Long> tss = new java.util.HashSet<>(deltaTs);
+            fullReload = false;
+            deltaIds.clear();
+            deltaTs.clear();
+            // a full re-read keeps the window where it is: from its oldest row,
+            // through the newest while live, else the same number of rows
+            final MessageItem from = rawItems.isEmpty() ? null : rawItems.get(0);
+            final int span = rawItems.size();
+            final boolean detached = hasNewer;
+            loadIo.execute(() -> {
+                final List<MessageItem> fresh = !full ? repo.getThreadDelta(chatDbKey, ids, tss)
+                        : from == null ? repo.getThread(chatDbKey)
+                        : repo.getThreadAfter(chatDbKey, orderTs(from), from.id - 1, detached ? span : 0);
                 resolveAuthors(fresh);
                 runOnUiThread(() -> {
-                    rawItems.clear();
-                    rawItems.addAll(fresh);
+                    if (full) {
+                        if (from == null) hasOlder = fresh.size() == MessageDatabase.WINDOW;
+                        rawItems.clear();
+                        rawItems.addAll(fresh);
+                    } else {
+                        applyDelta(fresh, ids, tss);
+                    }
+                    trimWindow();
                     rebuildDisplay();
                     advanceReadWatermark();
                     repo.queueReadReceipts(chatDbKey,
@@ -139,19 +179,24 @@ public class Chat extends AppCompatActivity {
                         jumpToMessage(ts);
                     }
                 });
-            }).start();
+            });
         }
     };
 
-    private final Repo.Listener repoListener = new Repo.Listener() {
-        @Override public void onItemInserted(String peerKey) {
-            if (chatDbKey.equals(peerKey)) scheduleReload();
-        }
-        @Override public void onItemChanged(String peerKey, long serverTs) {
-            if (chatDbKey.equals(peerKey)) scheduleReload();
+    private final ChangeBus.Listener repoListener = new ChangeBus.Listener() {
+        @Override public void onChanges(java.util.Collection<ChangeBus.Change> changes) {
+            for (ChangeBus.Change c : changes) {
+                if (!chatDbKey.equals(c.peerKey)) continue;
+                if (c.reload) fullReload = true;
+                deltaIds.addAll(c.insertedIds);
+                deltaTs.addAll(c.changedTs);
+                if (c.reload || !c.insertedIds.isEmpty() || !c.changedTs.isEmpty())
+                    scheduleReload();
+            }
         }
         @Override public void onEphemeral(String peerKey, String kind) {
-            if (!chatDbKey.equals(peerKey) || tvTyping == null) return;
+            if (!chatDbKey.equals(peerKey)) return;
+            if (onSendEvent(kind) || tvTyping == null) return;
             handler.removeCallbacks(typingHideRun);
             if ("typing_started".equals(kind)) {
                 tvTyping.setText(peerName + " is typing…");
@@ -185,6 +230,8 @@ public class Chat extends AppCompatActivity {
         if (peerName == null || peerName.isEmpty())
             peerName = notEmpty(peerNumber) ? peerNumber : notEmpty(peerUuid) ? peerUuid : "Chat";
 
+        // global search hit: reloadRun jumps there once the first page is in
+        pendingJumpTs = getIntent().getLongExtra("jump_ts", 0);
         String groupKey = getIntent().getStringExtra("peer_group");
         isGroup = notEmpty(groupKey);
         if (!notEmpty(ipPref) || !notEmpty(myNumber)
@@ -201,10 +248,10 @@ public class Chat extends AppCompatActivity {
                 ? "group." + android.util.Base64.encodeToString(
                         groupKey.substring("group:".length()).getBytes(), android.util.Base64.NO_WRAP)
                 : (notEmpty(peerNumber) ? peerNumber : peerUuid);
-        openReadTs = prefs.getLong("read_ts_" + chatDbKey, 0);
+        openReadTs = repo.peerState.readTs(chatDbKey);
         // self thread is "Note to Self"; a local alias overrides everything
         if (notEmpty(myNumber) && chatDbKey.equals(digits(myNumber))) peerName = "Note to Self";
-        String alias = prefs.getString("alias_" + chatDbKey, "");
+        String alias = repo.peerState.alias(chatDbKey);
         if (notEmpty(alias)) peerName = alias;
 
         // Debug log
@@ -294,13 +341,17 @@ public class Chat extends AppCompatActivity {
         btnJumpBottom = findViewById(R.id.btn_jump_bottom);
         tvJumpUnread  = findViewById(R.id.tv_jump_unread);
         btnJumpBottom.setOnClickListener(v -> {
+            if (hasNewer) { loadNewest(); return; }
             recycler.scrollToPosition(Math.max(0, displayItems.size() - 1));
             setAtBottom(true);
         });
         recycler.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override public void onScrolled(RecyclerView rv, int dx, int dy) {
+                int first = lm.findFirstVisibleItemPosition();
                 int last = lm.findLastVisibleItemPosition();
-                setAtBottom(last >= displayItems.size() - 2);
+                setAtBottom(!hasNewer && last >= displayItems.size() - 2);
+                if (dy < 0 && hasOlder && first >= 0 && first < PAGE_EDGE) loadOlder();
+                if (dy > 0 && hasNewer && last >= displayItems.size() - PAGE_EDGE) loadNewer();
             }
         });
 
@@ -311,15 +362,6 @@ public class Chat extends AppCompatActivity {
         findViewById(R.id.btn_chat_search).setOnClickListener(v -> {
             chatSearchBar.setVisibility(android.view.View.VISIBLE);
             chatSearchInput.requestFocus();
-            new Thread(() -> { // search needs the WHOLE history, not the 300-row page
-                final List<MessageItem> full = repo.getThreadFull(chatDbKey);
-                resolveAuthors(full);
-                runOnUiThread(() -> {
-                    rawItems.clear();
-                    rawItems.addAll(full);
-                    rebuildDisplay();
-                });
-            }).start();
         });
         findViewById(R.id.btn_search_close).setOnClickListener(v -> closeSearch());
         findViewById(R.id.btn_search_up).setOnClickListener(v -> stepSearch(-1));
@@ -489,6 +531,7 @@ public class Chat extends AppCompatActivity {
             repo.addListener(repoListener);
             // service owns the socket; we just ask for a catch-up on open
             new Thread(repo::catchUp, "chat-catchup").start();
+            fullReload = true; // events while paused were not collected
             scheduleReload();
         }
         if (!selectionMode) {
@@ -521,6 +564,7 @@ public class Chat extends AppCompatActivity {
     @Override protected void onDestroy() {
         super.onDestroy();
         DebugLog.unregister(debugListener);
+        loadIo.shutdown();
     }
 
     /** Read watermark = max server_ts actually SEEN (at bottom) — never the wall
@@ -548,27 +592,33 @@ public class Chat extends AppCompatActivity {
                    : (replyItem.text != null ? replyItem.text : ""));
         final String qa = replyItem == null ? null : replyItem.from;
 
-        final long nonce = repo.beginSend(chatDbKey, "text", text, null, null, null,
-                replyTs, qt, qa);
-        if (nonce <= 0) { Toast.makeText(this, "Send failed", Toast.LENGTH_SHORT).show(); return; }
-
-        new Thread(() -> {
-            String tsRaw = sendOnce(text, replyItem, replyTs, mentions);
-            if (tsRaw != null) {
-                repo.confirmSend(chatDbKey, nonce, tsRaw, "text", text, null, null,
-                        replyTs, qt, qa);
-            } else {
-                repo.failSend(chatDbKey, nonce);
-                final String err = MessageSender.lastError();
-                runOnUiThread(() -> {
-                    if (err != null && err.toLowerCase(java.util.Locale.US).contains("untrusted")) {
-                        promptTrustIdentity();
-                    } else {
-                        Toast.makeText(Chat.this, "Send failed, tap the message to retry", Toast.LENGTH_SHORT).show();
-                    }
-                });
-            }
-        }).start();
+        // queued, not sent here: Repo's send queue owns delivery and retries,
+        // and reports the outcome back through onSendEvent
+        long nonce = -1;
+        try {
+            MessageSender sender = new MessageSender(baseSignal, myNumber, sendRecipient);
+            JSONObject body = sender.body(text);
+            sender.addQuote(body, replyItem, replyTs, replyItem == null ? null : replyItem.author);
+            MessageSender.addMentions(body, mentions);
+            nonce = repo.queueText(chatDbKey, sendRecipient, text, body, replyTs, qt, qa);
+        } catch (Exception ignored) {}
+        if (nonce <= 0) Toast.makeText(this, "Send failed", Toast.LENGTH_SHORT).show();
+    }
+
+    /** Outcome of a queued send for this chat (Repo ephemeral). @return true if handled. */
+    private boolean onSendEvent(String kind) {
+        if ("send_untrusted".equals(kind)) {
+            promptTrustIdentity();
+        } else if ("send_failed".equals(kind)) {
+            Toast.makeText(this, "Send failed, tap the message to retry", Toast.LENGTH_SHORT).show();
+        } else if ("edit_failed".equals(kind)) {
+            Toast.makeText(this, "Edit failed", Toast.LENGTH_SHORT).show();
+        } else if ("reaction_failed".equals(kind)) {
+            Toast.makeText(this, "Reaction failed", Toast.LENGTH_SHORT).show();
+        } else {
+            return false;
+        }
+        return true;
     }
 
     /** The peer's safety number changed (new device/reinstall) — sends fail
@@ -628,37 +678,9 @@ public class Chat extends AppCompatActivity {
         final String mime = isEmpty(failed.mime) ? "application/octet-stream" : failed.mime;
         final String kind = failed.msgType;
         final String cap  = failed.caption;
-        final String recipient = sendRecipient;
         final java.io.File f = new java.io.File(path.startsWith("file://") ? path.substring(7) : path);
         if (!f.exists()) { Toast.makeText(this, "Original file no longer available", Toast.LENGTH_SHORT).show(); return; }
-        final long nonce = repo.beginSend(chatDbKey, kind, null, mime, cap, path, 0, null, null);
-        if (nonce <= 0) return;
-        new Thread(() -> {
-            try {
-                String tsRaw = AttachmentStore.sendStreaming(baseSignal, myNumber, recipient,
-                        cap, mime, f, null, null, null);
-                if (tsRaw != null) repo.confirmSend(chatDbKey, nonce, tsRaw, kind, cap, null, mime, 0, null, null);
-                else repo.failSend(chatDbKey, nonce);
-            } catch (Exception e) {
-                repo.failSend(chatDbKey, nonce);
-            }
-        }).start();
-    }
-
-    /** POST /v2/send; returns the raw timestamp string from the response
-     *  (string or number per M1 — never parsed here), or null on failure. */
-    private String sendOnce(String text, MessageItem replyTo, long replyTs) {
-        return sendOnce(text, replyTo, replyTs, null);
-    }
-
-    private String sendOnce(String text, MessageItem replyTo, long replyTs, JSONArray mentions) {
-        try {
-            MessageSender sender = new MessageSender(baseSignal, myNumber, sendRecipient);
-            JSONObject body = sender.body(text);
-            sender.addQuote(body, replyTo, replyTs, replyTo == null ? null : replyTo.author);
-            MessageSender.addMentions(body, mentions);
-            return sender.send(body, 8000);
-        } catch (Exception e) { return null; }
+        repo.queueMedia(chatDbKey, sendRecipient, kind, mime, cap, f.getAbsolutePath());
     }
 
     // -------------------- ATTACHMENT PICK --------------------
@@ -735,16 +757,15 @@ public class Chat extends AppCompatActivity {
                 }
                 String cap = captions != null && i < captions.size() ? captions.get(i) : null;
                 if (cap != null && cap.isEmpty()) cap = null;
-                // sendStoredFile blocks, so the batch goes out sequentially
+                // queued in pick order; the peer's send lane keeps that order
                 sendStoredFile(stored, mime, kind, cap);
             }
         }).start();
     }
 
-    /** Send an attachment already copied into the store. Blocking — call off
-     *  the main thread. Shared by the media picker and voice recording. */
+    /** Queue an attachment already copied into the store. Any thread. Shared
+     *  by the media picker and voice recording. */
     private void sendStoredFile(java.io.File stored, String mime, String kind, String caption) {
-        final String recipient = sendRecipient;
         long cap_bytes = "image".equals(kind)
                 ? AttachmentStore.MAX_IMAGE_BYTES : AttachmentStore.MAX_MEDIA_BYTES;
         if (stored.length() > cap_bytes) {
@@ -756,28 +777,11 @@ public class Chat extends AppCompatActivity {
             return;
         }
 
-        final String storedPath = stored.getAbsolutePath();
-        final long nonce = repo.beginSend(chatDbKey, kind, null, mime, caption, storedPath, 0, null, null);
-        if (nonce <= 0) {
+        // 2. the queue streams it up (REDESIGN §3.5) and retries across restarts
+        long nonce = repo.queueMedia(chatDbKey, sendRecipient, kind, mime, caption,
+                stored.getAbsolutePath());
+        if (nonce <= 0)
             runOnUiThread(() -> Toast.makeText(this, "Send failed", Toast.LENGTH_SHORT).show());
-            return;
-        }
-
-        try {
-            // 2. constant-memory streaming upload (REDESIGN §3.5)
-            String tsRaw = AttachmentStore.sendStreaming(baseSignal, myNumber, recipient,
-                    caption == null ? "" : caption, mime, stored, null, null, null);
-            if (tsRaw != null) {
-                repo.confirmSend(chatDbKey, nonce, tsRaw, kind, caption, null, mime, 0, null, null);
-            } else {
-                repo.failSend(chatDbKey, nonce);
-                runOnUiThread(() ->
-                        Toast.makeText(this, "Failed to send attachment", Toast.LENGTH_SHORT).show());
-            }
-        } catch (Exception e) {
-            repo.failSend(chatDbKey, nonce);
-            runOnUiThread(() -> Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show());
-        }
     }
 
     // -------------------- VOICE MESSAGES --------------------
@@ -1009,7 +1013,7 @@ public class Chat extends AppCompatActivity {
                     String name;
                     if (key.equals(selfKey)) name = "You";
                     else {
-                        name = prefs.getString("alias_" + key, "");
+                        name = repo.peerState.alias(key);
                         if (isEmpty(name)) name = prefs.getString("contact_name_" + key, "");
                         if (isEmpty(name)) name = id;
                     }
@@ -1047,7 +1051,7 @@ public class Chat extends AppCompatActivity {
             if (isEmpty(it.author) || !"peer".equals(it.from)) continue;
             String name = authorNames.get(it.author);
             if (name == null) {
-                name = prefs.getString("alias_" + it.author, "");
+                name = repo.peerState.alias(it.author);
                 if (isEmpty(name)) name = prefs.getString("contact_name_" + it.author, "");
                 if (isEmpty(name)) {
                     // uuid-keyed stranger: show a short stable handle
@@ -1302,8 +1306,61 @@ public class Chat extends AppCompatActivity {
         } catch (Exception ignored) {}
     }
 
+    // -------------------- delta refresh --------------------
+
+    /** Same order as MessageDatabase.getMessages: display_ts (pendings at
+     *  their send moment), then row id. */
+    private static long orderTs(MessageItem m) { return m.displayTs(); }
+
+    private static final java.util.Comparator<MessageItem> THREAD_ORDER = (a, b) -> {
+        int c = Long.compare(orderTs(a), orderTs(b));
+        return c != 0 ? c : Long.compare(a.id, b.id);
+    };
+
+    /** Patch rawItems from a delta read: rows replace their id's slot (a new
+     *  instance, so only that bubble rebinds), tombstones and vanished ts (a
+     *  pending merged into its echo) drop out, new rows join if they fall
+     *  inside the loaded window. Re-sorts only when needed. */
+    private void applyDelta(List<MessageItem> rows, java.util.Set<Long> ids,
+                            java.util.Set<Long> askedTs) {
+        java.util.Map<Long, Integer> slot = new java.util.HashMap<>();
+        for (int i = 0; i < rawItems.size(); i++) slot.put(rawItems.get(i).id, i);
+        // a row beyond an edge that still has unloaded pages would open a gap
+        // in the window; it arrives with its page instead
+        long windowStart = rawItems.isEmpty() || !hasOlder ? Long.MIN_VALUE : orderTs(rawItems.get(0));
+        long windowEnd = rawItems.isEmpty() || !hasNewer ? Long.MAX_VALUE
+                : orderTs(rawItems.get(rawItems.size() - 1));
+        java.util.Set<Long> seenTs = new java.util.HashSet<>();
+        boolean reshaped = false;
+        for (MessageItem r : rows) {
+            seenTs.add(r.serverTs);
+            seenTs.add(r.lastEditTs);
+            Integer i = slot.get(r.id);
+            if (r.status == ST_DELETED) {
+                if (i != null) { rawItems.set(i, null); reshaped = true; }
+            } else if (i != null) {
+                if (orderTs(rawItems.get(i)) != orderTs(r)) reshaped = true;
+                rawItems.set(i, r);
+            } else if (orderTs(r) >= windowStart && orderTs(r) <= windowEnd) {
+                rawItems.add(r);
+                reshaped = true;
+            }
+        }
+        for (long ts : askedTs) {
+            if (seenTs.contains(ts)) continue;
+            for (int i = 0; i < rawItems.size(); i++) {
+                MessageItem m = rawItems.get(i);
+                if (m != null && m.serverTs == ts) { rawItems.set(i, null); reshaped = true; }
+            }
+        }
+        if (!reshaped) return;
+        rawItems.removeAll(java.util.Collections.singleton((MessageItem) null));
+        java.util.Collections.sort(rawItems, THREAD_ORDER);
+    }
+
     // -------------------- display rebuild (inserts date headers) --------------------
     private void rebuildDisplay() {
+        List<MessageItem> before = new ArrayList<>(displayItems);
         displayItems.clear();
         String lastDayKey = null;
         for (MessageItem m : rawItems) {
@@ -1311,7 +1368,9 @@ public class Chat extends AppCompatActivity {
             if (ts <= 0) ts = System.currentTimeMillis();
             String dk = dayKey(ts);
             if (!dk.equals(lastDayKey)) {
-                displayItems.add(new MessageItem(dateLabel(ts), true));
+                MessageItem header = new MessageItem(dateLabel(ts), true);
+                header.id = dayId(ts);
+                displayItems.add(header);
                 lastDayKey = dk;
             }
             displayItems.add(m);
@@ -1329,10 +1388,12 @@ public class Chat extends AppCompatActivity {
                 for (MessageItem m : displayItems)
                     if (m.type != MessageItem.TYPE_DATE_HEADER && "peer".equals(m.from)
                             && m.serverTs > openReadTs) n++;
-                displayItems.add(firstUnreadPos, new MessageItem(n + " unread", true));
+                MessageItem divider = new MessageItem(n + " unread", true);
+                divider.id = -1;
+                displayItems.add(firstUnreadPos, divider);
             }
         }
-        chatAdapter.notifyDataSetChanged();
+        chatAdapter.dispatchUpdate(before);
         if (displayItems.isEmpty()) { firstLoad = false; return; }
         if (firstLoad && firstUnreadPos > 0) {
             atBottom = false;
@@ -1379,46 +1440,59 @@ public class Chat extends AppCompatActivity {
     private void closeSearch() {
         chatSearchBar.setVisibility(android.view.View.GONE);
         chatSearchInput.setText("");
-        searchMatches.clear();
+        searchGen++;
+        searchHits.clear();
         searchIndex = -1;
+        searchQuery = "";
         chatAdapter.setHighlightTs(0);
         chatAdapter.notifyDataSetChanged();
     }
 
+    /** Hits come from the FTS index (whole history, nothing loaded); a hit
+     *  outside the loaded page is reached through jumpToMessage. Re-running
+     *  the same query (rebuildDisplay) keeps the current hit selected. */
     private void runSearch(String q) {
-        searchMatches.clear();
-        searchIndex = -1;
-        String ql = q.toLowerCase(java.util.Locale.US).trim();
-        if (ql.length() >= 2) {
-            for (int i = 0; i < displayItems.size(); i++) {
-                MessageItem m = displayItems.get(i);
-                if (m.type == MessageItem.TYPE_DATE_HEADER || m.status == ST_REMOTE_DELETED) continue;
-                String hay = m.text != null ? m.text : m.caption;
-                if (hay != null && hay.toLowerCase(java.util.Locale.US).contains(ql))
-                    searchMatches.add(i);
-            }
-        }
-        if (searchMatches.isEmpty()) {
-            chatSearchCount.setText(ql.length() >= 2 ? "0" : "");
-            chatAdapter.setHighlightTs(0);
-            chatAdapter.notifyDataSetChanged();
-        } else {
-            searchIndex = searchMatches.size() - 1; // newest match first
-            showSearchMatch();
-        }
+        final String query = q.trim();
+        final int gen = ++searchGen;
+        final long keepTs = query.equals(searchQuery) && searchIndex >= 0
+                && searchIndex < searchHits.size() ? searchHits.get(searchIndex) : 0;
+        loadIo.execute(() -> {
+            final List<Long> hits = repo.db.searchThread(chatDbKey, query);
+            runOnUiThread(() -> {
+                if (gen != searchGen) return;
+                searchQuery = query;
+                searchHits.clear();
+                searchHits.addAll(hits);
+                searchIndex = -1;
+                if (searchHits.isEmpty()) {
+                    chatSearchCount.setText(SearchIndex.matchQuery(query) != null ? "0" : "");
+                    chatAdapter.setHighlightTs(0);
+                    chatAdapter.notifyDataSetChanged();
+                    return;
+                }
+                int keep = keepTs != 0 ? searchHits.indexOf(keepTs) : -1;
+                searchIndex = keep >= 0 ? keep : searchHits.size() - 1; // newest match first
+                showSearchMatch();
+            });
+        });
     }
 
     private void stepSearch(int delta) {
-        if (searchMatches.isEmpty()) return;
-        searchIndex = (searchIndex + delta + searchMatches.size()) % searchMatches.size();
+        if (searchHits.isEmpty()) return;
+        searchIndex = (searchIndex + delta + searchHits.size()) % searchHits.size();
         showSearchMatch();
     }
 
     private void showSearchMatch() {
-        int pos = searchMatches.get(searchIndex);
-        chatSearchCount.setText((searchIndex + 1) + "/" + searchMatches.size());
-        MessageItem m = displayItems.get(pos);
-        chatAdapter.setHighlightTs(m.serverTs);
+        long ts = searchHits.get(searchIndex);
+        chatSearchCount.setText((searchIndex + 1) + "/" + searchHits.size());
+        int pos = findDisplayPos(ts);
+        if (pos < 0) {
+            // once per hit: if even the full thread lacks it, don't reload forever
+            if (ts != searchJumpTs) { searchJumpTs = ts; jumpToMessage(ts); }
+            return;
+        }
+        chatAdapter.setHighlightTs(ts);
         chatAdapter.notifyDataSetChanged();
         recycler.scrollToPosition(pos);
     }
@@ -1434,23 +1508,102 @@ public class Chat extends AppCompatActivity {
     }
 
     /** Scroll to the message with this timestamp and flash-highlight it. If it
-     *  isn't in the current 300-row page, reload the full thread first. */
+     *  isn't in the loaded window, load the window around it instead. */
     void jumpToMessage(long ts) {
         int pos = findDisplayPos(ts);
         if (pos >= 0) { revealMessage(pos, ts); return; }
-        new Thread(() -> {
-            final List<MessageItem> full = repo.getThreadFull(chatDbKey);
-            resolveAuthors(full);
+        loadIo.execute(() -> {
+            final android.util.Pair<List<MessageItem>, boolean[]> around =
+                    repo.getThreadAround(chatDbKey, ts, MessageDatabase.WINDOW);
+            resolveAuthors(around.first);
             runOnUiThread(() -> {
+                if (around.first.isEmpty()) {
+                    Toast.makeText(this, "Original message not found", Toast.LENGTH_SHORT).show();
+                    return;
+                }
                 rawItems.clear();
-                rawItems.addAll(full);
+                rawItems.addAll(around.first);
+                hasOlder = around.second[0];
+                hasNewer = around.second[1];
                 atBottom = false; // keep rebuildDisplay from snapping to the end
                 rebuildDisplay();
                 int p = findDisplayPos(ts);
                 if (p >= 0) revealMessage(p, ts);
-                else Toast.makeText(this, "Original message not found", Toast.LENGTH_SHORT).show();
             });
-        }).start();
+        });
+    }
+
+    // -------------------- window paging --------------------
+
+    private void loadOlder() {
+        if (pageLoading || rawItems.isEmpty()) return;
+        pageLoading = true;
+        final MessageItem top = rawItems.get(0);
+        loadIo.execute(() -> {
+            final List<MessageItem> page = repo.getThreadBefore(chatDbKey, orderTs(top), top.id, PAGE);
+            resolveAuthors(page);
+            runOnUiThread(() -> {
+                pageLoading = false;
+                if (rawItems.isEmpty() || rawItems.get(0) != top) return; // window replaced meanwhile
+                hasOlder = page.size() == PAGE;
+                rawItems.addAll(0, page);
+                trimWindow();
+                rebuildDisplay();
+            });
+        });
+    }
+
+    private void loadNewer() {
+        if (pageLoading || rawItems.isEmpty()) return;
+        pageLoading = true;
+        final MessageItem bottom = rawItems.get(rawItems.size() - 1);
+        loadIo.execute(() -> {
+            final List<MessageItem> page = repo.getThreadAfter(chatDbKey, orderTs(bottom), bottom.id, PAGE);
+            resolveAuthors(page);
+            runOnUiThread(() -> {
+                pageLoading = false;
+                if (rawItems.isEmpty() || rawItems.get(rawItems.size() - 1) != bottom) return;
+                hasNewer = page.size() == PAGE;
+                rawItems.addAll(page);
+                trimWindow();
+                rebuildDisplay();
+            });
+        });
+    }
+
+    /** Jump-to-bottom from a detached window: back to the live newest page. */
+    private void loadNewest() {
+        loadIo.execute(() -> {
+            final List<MessageItem> fresh = repo.getThread(chatDbKey);
+            resolveAuthors(fresh);
+            runOnUiThread(() -> {
+                rawItems.clear();
+                rawItems.addAll(fresh);
+                hasOlder = fresh.size() == MessageDatabase.WINDOW;
+                hasNewer = false;
+                atBottom = true;
+                rebuildDisplay();
+                advanceReadWatermark();
+                updateJumpButton();
+            });
+        });
+    }
+
+    /** Past MAX_ROWS, drop rows from whichever end is farther from what's on
+     *  screen; that end then has a page to load again. */
+    private void trimWindow() {
+        int excess = rawItems.size() - MAX_ROWS;
+        if (excess <= 0) return;
+        LinearLayoutManager lm = (LinearLayoutManager) recycler.getLayoutManager();
+        int first = lm == null ? -1 : lm.findFirstVisibleItemPosition();
+        boolean viewingTop = !atBottom && first >= 0 && first < displayItems.size() / 2;
+        if (viewingTop) {
+            rawItems.subList(rawItems.size() - excess, rawItems.size()).clear();
+            hasNewer = true;
+        } else {
+            rawItems.subList(0, excess).clear();
+            hasOlder = true;
+        }
     }
 
     private void revealMessage(int pos, long ts) {
@@ -1479,6 +1632,13 @@ public class Chat extends AppCompatActivity {
         return c.get(java.util.Calendar.YEAR) + "-" + c.get(java.util.Calendar.DAY_OF_YEAR);
     }
 
+    /** Stable adapter id for a date header: negative, never a row id or -1. */
+    private static long dayId(long ts) {
+        java.util.Calendar c = java.util.Calendar.getInstance();
+        c.setTimeInMillis(ts);
+        return -(c.get(java.util.Calendar.YEAR) * 1000L + c.get(java.util.Calendar.DAY_OF_YEAR));
+    }
+
     private static String dateLabel(long ts) {
         java.util.Calendar msg  = java.util.Calendar.getInstance();
         java.util.Calendar now  = java.util.Calendar.getInstance();
@@ -1518,7 +1678,8 @@ public class Chat extends AppCompatActivity {
             return;
         }
 
-        String myCurrentReaction = (m.reactions != null) ? m.reactions.get("me") : null;
+        java.util.Map<String, String> reactions = m.reactions();
+        String myCurrentReaction = (reactions != null) ? reactions.get("me") : null;
         boolean canEdit = "me".equals(m.from) && m.type == MessageItem.TYPE_TEXT && m.serverTs > 0;
         boolean selfThread = notEmpty(myNumber) && notEmpty(peerNumber)
                 && digits(myNumber).equals(digits(peerNumber));
@@ -1780,25 +1941,14 @@ public class Chat extends AppCompatActivity {
     }
 
     private void sendEdit(MessageItem original, String newText) {
-        new Thread(() -> {
-            try {
-                MessageSender sender = new MessageSender(baseSignal, myNumber, sendRecipient);
-                JSONObject body = sender.body(newText);
-                long editTs = original.lastEditTs > 0 ? original.lastEditTs : original.serverTs;
-                MessageSender.asEdit(body, editTs);
-                String tsRaw = sender.send(body, 8000);
-                final long newEditTs = tsRaw == null ? 0 : parseLongSafe(tsRaw);
-                final long prevTs = editTs;
-                runOnUiThread(() -> {
-                    if (tsRaw != null) {
-                        repo.applyLocalEdit(chatDbKey, prevTs, newText, newEditTs);
-                        repo.reportEdit(chatDbKey, prevTs, newText, newEditTs);
-                    } else {
-                        Toast.makeText(Chat.this, "Edit failed", Toast.LENGTH_SHORT).show();
-                    }
-                });
-            } catch (Exception ignored) {}
-        }).start();
+        try {
+            MessageSender sender = new MessageSender(baseSignal, myNumber, sendRecipient);
+            JSONObject body = sender.body(newText);
+            long editTs = original.lastEditTs > 0 ? original.lastEditTs : original.serverTs;
+            MessageSender.asEdit(body, editTs);
+            // applied locally (and reported) once signal-api accepts it
+            repo.queueEdit(chatDbKey, sendRecipient, body, editTs, newText);
+        } catch (Exception ignored) {}
     }
 
     private void confirmRemoteDelete(MessageItem m) {
@@ -1884,33 +2034,18 @@ public class Chat extends AppCompatActivity {
     }
 
     private void sendReaction(String emoji, MessageItem target, boolean isRemove) {
-        repo.sendLocalReaction(chatDbKey, target.serverTs, emoji, isRemove);
-        new Thread(() -> {
-            try {
-                String peer = sendRecipient;
-                String targetAuthor;
-                if ("me".equals(target.from)) {
-                    targetAuthor = notEmpty(myNumber) ? myNumber : peer;
-                } else if (isGroup && notEmpty(target.author)) {
-                    // group rows know their author (digits key or uuid)
-                    targetAuthor = target.author.matches("\\d+")
-                            ? "+" + target.author : target.author;
-                } else {
-                    targetAuthor = peer;
-                }
-                JSONObject body = new JSONObject();
-                body.put("recipient", peer);
-                body.put("reaction", emoji);
-                body.put("target_author", targetAuthor);
-                body.put("timestamp", target.serverTs);
-                String url = baseSignal + "/v1/reactions/" + URLEncoder.encode(myNumber, "UTF-8");
-                int code = isRemove ? httpDeleteJson(url, body.toString())
-                                   : httpPostJson(url, body.toString());
-                if (code < 200 || code >= 300)
-                    runOnUiThread(() ->
-                            Toast.makeText(Chat.this, "Reaction failed", Toast.LENGTH_SHORT).show());
-            } catch (Exception ignored) {}
-        }).start();
+        String peer = sendRecipient;
+        String targetAuthor;
+        if ("me".equals(target.from)) {
+            targetAuthor = notEmpty(myNumber) ? myNumber : peer;
+        } else if (isGroup && notEmpty(target.author)) {
+            // group rows know their author (digits key or uuid)
+            targetAuthor = target.author.matches("\\d+")
+                    ? "+" + target.author : target.author;
+        } else {
+            targetAuthor = peer;
+        }
+        repo.queueReaction(chatDbKey, peer, target.serverTs, emoji, targetAuthor, isRemove);
     }
 
     // -------------------- history --------------------
@@ -1918,6 +2053,7 @@ public class Chat extends AppCompatActivity {
         if (demoMode) {
             rawItems.clear();
             rawItems.addAll(DemoData.getFakeMessages(demoIndex));
+            for (int i = 0; i < rawItems.size(); i++) rawItems.get(i).id = i + 1; // stable ids
             rebuildDisplay();
             return;
         }
@@ -1925,45 +2061,13 @@ public class Chat extends AppCompatActivity {
         if (!stored.isEmpty()) {
             rawItems.clear();
             rawItems.addAll(stored);
+            hasOlder = stored.size() == MessageDatabase.WINDOW;
             rebuildDisplay();
             return;
         }
 
-        // DB empty — migrate from old SharedPreferences JSON (pre-DB builds)
-        String histKey = "chat_hist_" + chatDbKey;
-        try {
-            String raw = prefs.getString(histKey, "[]");
-            JSONArray arr = new JSONArray(raw);
-            if (arr.length() == 0) return;
-            for (int i = 0; i < arr.length(); i++) {
-                JSONObject o   = arr.getJSONObject(i);
-                String from    = o.optString("from", "peer");
-                int status     = o.optInt("status", ST_DELIVERED);
-                String type    = o.optString("type", "text");
-                long   sTs     = o.optLong("serverTs", 0);
-                String qt      = o.optString("quoteText", "");
-                String qa      = o.optString("quoteAuthor", "peer");
-                String dir     = "me".equals(from) ? "out" : "in";
-                if ("image".equals(type)) {
-                    String cid     = o.optString("attId", "");
-                    String mime    = o.optString("mime", "");
-                    String caption = o.optString("caption", "");
-                    String locUri  = o.optString("localUri", "");
-                    repo.db.upsert(chatDbKey, dir, "image", null,
-                            cid.isEmpty() ? null : cid, mime,
-                            caption.isEmpty() ? null : caption,
-                            locUri.isEmpty() ? null : locUri,
-                            sTs, status, qt.isEmpty() ? null : qt, qa.isEmpty() ? null : qa);
-                } else {
-                    String text = o.optString("text", "");
-                    repo.db.upsert(chatDbKey, dir, "text", text, null, null, null, null,
-                            sTs, status, qt.isEmpty() ? null : qt, qa.isEmpty() ? null : qa);
-                }
-            }
-            prefs.edit().remove(histKey).apply();
-            rawItems.clear();
-            rawItems.addAll(repo.getThread(chatDbKey));
-            rebuildDisplay();
-        } catch (Exception ignored) {}
+        // DB empty — migrate from old SharedPreferences JSON (pre-DB builds);
+        // the rows arrive through the bus like any other write
+        repo.importLegacyHistory(chatDbKey);
     }
 }
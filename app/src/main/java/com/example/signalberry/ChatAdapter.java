@@ -16,8 +16,6 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.List;
 
 class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
@@ -66,6 +64,35 @@ class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         this.data = data;
         this.restBase = restBase;
         this.loader = new ImageLoader(ctx);
+        setHasStableIds(true);
+    }
+
+    /** Row id for messages, a per-day negative id for headers (see Chat). */
+    @Override public long getItemId(int position) { return data.get(position).id; }
+
+    /** Range notifications for the difference between {@code before} and the
+     *  current list: one common prefix and suffix (same instance, or the same
+     *  header), everything between rebinds/inserts/removes. Chat replaces only
+     *  the MessageItems that changed, so a receipt rebinds one bubble and a new
+     *  message inserts one row. */
+    void dispatchUpdate(List<MessageItem> before) {
+        int n0 = before.size(), n1 = data.size();
+        int pre = 0;
+        while (pre < n0 && pre < n1 && same(before.get(pre), data.get(pre))) pre++;
+        int suf = 0;
+        while (suf < n0 - pre && suf < n1 - pre
+                && same(before.get(n0 - 1 - suf), data.get(n1 - 1 - suf))) suf++;
+        int oldMid = n0 - pre - suf, newMid = n1 - pre - suf;
+        int common = Math.min(oldMid, newMid);
+        if (common > 0) notifyItemRangeChanged(pre, common);
+        if (newMid > common) notifyItemRangeInserted(pre + common, newMid - common);
+        else if (oldMid > common) notifyItemRangeRemoved(pre + common, oldMid - common);
+    }
+
+    private static boolean same(MessageItem a, MessageItem b) {
+        if (a == b) return true;
+        return a.type == MessageItem.TYPE_DATE_HEADER && b.type == MessageItem.TYPE_DATE_HEADER
+                && a.id == b.id && a.dateLabel.equals(b.dateLabel);
     }
 
     void setOnImageClickListener(OnImageClickListener l) { this.imageClickListener = l; }
@@ -109,11 +136,19 @@ class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         if (h instanceof DateHeaderVH) { ((DateHeaderVH) h).bind(m); return; }
         // static VHs can't reach the adapter — resolve the quote header here
         if (m.quoteText != null && !m.quoteText.isEmpty()) m.quoteAuthorName = quoteName(m);
+        // range notifications don't rebind shifted rows: resolve the position
+        // at click time, never capture the bind-time one
         h.itemView.setOnClickListener(v -> {
-            if (itemClickListener != null) itemClickListener.onItemClick(pos);
+            int p = h.getAdapterPosition();
+            if (p != RecyclerView.NO_POSITION && itemClickListener != null)
+                itemClickListener.onItemClick(p);
         });
         h.itemView.setOnLongClickListener(v -> {
-            if (longPressListener != null) { longPressListener.onLongPress(pos); return true; }
+            int p = h.getAdapterPosition();
+            if (p != RecyclerView.NO_POSITION && longPressListener != null) {
+                longPressListener.onLongPress(p);
+                return true;
+            }
             return false;
         });
         View qb = h.itemView.findViewById(R.id.quoteBlock);
@@ -130,11 +165,15 @@ class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         boolean highlighted = highlightTs != 0 && m.serverTs == highlightTs;
         h.itemView.setBackgroundColor(selected ? 0x331976D2
                 : highlighted ? 0x33FFC107 : android.graphics.Color.TRANSPARENT);
+        OnImageClickListener img = imageClickListener == null ? null : ignored -> {
+            int p = h.getAdapterPosition();
+            if (p != RecyclerView.NO_POSITION) imageClickListener.onImageClick(p);
+        };
         if (h instanceof AudioVH)          ((AudioVH) h).bind(m);
         else if (h instanceof MeTextVH)    ((MeTextVH) h).bind(m);
         else if (h instanceof PeerTextVH)  ((PeerTextVH) h).bind(m);
-        else if (h instanceof MeImageVH)   ((MeImageVH) h).bind(m, loader, restBase, pos, imageClickListener);
-        else if (h instanceof PeerImageVH) ((PeerImageVH) h).bind(m, loader, restBase, pos, imageClickListener);
+        else if (h instanceof MeImageVH)   ((MeImageVH) h).bind(m, loader, restBase, pos, img);
+        else if (h instanceof PeerImageVH) ((PeerImageVH) h).bind(m, loader, restBase, pos, img);
     }
 
     @Override public int getItemCount() { return data.size(); }
@@ -442,12 +481,13 @@ class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     }
 
     private static void bindReactions(MessageItem m, TextView tv) {
-        if (m.reactions == null || m.reactions.isEmpty()) {
+        java.util.Map<String, String> reactions = m.reactions();
+        if (reactions == null) {
             tv.setVisibility(View.GONE);
             return;
         }
         StringBuilder sb = new StringBuilder();
-        for (String emoji : m.reactions.values()) sb.append(emoji);
+        for (String emoji : reactions.values()) sb.append(emoji);
         tv.setText(sb.toString());
         tv.setVisibility(View.VISIBLE);
     }
@@ -636,13 +676,12 @@ class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
                             new java.io.FileInputStream(tag));
                 }
                 // plain http(s) (legacy rows)
-                HttpURLConnection c = (HttpURLConnection) new URL(tag).openConnection();
-                c.setConnectTimeout(8000);
-                c.setReadTimeout(15000);
-                if (c.getResponseCode() != 200) { c.disconnect(); return null; }
-                try {
+                okhttp3.Request req = new okhttp3.Request.Builder().url(tag).get().build();
+                try (okhttp3.Response r = Http.client(15000).newCall(req).execute()) {
+                    okhttp3.ResponseBody b = r.body();
+                    if (r.code() != 200 || b == null) return null;
                     java.io.File tmp = java.io.File.createTempFile("img", null, ctx.getCacheDir());
-                    try (InputStream is = c.getInputStream();
+                    try (InputStream is = b.byteStream();
                          java.io.OutputStream os = new java.io.FileOutputStream(tmp)) {
                         byte[] buf = new byte[16384]; int n;
                         while ((n = is.read(buf)) != -1) os.write(buf, 0, n);
@@ -652,8 +691,6 @@ class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
                     //noinspection ResultOfMethodCallIgnored
                     tmp.delete();
                     return out;
-                } finally {
-                    c.disconnect();
                 }
             } catch (Exception e) {
                 return null;
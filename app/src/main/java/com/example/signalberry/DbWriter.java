@@ -0,0 +1,132 @@
+package com.example.signalberry;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one thread that writes messages.db. Repo hands it commands instead of
+ * taking a shared monitor: the UI enqueues and returns, the socket and feed
+ * threads wait on a Future, and nobody convoys on a lock while a catch-up
+ * page holds it.
+ *
+ * Commands drain by lane, FIFO within a lane — a tap on send runs next even
+ * with a hundred catch-up slices queued (it still waits out the one running).
+ * A command may call back into Repo: {@link #call} from the writer thread
+ * runs inline rather than deadlocking on its own queue.
+ */
+final class DbWriter {
+
+    /** Drain order. */
+    enum Lane {
+        /** Local actions: sends, deletes, reactions, read markers. */
+        USER,
+        /** Live socket traffic and send outcomes. */
+        LIVE,
+        /** Coalesced delivery/read receipts — behind every new message row. */
+        RECEIPT,
+        /** Catch-up pages, re-keys, expiry, init. */
+        BULK
+    }
+
+    private static final class Cmd<T> extends FutureTask<T> implements Comparable<Cmd<?>> {
+        final Lane lane;
+        final long seq;
+
+        Cmd(Lane lane, long seq, Callable<T> c) {
+            super(c);
+            this.lane = lane;
+            this.seq = seq;
+        }
+
+        @Override public int compareTo(Cmd<?> o) {
+            int d = lane.compareTo(o.lane);
+            return d != 0 ? d : Long.compare(seq, o.seq);
+        }
+    }
+
+    private final PriorityBlockingQueue<Cmd<?>> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong seq = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    DbWriter() {
+        thread = new Thread(this::loop, "db-writer");
+        thread.start();
+    }
+
+    private void loop() {
+        while (!closed) {
+            Cmd<?> c;
+            try {
+                c = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            c.run(); // a FutureTask keeps its own failure for whoever waits
+        }
+        dropQueued();
+    }
+
+    boolean onWriter() { return Thread.currentThread() == thread; }
+
+    <T> Future<T> submit(Lane lane, Callable<T> task) {
+        if (closed) throw new RejectedExecutionException("db writer shut down");
+        Cmd<T> c = new Cmd<>(lane, seq.incrementAndGet(), task);
+        queue.add(c);
+        return c;
+    }
+
+    /** Fire-and-forget; a failure is logged, since no one is waiting for it. */
+    void execute(Lane lane, Runnable task) {
+        try {
+            submit(lane, () -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    DebugLog.log("db write failed: " + e);
+                }
+                return null;
+            });
+        } catch (RejectedExecutionException ignored) {} // after Repo.reset()
+    }
+
+    /** Run and wait (inline when already on the writer). Never from the main thread. */
+    <T> T call(Lane lane, Callable<T> task) {
+        try {
+            if (onWriter()) return task.call();
+            return submit(lane, task).get();
+        } catch (ExecutionException e) {
+            throw unchecked(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted waiting for db writer", e);
+        } catch (Exception e) {
+            throw unchecked(e);
+        }
+    }
+
+    /** Queued commands are cancelled (their waiters see that); the one
+     *  running finishes. */
+    void shutdown() {
+        closed = true;
+        dropQueued();
+        thread.interrupt();
+    }
+
+    private void dropQueued() {
+        java.util.List<Cmd<?>> dropped = new java.util.ArrayList<>();
+        queue.drainTo(dropped);
+        for (Cmd<?> c : dropped) c.cancel(false);
+    }
+
+    private static RuntimeException unchecked(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new RuntimeException(t);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.signalberry;
+
+import android.os.Handler;
+
+/**
+ * Wakes Repo at the next disappearing-message deadline — and only then.
+ * Holds the earliest armed expire_at and one pending Handler callback for it;
+ * every arm reports its deadline here (pulling the wake-up in if earlier),
+ * every expiry pass reports the store's new earliest one. No periodic sweep.
+ *
+ * Handler delays run on uptime, which stops while the device sleeps; a
+ * deadline passed in sleep fires at the next {@link #poke}, called on the
+ * paths a user needs to see the thread (ingest, read markers).
+ */
+final class ExpiryTimer {
+
+    private final Handler handler;
+    private final Runnable fire;
+    private long nextAt; // wall-clock ms, 0 = nothing armed
+
+    /** @param due runs on the handler's thread when the deadline passes;
+     *             must hand the work off and call {@link #reset} after. */
+    ExpiryTimer(Handler handler, Runnable due) {
+        this.handler = handler;
+        this.fire = () -> {
+            synchronized (this) { nextAt = 0; }
+            due.run();
+        };
+    }
+
+    /** A row was armed for {@code at}: wake earlier if it beats the current deadline. */
+    synchronized void offer(long at) {
+        if (at <= 0 || (nextAt > 0 && nextAt <= at)) return;
+        post(at);
+    }
+
+    /** The store's earliest deadline after an expiry pass (0 = none left). */
+    synchronized void reset(long at) {
+        handler.removeCallbacks(fire);
+        nextAt = 0;
+        if (at > 0) post(at);
+    }
+
+    /** Fire now if the deadline already passed (device slept through it). */
+    synchronized void poke() {
+        if (nextAt > 0 && nextAt <= System.currentTimeMillis()) {
+            handler.removeCallbacks(fire);
+            handler.post(fire);
+        }
+    }
+
+    synchronized void cancel() {
+        handler.removeCallbacks(fire);
+        nextAt = 0;
+    }
+
+    private void post(long at) {
+        handler.removeCallbacks(fire);
+        nextAt = at;
+        handler.postDelayed(fire, Math.max(0, at - System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.signalberry;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+
+/**
+ * The one HTTP client for the whole process. Every REST and bridge call goes
+ * through the same OkHttp connection pool, so the report/receipt/typing
+ * chatter and attachment traffic reuse kept-alive sockets and resumed TLS
+ * sessions instead of paying a TCP + Conscrypt handshake per request — on a
+ * Q10 through Cloudflare that handshake costs more than most of the bodies.
+ *
+ * OkHttp adds Accept-Encoding: gzip and unzips transparently, so JSON
+ * responses shrink on the wire with no caller changes. Calls that need a
+ * different timeout use {@link #client(int)}: a newBuilder() copy that keeps
+ * the shared pool and dispatcher.
+ */
+final class Http {
+
+    static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private static final int TIMEOUT_MS = 8000;
+
+    private static volatile OkHttpClient shared;
+
+    private Http() {}
+
+    static OkHttpClient client() {
+        OkHttpClient c = shared;
+        if (c == null) {
+            synchronized (Http.class) {
+                c = shared;
+                if (c == null) {
+                    c = new OkHttpClient.Builder()
+                            .connectTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                            .readTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                            .writeTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                            // a handful of hosts (bridge + signal-api): keep idle
+                            // sockets long enough to span a screen's worth of calls
+                            .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                            .build();
+                    shared = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /** Same pool, different read/write timeout (uploads, attachment fetches). */
+    static OkHttpClient client(int timeoutMs) {
+        if (timeoutMs == TIMEOUT_MS) return client();
+        return client().newBuilder()
+                .readTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /** Request builder for {@code url} with the auth headers attached. */
+    static Request.Builder request(String url) {
+        return Auth.apply(new Request.Builder().url(url));
+    }
+
+    static RequestBody json(String json) {
+        return RequestBody.create(JSON, json);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.signalberry;
+
+/**
+ * Pairing for the §3.6 step 5b image-twin merge (see MessageDatabase
+ * mergeImageTwins): a local send row and its sync-echo row, matched by
+ * timestamp proximity. Sorted two-pointer — the old nested loop was
+ * O(locals × echoes) over every outgoing image.
+ */
+final class ImageTwins {
+
+    /** Farthest a local row's wall clock and its echo's Signal ts drift apart. */
+    static final long WINDOW_MS = 120_000;
+
+    private ImageTwins() {}
+
+    /** Greedy nearest-echo pairing over two ascending ts arrays: each local, in
+     *  order, takes the closest unconsumed echo within {@code windowMs} (earlier
+     *  echo on a tie). A low pointer walks past echoes that fell out of the
+     *  window, so the scan per local is the window, not the whole list.
+     *  @return per local, the paired echo index or -1. */
+    static int[] pair(long[] locals, long[] echoes, long windowMs) {
+        int[] pair = new int[locals.length];
+        boolean[] used = new boolean[echoes.length];
+        int lo = 0;
+        for (int i = 0; i < locals.length; i++) {
+            long ts = locals[i];
+            while (lo < echoes.length && (used[lo] || echoes[lo] < ts - windowMs)) lo++;
+            int best = -1;
+            long bestDelta = Long.MAX_VALUE;
+            for (int j = lo; j < echoes.length && echoes[j] <= ts + windowMs; j++) {
+                if (used[j]) continue;
+                long delta = Math.abs(ts - echoes[j]);
+                if (delta < bestDelta) { best = j; bestDelta = delta; }
+                else if (delta > bestDelta) break; // ascending: past the nearest, only farther
+            }
+            pair[i] = best;
+            if (best >= 0) used[best] = true;
+        }
+        return pair;
+    }
+}
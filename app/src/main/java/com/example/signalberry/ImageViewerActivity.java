@@ -25,8 +25,6 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
 
 /**
@@ -250,19 +248,18 @@ public class ImageViewerActivity extends AppCompatActivity {
                         new java.io.FileInputStream(f));
             }
             // other http(s): cache through a temp file so we can double-pass decode
-            HttpURLConnection c = (HttpURLConnection) new URL(src).openConnection();
-            c.setConnectTimeout(10000);
-            c.setReadTimeout(30000);
-            Auth.apply(c);
-            if (c.getResponseCode() != 200) { c.disconnect(); return null; }
-            File tmp = File.createTempFile("viewer", null, ctx.getCacheDir());
-            try (InputStream is = c.getInputStream();
-                 OutputStream os = new FileOutputStream(tmp)) {
-                byte[] buf = new byte[16384];
-                int n;
-                while ((n = is.read(buf)) != -1) os.write(buf, 0, n);
-            } finally {
-                c.disconnect();
+            File tmp;
+            okhttp3.Request req = Http.request(src).get().build();
+            try (okhttp3.Response r = Http.client(30000).newCall(req).execute()) {
+                okhttp3.ResponseBody b = r.body();
+                if (r.code() != 200 || b == null) return null;
+                tmp = File.createTempFile("viewer", null, ctx.getCacheDir());
+                try (InputStream is = b.byteStream();
+                     OutputStream os = new FileOutputStream(tmp)) {
+                    byte[] buf = new byte[16384];
+                    int n;
+                    while ((n = is.read(buf)) != -1) os.write(buf, 0, n);
+                }
             }
             Bitmap out = decodeBounded(new java.io.FileInputStream(tmp),
                     new java.io.FileInputStream(tmp));
@@ -0,0 +1,246 @@
+package com.example.signalberry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Raw socket frames between the WebSocket reader and the ingest worker. The
+ * reader only appends — no decode, no SQLite — so it keeps reading at line
+ * rate and answering pings however far behind ingest is.
+ *
+ * Bounded in memory; the overflow policy is spill, never drop: once
+ * {@code capacity} frames are waiting, new frames append to a journal file
+ * and keep doing so until the worker has consumed the whole journal, so arrival
+ * order holds (memory is always older than the journal). Frames, memory or
+ * journal, leave only when the worker {@link #ack}s the batch that carried
+ * them, i.e. after its commit; a failed batch is {@link #unpoll}ed and comes
+ * back first. A journal left by a killed process is replayed from the start
+ * on the next one — ingest is idempotent by identity, so frames applied
+ * twice change nothing.
+ *
+ * Record format: arrival ms (long), length (int), UTF-8 bytes. Each record is
+ * flushed before it counts, so the journal never holds a counted frame that
+ * isn't on disk. A torn tail record (killed mid-write) is ignored.
+ */
+final class IngestQueue {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int HEADER = 12;
+
+    private final File journal;
+    private final int capacity;
+
+    private final ArrayDeque<String> mem = new ArrayDeque<>();
+    private final ArrayDeque<Long> memTs = new ArrayDeque<>();
+    private DataOutputStream out;     // open while spilling
+    private boolean spilling;
+    private long written, readPos;    // journal bytes appended / acked
+    private int journalCount;         // records not yet acked
+    private int pendingMem;           // head of mem handed out by the last poll, awaiting ack()
+    private long pendingPos;          // journal read by the last poll, awaiting ack()
+    private int pendingCount;
+    private long pendingNextTs;
+    private long journalHeadTs;       // arrival of the next unread record
+    private long spilledTotal;
+
+    IngestQueue(File journal, int capacity) {
+        this.journal = journal;
+        this.capacity = capacity;
+        recover();
+    }
+
+    /** Reader thread. Never blocks on the worker. @return false only if the
+     *  journal write failed (disk full) — the frame is then held in memory. */
+    synchronized boolean offer(String frame, long now) {
+        if (!spilling && mem.size() < capacity) {
+            push(frame, now);
+            return true;
+        }
+        try {
+            if (out == null)
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal, true)));
+            byte[] b = frame.getBytes(UTF8);
+            out.writeLong(now);
+            out.writeInt(b.length);
+            out.write(b);
+            out.flush(); // written counts only bytes that reached the file
+            if (journalCount == 0) journalHeadTs = now;
+            spilling = true;
+            written += HEADER + b.length;
+            journalCount++;
+            spilledTotal++;
+            return true;
+        } catch (IOException e) {
+            // drop any half-written record, then hold the frame over capacity
+            // (and out of order) rather than lose it
+            close();
+            truncate(written);
+            push(frame, now);
+            return false;
+        }
+    }
+
+    /** Worker (the single consumer). Up to {@code max} frames in arrival
+     *  order: memory first, then the journal. Empty when nothing is waiting.
+     *  Every frame stays queued until {@link #ack}; polling again without one
+     *  hands the same frames out again. */
+    List<String> poll(int max) throws IOException {
+        List<String> batch = new ArrayList<>();
+        long from, to;
+        synchronized (this) {
+            for (String f : mem) { // offer only appends, so the head holds still
+                if (batch.size() == max) break;
+                batch.add(f);
+            }
+            pendingMem = batch.size();
+            pendingCount = 0;
+            if (batch.size() == max || !spilling) return batch;
+            if (journalCount == 0) { endSpill(); return batch; }
+            from = readPos;
+            to = written;
+        }
+        // journal bytes in [from, to) are complete and only ever appended past
+        int read = 0;
+        long pos = from;
+        long nextTs = 0;
+        RandomAccessFile in = new RandomAccessFile(journal, "r");
+        try {
+            in.seek(pos);
+            while (pos + HEADER <= to) {
+                long ts = in.readLong();
+                if (batch.size() == max) { nextTs = ts; break; }
+                int len = in.readInt();
+                byte[] b = new byte[len];
+                in.readFully(b);
+                batch.add(new String(b, UTF8));
+                pos += HEADER + len;
+                read++;
+            }
+        } finally {
+            in.close();
+        }
+        synchronized (this) {
+            pendingPos = pos;
+            pendingCount = read;
+            pendingNextTs = nextTs;
+        }
+        return batch;
+    }
+
+    /** Worker: the last poll's batch is committed; its frames go. */
+    synchronized void ack() {
+        for (; pendingMem > 0; pendingMem--) {
+            mem.poll();
+            memTs.poll();
+        }
+        if (pendingCount == 0) return;
+        readPos = pendingPos;
+        journalCount -= pendingCount;
+        pendingCount = 0;
+        if (journalCount == 0) endSpill();
+        else journalHeadTs = pendingNextTs != 0 ? pendingNextTs : peekTs(readPos); // appended while we read
+    }
+
+    /** Worker: the last poll's batch failed; it stays at the head. */
+    synchronized void unpoll() {
+        pendingMem = pendingCount = 0;
+    }
+
+    /** Frames waiting, memory and journal (metric). */
+    synchronized int depth() { return mem.size() + journalCount; }
+
+    /** How long the oldest waiting frame has waited, 0 if none (metric). */
+    synchronized long oldestAgeMs(long now) {
+        if (!memTs.isEmpty()) return now - memTs.peek();
+        return journalCount > 0 ? now - journalHeadTs : 0;
+    }
+
+    synchronized boolean spilling() { return spilling; }
+
+    /** Frames that ever went to the journal (metric). */
+    synchronized long spilledTotal() { return spilledTotal; }
+
+    synchronized void close() {
+        try { if (out != null) out.close(); } catch (IOException ignored) {}
+        out = null;
+    }
+
+    /** Caller holds the lock. Arrival ms of the record at {@code pos}. */
+    private long peekTs(long pos) {
+        try {
+            RandomAccessFile in = new RandomAccessFile(journal, "r");
+            try {
+                in.seek(pos);
+                return in.readLong();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return journalHeadTs;
+        }
+    }
+
+    private void truncate(long size) {
+        try {
+            RandomAccessFile f = new RandomAccessFile(journal, "rw");
+            try { f.setLength(size); } finally { f.close(); }
+        } catch (IOException ignored) {}
+    }
+
+    private void push(String frame, long now) {
+        mem.add(frame);
+        memTs.add(now);
+    }
+
+    /** Caller holds the lock; everything in the journal has been acked. */
+    private void endSpill() {
+        close();
+        //noinspection ResultOfMethodCallIgnored
+        journal.delete();
+        spilling = false;
+        written = readPos = 0;
+        journalCount = pendingCount = 0;
+    }
+
+    /** A previous process's journal: count its complete records and replay them. */
+    private void recover() {
+        if (!journal.exists()) return;
+        long valid = 0;
+        try {
+            RandomAccessFile in = new RandomAccessFile(journal, "rw");
+            try {
+                long size = in.length();
+                while (valid + HEADER <= size) {
+                    in.seek(valid);
+                    long ts = in.readLong();
+                    int len = in.readInt();
+                    if (len < 0 || valid + HEADER + len > size) break; // torn tail
+                    if (journalCount == 0) journalHeadTs = ts;
+                    journalCount++;
+                    valid += HEADER + len;
+                }
+                in.setLength(valid); // appends must not land after a torn record
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            journalCount = 0;
+            valid = 0;
+        }
+        if (journalCount == 0) {
+            //noinspection ResultOfMethodCallIgnored
+            journal.delete();
+            return;
+        }
+        spilling = true;
+        written = valid;
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.signalberry;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Minimal streaming JSON pull parser. Same shape as android.util.JsonReader
+ * (which JVM unit tests can't load — the android.jar stubs throw), reduced to
+ * what Wire needs. skipValue() discards a subtree without building strings.
+ *
+ * Scalar reads are lenient the way org.json's opt* getters are: nextString()
+ * accepts numbers/booleans, nextLong() accepts numeric strings, and a value of
+ * the wrong shape is skipped and the default returned instead of throwing.
+ */
+final class JsonPull {
+
+    enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME,
+                 STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+
+    // scope stack entries
+    private static final int EMPTY_ARRAY     = 1;
+    private static final int NONEMPTY_ARRAY  = 2;
+    private static final int EMPTY_OBJECT    = 3;
+    private static final int DANGLING_NAME   = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOC       = 6;
+    private static final int NONEMPTY_DOC    = 7;
+
+    private final Reader in;
+    private final char[] buf = new char[2048];
+    private int pos, limit;
+    private final StringBuilder sb = new StringBuilder();
+    private int[] stack = new int[16];
+    private int depth;
+    private Token peeked;
+
+    JsonPull(Reader in) {
+        this.in = in;
+        stack[depth++] = EMPTY_DOC;
+    }
+
+    JsonPull(String s) { this(new StringReader(s)); }
+
+    // ── structure ─────────────────────────────────────────────────────────────
+
+    Token peek() throws IOException {
+        if (peeked == null) peeked = doPeek();
+        return peeked;
+    }
+
+    boolean hasNext() throws IOException {
+        Token t = peek();
+        return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+    }
+
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        pos++;
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        pos++;
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        pos++; // opening quote
+        return readString();
+    }
+
+    // ── scalars (lenient, org.json opt* semantics) ────────────────────────────
+
+    /** String value; numbers/booleans as their literal text; null for JSON
+     *  null or a container (which is skipped). */
+    String nextString() throws IOException {
+        switch (peek()) {
+            case STRING:
+                peeked = null;
+                pos++;
+                return readString();
+            case NUMBER: case BOOLEAN:
+                peeked = null;
+                return readLiteral();
+            case NULL:
+                peeked = null;
+                readLiteral();
+                return null;
+            default:
+                skipValue();
+                return null;
+        }
+    }
+
+    /** Like nextString(), but null becomes {@code dflt}. */
+    String nextString(String dflt) throws IOException {
+        String s = nextString();
+        return s == null ? dflt : s;
+    }
+
+    long nextLong(long dflt) throws IOException {
+        Token t = peek();
+        if (t != Token.NUMBER && t != Token.STRING) { skipValue(); return dflt; }
+        String s = nextString();
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            try { return (long) Double.parseDouble(s.trim()); }
+            catch (NumberFormatException e2) { return dflt; }
+        }
+    }
+
+    int nextInt(int dflt) throws IOException {
+        return (int) nextLong(dflt);
+    }
+
+    boolean nextBoolean() throws IOException {
+        Token t = peek();
+        if (t != Token.BOOLEAN && t != Token.STRING) { skipValue(); return false; }
+        return "true".equalsIgnoreCase(nextString());
+    }
+
+    /** Discard the next value, including a whole object/array subtree. */
+    void skipValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+                beginObject();
+                while (hasNext()) {
+                    expect(Token.NAME);
+                    pos++;
+                    skipString();
+                    skipValue();
+                }
+                endObject();
+                break;
+            case BEGIN_ARRAY:
+                beginArray();
+                while (hasNext()) skipValue();
+                endArray();
+                break;
+            case STRING:
+                peeked = null;
+                pos++;
+                skipString();
+                break;
+            case NUMBER: case BOOLEAN: case NULL:
+                peeked = null;
+                readLiteral();
+                break;
+            default:
+                throw syntax("nothing to skip");
+        }
+    }
+
+    // ── tokenizer ─────────────────────────────────────────────────────────────
+
+    private void expect(Token t) throws IOException {
+        if (peek() != t) throw syntax("expected " + t + " but was " + peeked);
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) stack = java.util.Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = scope;
+    }
+
+    private Token doPeek() throws IOException {
+        int scope = stack[depth - 1];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY: case NONEMPTY_ARRAY:
+                c = nextNonWs();
+                if (c == ']') { pos++; return Token.END_ARRAY; }
+                if (scope == NONEMPTY_ARRAY) {
+                    if (c != ',') throw syntax("expected , or ]");
+                    pos++;
+                }
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                return valueToken();
+            case EMPTY_OBJECT: case NONEMPTY_OBJECT:
+                c = nextNonWs();
+                if (c == '}') { pos++; return Token.END_OBJECT; }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') throw syntax("expected , or }");
+                    pos++;
+                    c = nextNonWs();
+                }
+                if (c != '"') throw syntax("expected name");
+                stack[depth - 1] = DANGLING_NAME;
+                return Token.NAME;
+            case DANGLING_NAME:
+                if (nextNonWs() != ':') throw syntax("expected :");
+                pos++;
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return valueToken();
+            case EMPTY_DOC:
+                stack[depth - 1] = NONEMPTY_DOC;
+                return valueToken();
+            default:
+                return Token.END_DOCUMENT;
+        }
+    }
+
+    private Token valueToken() throws IOException {
+        int c = nextNonWs();
+        switch (c) {
+            case '{': return Token.BEGIN_OBJECT;
+            case '[': return Token.BEGIN_ARRAY;
+            case '"': return Token.STRING;
+            case 't': case 'f': return Token.BOOLEAN;
+            case 'n': return Token.NULL;
+            case -1:  throw syntax("unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return Token.NUMBER;
+                throw syntax("unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /** Next non-whitespace char WITHOUT consuming it; -1 at end of input. */
+    private int nextNonWs() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) return -1;
+            char c = buf[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') pos++;
+            else return c;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        pos = 0;
+        limit = in.read(buf, 0, buf.length);
+        if (limit < 0) { limit = 0; return false; }
+        return true;
+    }
+
+    /** Reads up to the closing quote (the opening one is already consumed). */
+    private String readString() throws IOException {
+        sb.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buf[pos];
+                if (c == '"') {
+                    String s = sb.length() == 0 ? new String(buf, start, pos - start)
+                            : sb.append(buf, start, pos - start).toString();
+                    pos++;
+                    return s;
+                }
+                if (c == '\\') {
+                    sb.append(buf, start, pos - start);
+                    pos++;
+                    sb.append(readEscape());
+                    start = pos;
+                    continue;
+                }
+                pos++;
+            }
+            sb.append(buf, start, pos - start);
+            if (!fill()) throw syntax("unterminated string");
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                char c = buf[pos++];
+                if (c == '"') return;
+                if (c == '\\') readEscape();
+            }
+            if (!fill()) throw syntax("unterminated string");
+        }
+    }
+
+    /** Backslash already consumed. */
+    private char readEscape() throws IOException {
+        if (pos == limit && !fill()) throw syntax("unterminated escape");
+        char c = buf[pos++];
+        switch (c) {
+            case 'n': return '\n';
+            case 't': return '\t';
+            case 'r': return '\r';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'u':
+                int v = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (pos == limit && !fill()) throw syntax("unterminated escape");
+                    int d = Character.digit(buf[pos++], 16);
+                    if (d < 0) throw syntax("bad \\u escape");
+                    v = (v << 4) | d;
+                }
+                return (char) v; // surrogate halves pair up naturally in the output
+            default:
+                return c; // \" \\ \/
+        }
+    }
+
+    /** Unquoted literal: number, true, false or null. */
+    private String readLiteral() throws IOException {
+        sb.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) break;
+            char c = buf[pos];
+            if (c == ',' || c == '}' || c == ']' || c == ':' || c == ' '
+                    || c == '\n' || c == '\r' || c == '\t') break;
+            sb.append(c);
+            pos++;
+        }
+        if (sb.length() == 0) throw syntax("empty literal");
+        return sb.toString();
+    }
+
+    private IOException syntax(String msg) {
+        return new IOException("JSON syntax: " + msg + " (depth " + depth + ")");
+    }
+}
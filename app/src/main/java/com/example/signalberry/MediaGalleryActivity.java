@@ -150,13 +150,11 @@ public class MediaGalleryActivity extends AppCompatActivity {
     }
 
     private List<Row> buildRows(int tab) {
-        List<MessageItem> thread = repo.getThreadFull(peerKey);
+        // media/link candidates only, newest first like the official client
+        List<MessageItem> thread = repo.getThreadMedia(peerKey);
         List<Row> out = new ArrayList<>();
         String lastMonth = null;
-        // newest first, like the official client
-        for (int i = thread.size() - 1; i >= 0; i--) {
-            MessageItem m = thread.get(i);
-            if (m.serverTs <= 0 || m.status == MessageDatabase.ST_REMOTE_DELETED) continue;
+        for (MessageItem m : thread) {
             boolean matches;
             switch (tab) {
                 case 0:  matches = ("image".equals(m.msgType) || "video".equals(m.msgType))
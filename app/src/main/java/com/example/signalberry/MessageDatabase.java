@@ -12,10 +12,13 @@ import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.example.signalberry.Utils.*;
 
@@ -28,12 +31,23 @@ import static com.example.signalberry.Utils.*;
  * Signal timestamps); confirm rewrites to the /v2/send response ts. Receipts
  * never modify server_ts. See docs/REDESIGN.md §3.2/§3.6.
  *
+ * v15: display_ts is the thread order, persisted — server_ts for real rows,
+ * the send moment (nonce>>8) for pendings. Every writer of server_ts writes
+ * it too; thread reads are range scans of idx_peer_display.
+ *
  * All writes go through Repo (single writer); activities only read.
+ *
+ * WAL mode: the helper keeps a connection pool where the primary connection
+ * takes every write and reads from other threads get their own read-only
+ * connections over the last committed snapshot. The list and the open chat
+ * never queue behind an ingest transaction. Checkpoints run once writes go
+ * idle ({@link #noteWrite}), not on the commit that happens to cross the
+ * auto-checkpoint threshold.
  */
 class MessageDatabase extends SQLiteOpenHelper {
 
     private static final String DB_NAME    = "signalberry.db";
-    private static final int    DB_VERSION = 9;
+    private static final int    DB_VERSION = 18;
     private static final String T          = "messages";
 
     // status values
@@ -45,8 +59,74 @@ class MessageDatabase extends SQLiteOpenHelper {
     static final int ST_DELIVERED= 2;
     static final int ST_READ     = 3;
 
+    /** Compiled hot-path writes (see StatementCache). */
+    private final StatementCache stmts = new StatementCache(this);
+
     MessageDatabase(Context ctx) {
         super(ctx.getApplicationContext(), DB_NAME, null, DB_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override public void onOpen(SQLiteDatabase db) {
+        // backstop only (~16MB of WAL): the idle checkpoint does the routine work
+        if (db.isWriteAheadLoggingEnabled()) pragma(db, "PRAGMA wal_autocheckpoint=" + WAL_BACKSTOP_PAGES);
+    }
+
+    @Override public synchronized void close() {
+        stmts.clear();
+        checkpointer.shutdown();
+        super.close();
+    }
+
+    // ── idle WAL checkpoints ──────────────────────────────────────────────────
+
+    /** Quiet period after the last write before the WAL is folded back. */
+    static final long CHECKPOINT_IDLE_MS = 3000;
+    private static final int WAL_BACKSTOP_PAGES = 4096;
+
+    private final ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean checkpointArmed = new AtomicBoolean();
+    private volatile long lastWriteAt;
+
+    /** Something was just written: (re)start the idle countdown. Any thread. */
+    void noteWrite() {
+        lastWriteAt = System.currentTimeMillis();
+        if (checkpointArmed.compareAndSet(false, true)) armCheckpoint(CHECKPOINT_IDLE_MS);
+    }
+
+    private void armCheckpoint(long delayMs) {
+        try {
+            checkpointer.schedule(this::idleCheckpoint, delayMs, TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            checkpointArmed.set(false);
+        }
+    }
+
+    private void idleCheckpoint() {
+        long quiet = System.currentTimeMillis() - lastWriteAt;
+        if (quiet < CHECKPOINT_IDLE_MS) { armCheckpoint(CHECKPOINT_IDLE_MS - quiet); return; }
+        checkpointArmed.set(false);
+        try {
+            // PASSIVE: copies what no reader still needs, never waits on anyone
+            SQLiteDatabase db = getWritableDatabase();
+            if (db.isWriteAheadLoggingEnabled()) pragma(db, "PRAGMA wal_checkpoint(PASSIVE)");
+        } catch (Exception e) {
+            DebugLog.log("wal checkpoint failed: " + e);
+        }
+    }
+
+    /** Purge: after VACUUM the deleted bytes can still sit in the WAL — fold
+     *  it back and cut the file to zero. (SQLite < 3.8.8 reads TRUNCATE as
+     *  PASSIVE; the log is then overwritten by the next writes instead.) */
+    void checkpointTruncate() {
+        SQLiteDatabase db = getWritableDatabase();
+        if (db.isWriteAheadLoggingEnabled()) pragma(db, "PRAGMA wal_checkpoint(TRUNCATE)");
+    }
+
+    /** PRAGMAs that return a row can't go through execSQL. */
+    private static void pragma(SQLiteDatabase db, String sql) {
+        Cursor c = db.rawQuery(sql, null);
+        try { c.moveToFirst(); } finally { c.close(); }
     }
 
     @Override public void onCreate(SQLiteDatabase db) {
@@ -65,17 +145,31 @@ class MessageDatabase extends SQLiteOpenHelper {
                 "quote_ts     INTEGER NOT NULL DEFAULT 0," +
                 "quote_text   TEXT," +
                 "quote_author TEXT," +
-                "reactions    TEXT," +
+                "reactions    TEXT," +                // unused since v18 (see Reactions)
                 "edit_history TEXT," +
                 "last_edit_ts INTEGER NOT NULL DEFAULT 0," +
                 "client_nonce INTEGER NOT NULL DEFAULT 0," +
                 "reported     INTEGER NOT NULL DEFAULT 1," + // only app-confirmed sends start at 0
                 "expire_s     INTEGER NOT NULL DEFAULT 0," + // disappearing-message timer
                 "expire_at    INTEGER NOT NULL DEFAULT 0," + // armed deadline (0 = not armed)
-                "author       TEXT    NOT NULL DEFAULT ''" + // group threads: sender of in-rows
+                "author       TEXT    NOT NULL DEFAULT ''," + // group threads: sender of in-rows
+                "display_ts   INTEGER NOT NULL DEFAULT 0" +
                 ")");
         db.execSQL("CREATE INDEX idx_peer_ts ON " + T + "(peer_key, server_ts)");
+        createDisplayIndex(db);
         createIdentityIndex(db);
+        createExpiryIndex(db);
+        PeerState.createTable(db);
+        BridgeOutbox.createTable(db);
+        SendQueue.createTable(db);
+        Threads.createTable(db);
+        SearchIndex.createTable(db);
+        OrphanReceipts.createTable(db);
+        Reactions.createTable(db);
+    }
+
+    private static void createDisplayIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_peer_display ON " + T + "(peer_key, display_ts, id)");
     }
 
     private static void createIdentityIndex(SQLiteDatabase db) {
@@ -83,7 +177,19 @@ class MessageDatabase extends SQLiteOpenHelper {
                 "(peer_key, dir, server_ts, att_id)");
     }
 
+    /** Due-row scans and the next-deadline MIN seek on this (0 = not armed
+     *  sorts first and is skipped by the expire_at>0 bound). */
+    private static void createExpiryIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_expire_at ON " + T + "(expire_at)");
+    }
+
     @Override public void onUpgrade(SQLiteDatabase db, int old, int nw) {
+        // ahead of its number: the v6 dedupe and every later merge move
+        // reaction rows, so they must exist before those steps run
+        if (old < 18) {
+            Reactions.createTable(db);
+            if (hasColumn(db, "reactions")) Reactions.migrateBlobs(db);
+        }
         if (old < 2) db.execSQL("ALTER TABLE " + T + " ADD COLUMN reactions TEXT");
         if (old < 3) db.execSQL("ALTER TABLE " + T + " ADD COLUMN edit_history TEXT");
         if (old < 4) db.execSQL("ALTER TABLE " + T + " ADD COLUMN last_edit_ts INTEGER NOT NULL DEFAULT 0");
@@ -95,6 +201,32 @@ class MessageDatabase extends SQLiteOpenHelper {
         }
         if (old < 8) db.execSQL("ALTER TABLE " + T + " ADD COLUMN author TEXT NOT NULL DEFAULT ''");
         if (old < 9) migrateV9(db);
+        // ahead of its number: the threads triggers (v13) read display_ts
+        if (old < 15) migrateV15(db, old);
+        if (old < 10) PeerState.createTable(db); // rows migrate from prefs at first load
+        if (old < 11) BridgeOutbox.createTable(db); // unreported sends re-queue at Repo init
+        if (old < 12) SendQueue.createTable(db);
+        if (old < 13) {
+            Threads.createTable(db);
+            Threads.backfill(db);
+        }
+        if (old < 14) {
+            SearchIndex.createTable(db);
+            SearchIndex.rebuild(db);
+        }
+        if (old < 16) createExpiryIndex(db);
+        if (old < 17) OrphanReceipts.createTable(db); // replaces the in-memory early-receipt map
+    }
+
+    /** v14→v15: persist the display order. Pendings decode their nonce (the
+     *  same value MessageItem.displayTs computes); threads triggers from v13
+     *  are swapped for ones that read the column. */
+    private static void migrateV15(SQLiteDatabase db, int old) {
+        db.execSQL("ALTER TABLE " + T + " ADD COLUMN display_ts INTEGER NOT NULL DEFAULT 0");
+        db.execSQL("UPDATE " + T + " SET display_ts=CASE WHEN server_ts>=0 THEN server_ts "
+                + "WHEN client_nonce>0 THEN client_nonce>>8 ELSE (-server_ts)>>8 END");
+        createDisplayIndex(db);
+        if (old >= 13) Threads.recreateTriggers(db);
     }
 
     /** v8→v9: repair Signal "long message" overflow rows. These arrived as a
@@ -138,8 +270,8 @@ class MessageDatabase extends SQLiteOpenHelper {
                 " WHERE status=" + ST_PENDING + " AND server_ts > 0");
 
         // 4/5. dedupe so the UNIQUE index can be created
-        dedupeExact(db);
-        mergeImageTwins(db);
+        dedupeExact(db, null);
+        mergeImageTwins(db, null);
 
         // 6.
         createIdentityIndex(db);
@@ -154,11 +286,14 @@ class MessageDatabase extends SQLiteOpenHelper {
     }
 
     /** §3.6 step 5a: collapse exact-identity duplicates. Survivor: tombstone wins
-     *  outright, else max(status); per-field coalesce of the descriptive fields. */
-    private static void dedupeExact(SQLiteDatabase db) {
+     *  outright, else max(status); per-field coalesce of the descriptive fields.
+     *  @param peerKey limit to one thread, null = whole table (migration). */
+    private static void dedupeExact(SQLiteDatabase db, String peerKey) {
         Cursor groups = db.rawQuery(
                 "SELECT peer_key, dir, server_ts, att_id, COUNT(*) FROM " + T +
-                " GROUP BY peer_key, dir, server_ts, att_id HAVING COUNT(*) > 1", null);
+                (peerKey != null ? " WHERE peer_key=?" : "") +
+                " GROUP BY peer_key, dir, server_ts, att_id HAVING COUNT(*) > 1",
+                peerKey != null ? new String[]{peerKey} : null);
         List<String[]> keys = new ArrayList<>();
         while (groups.moveToNext())
             keys.add(new String[]{groups.getString(0), groups.getString(1),
@@ -167,14 +302,14 @@ class MessageDatabase extends SQLiteOpenHelper {
 
         for (String[] k : keys) {
             Cursor c = db.rawQuery(
-                    "SELECT id, status, caption, local_uri, quote_text, quote_author, reactions " +
+                    "SELECT id, status, caption, local_uri, quote_text, quote_author " +
                     "FROM " + T + " WHERE peer_key=? AND dir=? AND server_ts=? AND att_id=? " +
                     "ORDER BY id ASC",
                     new String[]{k[0], k[1], k[2], k[3]});
             long survivorId = -1;
             int bestStatus = Integer.MIN_VALUE;
             boolean tombstone = false;
-            String caption = null, localUri = null, quoteText = null, quoteAuthor = null, reactions = null;
+            String caption = null, localUri = null, quoteText = null, quoteAuthor = null;
             List<Long> ids = new ArrayList<>();
             while (c.moveToNext()) {
                 long id = c.getLong(0);
@@ -186,16 +321,15 @@ class MessageDatabase extends SQLiteOpenHelper {
                 if (localUri    == null && !c.isNull(3)) localUri    = c.getString(3);
                 if (quoteText   == null && !c.isNull(4)) quoteText   = c.getString(4);
                 if (quoteAuthor == null && !c.isNull(5)) quoteAuthor = c.getString(5);
-                if (reactions   == null && !c.isNull(6)) reactions   = c.getString(6);
             }
             c.close();
+            for (long id : ids) if (id != survivorId) Reactions.move(db, id, survivorId);
             ContentValues v = new ContentValues();
             v.put("status", tombstone ? ST_DELETED : bestStatus);
             v.put("caption", caption);
             v.put("local_uri", localUri);
             v.put("quote_text", quoteText);
             v.put("quote_author", quoteAuthor);
-            v.put("reactions", reactions);
             db.update(T, v, "id=?", new String[]{String.valueOf(survivorId)});
             for (long id : ids)
                 if (id != survivorId)
@@ -207,41 +341,53 @@ class MessageDatabase extends SQLiteOpenHelper {
      *  (wall-clock ts, local_uri, no att_id) and the sync-echo one (Signal ts,
      *  att_id, no local_uri). They never share a group key, so pair them by
      *  nearest |Δts| ≤ 120s, each row consumed at most once; merge into the
-     *  att_id row, keeping local_uri as a cache hint. */
-    private static void mergeImageTwins(SQLiteDatabase db) {
+     *  att_id row, keeping local_uri as a cache hint.
+     *  @param peerKey limit to one thread, null = whole table (migration). */
+    private static void mergeImageTwins(SQLiteDatabase db, String peerKey) {
         Cursor c = db.rawQuery(
                 "SELECT id, peer_key, server_ts, status, local_uri, att_id, caption FROM " + T +
-                " WHERE dir='out' AND msg_type='image' ORDER BY peer_key, server_ts", null);
-        List<Object[]> locals = new ArrayList<>();   // [id, peer, ts, status, local_uri, caption]
-        List<Object[]> echoes = new ArrayList<>();   // [id, peer, ts, status, caption]
-        while (c.moveToNext()) {
+                " WHERE dir='out' AND msg_type='image'" + (peerKey != null ? " AND peer_key=?" : "") +
+                " ORDER BY peer_key, server_ts", peerKey != null ? new String[]{peerKey} : null);
+        List<Object[]> locals = new ArrayList<>();   // [id, ts, status, local_uri, caption]
+        List<Object[]> echoes = new ArrayList<>();   // [id, ts, status, caption]
+        String peer = null;
+        while (true) {
+            boolean more = c.moveToNext();
+            // rows arrive grouped by peer: pair each group as it closes
+            if (!more || !c.getString(1).equals(peer)) {
+                mergeTwinGroup(db, locals, echoes);
+                locals.clear();
+                echoes.clear();
+                if (!more) break;
+                peer = c.getString(1);
+            }
             boolean hasLocal = !c.isNull(4) && !c.getString(4).isEmpty();
             boolean hasAtt   = !c.getString(5).isEmpty();
             if (hasLocal && !hasAtt)
-                locals.add(new Object[]{c.getLong(0), c.getString(1), c.getLong(2),
-                        c.getInt(3), c.getString(4), c.isNull(6) ? null : c.getString(6)});
+                locals.add(new Object[]{c.getLong(0), c.getLong(2), c.getInt(3),
+                        c.getString(4), c.isNull(6) ? null : c.getString(6)});
             else if (hasAtt && !hasLocal)
-                echoes.add(new Object[]{c.getLong(0), c.getString(1), c.getLong(2),
-                        c.getInt(3), c.isNull(6) ? null : c.getString(6)});
+                echoes.add(new Object[]{c.getLong(0), c.getLong(2), c.getInt(3),
+                        c.isNull(6) ? null : c.getString(6)});
         }
         c.close();
+    }
 
-        Set<Long> consumedEchoes = new HashSet<>();
-        for (Object[] loc : locals) {
-            Object[] best = null;
-            long bestDelta = Long.MAX_VALUE;
-            for (Object[] echo : echoes) {
-                if (consumedEchoes.contains(echo[0])) continue;
-                if (!loc[1].equals(echo[1])) continue;
-                long delta = Math.abs((Long) loc[2] - (Long) echo[2]);
-                if (delta <= 120_000 && delta < bestDelta) { best = echo; bestDelta = delta; }
-            }
-            if (best == null) continue;
-            consumedEchoes.add((Long) best[0]);
+    /** One peer's twins, both lists in ts order. */
+    private static void mergeTwinGroup(SQLiteDatabase db, List<Object[]> locals, List<Object[]> echoes) {
+        if (locals.isEmpty() || echoes.isEmpty()) return;
+        long[] lts = new long[locals.size()], ets = new long[echoes.size()];
+        for (int i = 0; i < lts.length; i++) lts[i] = (Long) locals.get(i)[1];
+        for (int i = 0; i < ets.length; i++) ets[i] = (Long) echoes.get(i)[1];
+        int[] pair = ImageTwins.pair(lts, ets, ImageTwins.WINDOW_MS);
+        for (int i = 0; i < pair.length; i++) {
+            if (pair[i] < 0) continue;
+            Object[] loc = locals.get(i), best = echoes.get(pair[i]);
             ContentValues v = new ContentValues();
-            v.put("local_uri", (String) loc[4]);
-            v.put("status", Math.max((Integer) loc[3], (Integer) best[3]));
-            if (best[4] == null && loc[5] != null) v.put("caption", (String) loc[5]);
+            v.put("local_uri", (String) loc[3]);
+            v.put("status", Math.max((Integer) loc[2], (Integer) best[2]));
+            if (best[3] == null && loc[4] != null) v.put("caption", (String) loc[4]);
+            Reactions.move(db, (Long) loc[0], (Long) best[0]);
             db.update(T, v, "id=?", new String[]{String.valueOf(best[0])});
             db.execSQL("DELETE FROM " + T + " WHERE id=" + loc[0]);
         }
@@ -263,33 +409,23 @@ class MessageDatabase extends SQLiteOpenHelper {
                           String attId, String mime, String caption, String localUri,
                           long serverTs, int status,
                           long quoteTs, String quoteText, String quoteAuthor, String author) {
-        SQLiteDatabase db = getWritableDatabase();
-        ContentValues v = new ContentValues();
-        v.put("author", author == null ? "" : author);
-        v.put("peer_key", peerKey);
-        v.put("dir", dir);
-        v.put("msg_type", msgType);
-        v.put("text", text == null ? "" : text);
-        v.put("att_id", attId == null ? "" : attId);
-        v.put("mime", mime == null ? "" : mime);
-        v.put("caption", caption);
-        v.put("local_uri", localUri);
-        v.put("server_ts", serverTs);
-        v.put("status", status);
-        v.put("quote_ts", quoteTs);
-        v.put("quote_text", quoteText);
-        v.put("quote_author", quoteAuthor);
-        long id = db.insertWithOnConflict(T, null, v, SQLiteDatabase.CONFLICT_IGNORE);
-        if (id == -1) {
-            // never resurrect tombstones, never downgrade status
-            db.execSQL("UPDATE " + T + " SET status=MAX(status,?) " +
-                    "WHERE peer_key=? AND dir=? AND server_ts=? AND att_id=? AND status>=0",
-                    new Object[]{status, peerKey, dir, serverTs,
-                            attId == null ? "" : attId});
-        }
+        String att = attId == null ? "" : attId;
+        long id = stmts.insert(SQL_INSERT_IDENTITY, author == null ? "" : author, peerKey, dir,
+                msgType, text == null ? "" : text, att, mime == null ? "" : mime, caption,
+                localUri, serverTs, serverTs, status, quoteTs, quoteText, quoteAuthor);
+        // never resurrect tombstones, never downgrade status. (A one-statement
+        // UPSERT needs SQLite 3.24, API 30+; API 18 ships 3.7.11.)
+        if (id == -1) stmts.update(SQL_RAISE_IDENTITY, status, peerKey, dir, serverTs, att);
         return id;
     }
 
+    private static final String SQL_INSERT_IDENTITY = "INSERT OR IGNORE INTO " + T
+            + "(author, peer_key, dir, msg_type, text, att_id, mime, caption, local_uri, "
+            + "server_ts, display_ts, status, quote_ts, quote_text, quote_author) "
+            + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+    private static final String SQL_RAISE_IDENTITY = "UPDATE " + T + " SET status=MAX(status,?) "
+            + "WHERE peer_key=? AND dir=? AND server_ts=? AND att_id=? AND status>=0";
+
     /** Insert a pending outgoing row at server_ts = -nonce.
      *  @return the nonce actually used (bumped if the slot was taken). */
     long insertPending(String peerKey, String msgType, String text, String mime,
@@ -307,6 +443,7 @@ class MessageDatabase extends SQLiteOpenHelper {
             v.put("caption", caption);
             v.put("local_uri", localUri);
             v.put("server_ts", -nonce);
+            v.put("display_ts", nonce >> 8);
             v.put("status", ST_PENDING);
             v.put("client_nonce", nonce);
             v.put("quote_ts", quoteTs);
@@ -360,6 +497,7 @@ class MessageDatabase extends SQLiteOpenHelper {
                 occ.close();
                 ContentValues v = new ContentValues();
                 v.put("server_ts", realTs);
+                v.put("display_ts", realTs);
                 v.put("status", status);
                 v.put("reported", 0);
                 db.update(T, v, "id=?", new String[]{String.valueOf(pendingId)});
@@ -379,73 +517,184 @@ class MessageDatabase extends SQLiteOpenHelper {
                 new Object[]{nonce});
     }
 
-    /** Repo init: stale pendings → FAILED; returns confirmed-but-unreported rows. */
+    /** Repo init: stale pendings that no send_queue job drives (left by a
+     *  crash before the queue existed) → FAILED. Queued ones keep retrying. */
     void failStalePendings(long olderThanMs) {
         long cutoffNonce = (System.currentTimeMillis() - olderThanMs) << 8;
         getWritableDatabase().execSQL(
                 "UPDATE " + T + " SET status=" + ST_FAILED +
-                " WHERE status=" + ST_PENDING + " AND server_ts<0 AND client_nonce < ?",
+                " WHERE status=" + ST_PENDING + " AND server_ts<0 AND client_nonce < ?" +
+                " AND client_nonce NOT IN (SELECT nonce FROM " + SendQueue.T + ")",
                 new Object[]{cutoffNonce});
     }
 
+    /** The pending row for this nonce still exists (not deleted, not settled). */
+    boolean hasPending(long nonce) {
+        Cursor c = getReadableDatabase().rawQuery("SELECT 1 FROM " + T
+                + " WHERE client_nonce=? AND status=" + ST_PENDING + " LIMIT 1",
+                new String[]{String.valueOf(nonce)});
+        try {
+            return c.moveToFirst();
+        } finally {
+            c.close();
+        }
+    }
+
     /** Confirmed-but-unreported sends, with att_id/mime read straight from the
-     *  row (toItem prefers local_uri rendering, which would drop them and make
+     *  row (RowReader prefers local_uri rendering, which would drop them and make
      *  the bridge mint a second identity for echo-adopted media). */
     List<MessageItem> getUnreported() {
-        Cursor c = getReadableDatabase().query(T, null,
+        Cursor c = getReadableDatabase().query(T, ITEM_COLUMNS,
                 "dir='out' AND reported=0 AND server_ts>0 AND status>=" + ST_SENT,
                 null, null, null, "server_ts ASC", "50");
         List<MessageItem> out = new ArrayList<>();
-        while (c.moveToNext()) {
-            String attId = c.getString(c.getColumnIndexOrThrow("att_id"));
-            String mime  = c.getString(c.getColumnIndexOrThrow("mime"));
-            String type  = c.getString(c.getColumnIndexOrThrow("msg_type"));
-            String cap   = c.getString(c.getColumnIndexOrThrow("caption"));
-            String dir   = c.getString(c.getColumnIndexOrThrow("dir"));
-            MessageItem it;
-            if (!"text".equals(type)) {
-                it = new MessageItem("me", isEmpty(attId) ? "" : attId, mime,
-                        isEmpty(cap) ? null : cap, c.getInt(c.getColumnIndexOrThrow("status")));
-                it.msgType = type;
-            } else {
-                it = toItem(c);
+        try {
+            RowReader r = new RowReader(c);
+            int peer = c.getColumnIndexOrThrow("peer_key");
+            while (c.moveToNext()) {
+                String type = c.getString(r.type);
+                MessageItem it;
+                if (!"text".equals(type)) {
+                    String attId = c.getString(r.attId), cap = c.getString(r.cap);
+                    it = new MessageItem("me", isEmpty(attId) ? "" : attId, c.getString(r.mime),
+                            isEmpty(cap) ? null : cap, c.getInt(r.status));
+                    it.msgType = type;
+                } else {
+                    it = r.read(c);
+                }
+                it.serverTs = c.getLong(r.ts);
+                it.quoteTs = c.getLong(r.qts);
+                it.quoteText = c.getString(r.qt);
+                it.quoteAuthor = c.getString(r.qa);
+                it.peerKey = c.getString(peer);
+                out.add(it);
             }
-            it.serverTs = c.getLong(c.getColumnIndexOrThrow("server_ts"));
-            it.quoteTs = c.getLong(c.getColumnIndexOrThrow("quote_ts"));
-            it.quoteText = c.getString(c.getColumnIndexOrThrow("quote_text"));
-            it.quoteAuthor = c.getString(c.getColumnIndexOrThrow("quote_author"));
-            it.peerKey = c.getString(c.getColumnIndexOrThrow("peer_key"));
-            out.add(it);
+        } finally {
+            c.close();
         }
-        c.close();
         return out;
     }
 
     void markReported(String peerKey, long serverTs) {
-        getWritableDatabase().execSQL(
-                "UPDATE " + T + " SET reported=1 WHERE peer_key=? AND dir='out' AND server_ts=?",
-                new Object[]{peerKey, serverTs});
+        stmts.update("UPDATE " + T + " SET reported=1 WHERE peer_key=? AND dir='out' AND server_ts=?",
+                peerKey, serverTs);
     }
 
     /** Exact per-timestamp receipt: raise status on the ts-group (server_ts or
      *  last_edit_ts match), never downgrade, never touch tombstones. */
     boolean applyReceipt(String peerKey, long ts, int newStatus) {
-        SQLiteDatabase db = getWritableDatabase();
-        Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + T +
-                " WHERE peer_key=? AND dir='out' AND (server_ts=? OR last_edit_ts=?) AND status>=0",
-                new String[]{peerKey, String.valueOf(ts), String.valueOf(ts)});
-        boolean any = c.moveToFirst() && c.getInt(0) > 0;
-        c.close();
-        if (!any) return false;
-        db.execSQL("UPDATE " + T + " SET status=MAX(status,?) " +
+        // rows matched, not rows whose value moved — so this doubles as the
+        // "target exists" probe (false → caller parks it as an early receipt)
+        return stmts.update("UPDATE " + T + " SET status=MAX(status,?) " +
                 "WHERE peer_key=? AND dir='out' AND (server_ts=? OR last_edit_ts=?) AND status>=0",
-                new Object[]{newStatus, peerKey, ts, ts});
-        return true;
+                newStatus, peerKey, ts, ts) > 0;
+    }
+
+    // ── set-based mutations (sorted ts arrays, chunked IN lists) ─────────────
+
+    /** Timestamps per statement: two IN lists of this many plus the fixed
+     *  args stay under SQLite's 999 bound parameters. */
+    private static final int IN_CHUNK = 400;
+
+    /** Sorted, de-duplicated ts for the bulk methods below. */
+    static long[] sortedTs(java.util.Collection<Long> timestamps) {
+        long[] ts = new long[timestamps.size()];
+        int n = 0;
+        for (long t : timestamps) ts[n++] = t;
+        java.util.Arrays.sort(ts);
+        int w = 0;
+        for (int i = 0; i < n; i++) if (w == 0 || ts[i] != ts[w - 1]) ts[w++] = ts[i];
+        return w == n ? ts : java.util.Arrays.copyOf(ts, w);
+    }
+
+    /** A peer's rows addressed by any ts in a chunk of {@code n} — by
+     *  server_ts or, for edited rows, by revision ts. */
+    private static String tsIn(int n) {
+        String ph = placeholders(n);
+        return "peer_key=? AND (server_ts IN (" + ph + ") OR last_edit_ts IN (" + ph + "))";
+    }
+
+    /** Binds for {@code head} followed by {@link #tsIn} over ts[from, from+n). */
+    private static Object[] tsArgs(Object[] head, String peerKey, long[] ts, int from, int n) {
+        Object[] a = new Object[head.length + 1 + 2 * n];
+        System.arraycopy(head, 0, a, 0, head.length);
+        a[head.length] = peerKey;
+        for (int j = 0; j < n; j++) a[head.length + 1 + j] = a[head.length + 1 + n + j] = ts[from + j];
+        return a;
+    }
+
+    private static String[] strings(Object[] a) {
+        String[] s = new String[a.length];
+        for (int i = 0; i < a.length; i++) s[i] = String.valueOf(a[i]);
+        return s;
+    }
+
+    /** {@link #applyReceipt} over a sorted ts array: one probe and one UPDATE
+     *  per chunk. Caller holds the transaction. @return the timestamps that
+     *  matched a settled out-row; the rest raced ahead of their send. */
+    Set<Long> applyReceipts(String peerKey, long[] sortedTs, int newStatus) {
+        SQLiteDatabase db = getWritableDatabase();
+        Set<Long> matched = new HashSet<>();
+        for (int i = 0; i < sortedTs.length; i += IN_CHUNK) {
+            int n = Math.min(IN_CHUNK, sortedTs.length - i);
+            String where = tsIn(n) + " AND dir='out' AND status>=0";
+            Cursor c = db.rawQuery("SELECT server_ts, last_edit_ts FROM " + T + " WHERE " + where,
+                    strings(tsArgs(new Object[0], peerKey, sortedTs, i, n)));
+            try {
+                while (c.moveToNext()) {
+                    for (int col = 0; col < 2; col++) {
+                        long ts = c.getLong(col);
+                        if (java.util.Arrays.binarySearch(sortedTs, i, i + n, ts) >= 0) matched.add(ts);
+                    }
+                }
+            } finally {
+                c.close();
+            }
+            // typed binds: MAX(status,'2') would compare as text and win
+            db.execSQL("UPDATE " + T + " SET status=MAX(status,?) WHERE " + where,
+                    tsArgs(new Object[]{(long) newStatus}, peerKey, sortedTs, i, n));
+        }
+        return matched;
+    }
+
+    /** Coalesced receipts (ts → status): {@link #applyReceipts(String, long[], int)}
+     *  once per distinct status. */
+    Set<Long> applyReceipts(String peerKey, Map<Long, Integer> receipts) {
+        Map<Integer, List<Long>> byStatus = new HashMap<>();
+        for (Map.Entry<Long, Integer> e : receipts.entrySet()) {
+            List<Long> l = byStatus.get(e.getValue());
+            if (l == null) byStatus.put(e.getValue(), l = new ArrayList<>());
+            l.add(e.getKey());
+        }
+        Set<Long> matched = new HashSet<>();
+        for (Map.Entry<Integer, List<Long>> e : byStatus.entrySet())
+            matched.addAll(applyReceipts(peerKey, sortedTs(e.getValue()), e.getKey()));
+        return matched;
+    }
+
+    /** Local delete of a selection: scrub content, keep the identity tombstone
+     *  so re-delivery stays deduped. One UPDATE per chunk, one transaction. */
+    void deleteMessages(String peerKey, long[] sortedTs) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < sortedTs.length; i += IN_CHUNK) {
+                int n = Math.min(IN_CHUNK, sortedTs.length - i);
+                db.execSQL("UPDATE " + T + " SET status=?, text='', caption=NULL, " +
+                        "local_uri=NULL, quote_text=NULL, edit_history=NULL " +
+                        "WHERE " + tsIn(n), tsArgs(new Object[]{ST_DELETED}, peerKey, sortedTs, i, n));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 
     /** Re-key rows from a uuid key to its learned number key (ongoing, idempotent).
-     *  Collisions merge into the occupant (max status, first-non-null fields). */
-    void rekeyPeer(String uuidKey, String numberKey) {
+     *  Collisions merge into the occupant (max status, first-non-null fields).
+     *  Only the number key's thread is re-deduped — no other peer changed.
+     *  @return rows moved or merged (0 = nothing held the uuid key). */
+    int rekeyPeer(String uuidKey, String numberKey) {
         SQLiteDatabase db = getWritableDatabase();
         db.beginTransaction();
         try {
@@ -456,6 +705,7 @@ class MessageDatabase extends SQLiteOpenHelper {
                 rows.add(new Object[]{c.getLong(0), c.getString(1), c.getLong(2),
                         c.getString(3), c.getInt(4)});
             c.close();
+            if (rows.isEmpty()) return 0;
             for (Object[] r : rows) {
                 Cursor occ = db.rawQuery("SELECT id FROM " + T +
                         " WHERE peer_key=? AND dir=? AND server_ts=? AND att_id=?",
@@ -464,13 +714,13 @@ class MessageDatabase extends SQLiteOpenHelper {
                     long occId = occ.getLong(0);
                     occ.close();
                     // coalesce descriptive fields from the uuid row before dropping it
+                    Reactions.move(db, (Long) r[0], occId);
                     db.execSQL("UPDATE " + T + " SET status=MAX(status,?)," +
-                            " reactions=COALESCE(reactions,(SELECT reactions FROM " + T + " WHERE id=?))," +
                             " local_uri=COALESCE(local_uri,(SELECT local_uri FROM " + T + " WHERE id=?))," +
                             " caption=COALESCE(caption,(SELECT caption FROM " + T + " WHERE id=?))," +
                             " quote_text=COALESCE(quote_text,(SELECT quote_text FROM " + T + " WHERE id=?))" +
                             " WHERE id=? AND status!=" + ST_DELETED,
-                            new Object[]{r[4], r[0], r[0], r[0], r[0], occId});
+                            new Object[]{r[4], r[0], r[0], r[0], occId});
                     db.execSQL("DELETE FROM " + T + " WHERE id=" + r[0]);
                 } else {
                     occ.close();
@@ -478,12 +728,24 @@ class MessageDatabase extends SQLiteOpenHelper {
                             new Object[]{numberKey, r[0]});
                 }
             }
+            dedupeExact(db, numberKey);
+            mergeImageTwins(db, numberKey);
             db.setTransactionSuccessful();
+            return rows.size();
         } finally {
             db.endTransaction();
         }
-        dedupeExact(db);
-        mergeImageTwins(db);
+    }
+
+    /** Any row (tombstones included) still filed under this key. */
+    boolean hasRows(String peerKey) {
+        Cursor c = getReadableDatabase().rawQuery("SELECT 1 FROM " + T + " WHERE peer_key=? LIMIT 1",
+                new String[]{peerKey});
+        try {
+            return c.moveToFirst();
+        } finally {
+            c.close();
+        }
     }
 
     /** One-shot reconcile (§3.6 step 7): adopt the bridge Signal ts for a legacy
@@ -533,8 +795,8 @@ class MessageDatabase extends SQLiteOpenHelper {
                 db.execSQL("DELETE FROM " + T + " WHERE id=" + id);
             } else {
                 occ.close();
-                db.execSQL("UPDATE " + T + " SET server_ts=? WHERE id=?",
-                        new Object[]{bridgeTs, id});
+                db.execSQL("UPDATE " + T + " SET server_ts=?, display_ts=? WHERE id=?",
+                        new Object[]{bridgeTs, bridgeTs, id});
             }
             db.setTransactionSuccessful();
         } finally {
@@ -544,44 +806,54 @@ class MessageDatabase extends SQLiteOpenHelper {
     }
 
     /** Record a disappearing-message timer on an existing row. Outgoing rows arm
-     *  immediately (timer runs from send); incoming arm when read (sweep). */
-    void setExpiry(String peerKey, String dir, long serverTs, int expireS) {
-        if (expireS <= 0) return;
-        long armedAt = "out".equals(dir) ? serverTs + expireS * 1000L : 0;
-        getWritableDatabase().execSQL(
-                "UPDATE " + T + " SET expire_s=?, expire_at=? WHERE peer_key=? AND dir=? AND server_ts=?",
-                new Object[]{expireS, armedAt, peerKey, dir, serverTs});
+     *  immediately (timer runs from send); incoming arm when read — already, if
+     *  the peer's watermark is past them (read elsewhere before it arrived).
+     *  @return the armed deadline, 0 if left unarmed. */
+    long setExpiry(String peerKey, String dir, long serverTs, int expireS, long readTs) {
+        if (expireS <= 0) return 0;
+        long armedAt = "out".equals(dir) ? serverTs + expireS * 1000L
+                : serverTs <= readTs ? System.currentTimeMillis() + expireS * 1000L : 0;
+        stmts.update("UPDATE " + T + " SET expire_s=?, expire_at=? WHERE peer_key=? AND dir=? AND server_ts=?",
+                expireS, armedAt, peerKey, dir, serverTs);
+        return armedAt;
+    }
+
+    /** Arm this peer's unarmed incoming rows at or below the read watermark
+     *  (idx_peer_ts bounds it to the peer). @return rows armed. */
+    int armExpiry(String peerKey, long readTs) {
+        if (readTs <= 0) return 0;
+        return stmts.update("UPDATE " + T + " SET expire_at=?+expire_s*1000 " +
+                "WHERE peer_key=? AND server_ts<=? AND dir='in' AND expire_s>0 AND expire_at=0",
+                System.currentTimeMillis(), peerKey, readTs);
+    }
+
+    /** Earliest armed deadline, 0 if none — one seek on idx_expire_at. */
+    long nextExpiry() {
+        Cursor c = getReadableDatabase().rawQuery(
+                "SELECT MIN(expire_at) FROM " + T + " WHERE expire_at>0", null);
+        try {
+            return c.moveToFirst() && !c.isNull(0) ? c.getLong(0) : 0;
+        } finally {
+            c.close();
+        }
     }
 
-    /** Two-phase expiry sweep. @return peers whose rows were deleted. */
-    java.util.Set<String> sweepExpiry(java.util.Map<String, Long> readTsByPeer) {
+    /** Tombstone every row whose deadline has passed (an index range, not a
+     *  table scan). @return peers whose rows were expired. */
+    java.util.Set<String> expireDue(long now) {
         SQLiteDatabase db = getWritableDatabase();
-        long now = System.currentTimeMillis();
-        // phase A: arm incoming rows whose peer watermark passed them
-        Cursor c = db.rawQuery("SELECT DISTINCT peer_key FROM " + T +
-                " WHERE expire_s>0 AND expire_at=0 AND dir='in'", null);
-        List<String> peers = new ArrayList<>();
-        while (c.moveToNext()) peers.add(c.getString(0));
-        c.close();
-        for (String pk : peers) {
-            Long readTs = readTsByPeer.get(pk);
-            if (readTs == null || readTs <= 0) continue;
-            db.execSQL("UPDATE " + T + " SET expire_at=?+expire_s*1000 " +
-                    "WHERE peer_key=? AND dir='in' AND expire_s>0 AND expire_at=0 AND server_ts<=?",
-                    new Object[]{now, pk, readTs});
-        }
-        // phase B: hard-delete due rows
         java.util.Set<String> affected = new HashSet<>();
+        String[] bound = {String.valueOf(now)};
         Cursor d = db.rawQuery("SELECT DISTINCT peer_key FROM " + T +
-                " WHERE expire_at>0 AND expire_at<?", new String[]{String.valueOf(now)});
+                " WHERE expire_at>0 AND expire_at<=?", bound);
         while (d.moveToNext()) affected.add(d.getString(0));
         d.close();
         if (!affected.isEmpty())
             // tombstone, not DELETE: a later receipt/reaction via the change feed
             // would otherwise re-insert the "disappeared" message
             db.execSQL("UPDATE " + T + " SET status=" + ST_DELETED + ", text='', caption=NULL, " +
-                    "local_uri=NULL, reactions=NULL, quote_text=NULL, edit_history=NULL, " +
-                    "expire_at=0, expire_s=0 WHERE expire_at>0 AND expire_at<?",
+                    "local_uri=NULL, quote_text=NULL, edit_history=NULL, " +
+                    "expire_at=0, expire_s=0 WHERE expire_at>0 AND expire_at<=?",
                     new Object[]{now});
         return affected;
     }
@@ -597,19 +869,35 @@ class MessageDatabase extends SQLiteOpenHelper {
         return id;
     }
 
-    void setReactions(String peerKey, long serverTs, String reactionsJson) {
-        getWritableDatabase().execSQL(
-                "UPDATE " + T + " SET reactions=? WHERE peer_key=? AND (server_ts=? OR last_edit_ts=?)",
-                new Object[]{reactionsJson, peerKey, serverTs, serverTs});
+    /** The rows a reaction addresses: by server_ts, or by revision ts for an
+     *  edited message; never a tombstone. */
+    private static final String REACTION_TARGET = "SELECT id FROM " + T +
+            " WHERE peer_key=? AND (server_ts=? OR last_edit_ts=?) AND status>=0";
+
+    /** Add or replace one reactor's emoji: a single-row upsert. */
+    void setReaction(String peerKey, long serverTs, String reactorKey, String emoji) {
+        stmts.update("INSERT OR REPLACE INTO " + Reactions.T + "(message_id, reactor_key, emoji) " +
+                "SELECT id, ?, ? FROM (" + REACTION_TARGET + ")",
+                reactorKey, emoji, peerKey, serverTs, serverTs);
     }
 
-    String getReactions(String peerKey, long serverTs) {
-        Cursor c = getReadableDatabase().rawQuery(
-                "SELECT reactions FROM " + T + " WHERE peer_key=? AND (server_ts=? OR last_edit_ts=?)",
-                new String[]{peerKey, String.valueOf(serverTs), String.valueOf(serverTs)});
-        String json = (c.moveToFirst() && !c.isNull(0)) ? c.getString(0) : "{}";
-        c.close();
-        return json;
+    void removeReaction(String peerKey, long serverTs, String reactorKey) {
+        stmts.update("DELETE FROM " + Reactions.T + " WHERE reactor_key=? AND message_id IN (" +
+                REACTION_TARGET + ")", reactorKey, peerKey, serverTs, serverTs);
+    }
+
+    /** A change-feed row's reactions: the bridge is authoritative for
+     *  everyone but "me" — it can't know reactions the app sent and hasn't
+     *  reported yet (F1) — so its "me" only fills in when there is none here. */
+    void mergeBridgeReactions(String peerKey, long serverTs, Map<String, String> theirs, String bridgeMe) {
+        stmts.update("DELETE FROM " + Reactions.T + " WHERE reactor_key!='me' AND message_id IN (" +
+                REACTION_TARGET + ")", peerKey, serverTs, serverTs);
+        for (Map.Entry<String, String> e : theirs.entrySet())
+            setReaction(peerKey, serverTs, e.getKey(), e.getValue());
+        if (bridgeMe != null)
+            stmts.update("INSERT OR IGNORE INTO " + Reactions.T + "(message_id, reactor_key, emoji) " +
+                    "SELECT id, 'me', ? FROM (" + REACTION_TARGET + ")",
+                    bridgeMe, peerKey, serverTs, serverTs);
     }
 
     // ── reads ─────────────────────────────────────────────────────────────────
@@ -624,54 +912,203 @@ class MessageDatabase extends SQLiteOpenHelper {
         return ts;
     }
 
-    List<MessageItem> getMessages(String peerKey) { return getMessages(peerKey, 300); }
+    /** Row id at this identity ts (first match), -1 if none. */
+    long idByServerTs(String peerKey, long serverTs) {
+        Cursor c = getReadableDatabase().rawQuery(
+                "SELECT id FROM " + T + " WHERE peer_key=? AND server_ts=? LIMIT 1",
+                new String[]{peerKey, String.valueOf(serverTs)});
+        long id = -1;
+        if (c.moveToFirst()) id = c.getLong(0);
+        c.close();
+        return id;
+    }
+
+    /** Rows an open thread starts with (the newest), and its page size. */
+    static final int WINDOW = 300;
+
+    /** Thread order: display_ts, then id — idx_peer_display serves both the
+     *  sort and the keyset bound. Anchors are (display_ts, id). */
+    private static final String ORDER_KEY = "display_ts";
+
+    List<MessageItem> getMessages(String peerKey) { return getMessages(peerKey, WINDOW); }
 
     /** Newest {limit} rows in chronological order (0 = all). A 3k-row thread
      *  fully inflated per Repo event would bury the Q10. */
     List<MessageItem> getMessages(String peerKey, int limit) {
-        String order = "CASE WHEN server_ts<0 THEN -server_ts ELSE server_ts END";
-        Cursor c = getReadableDatabase().query(T, null,
+        Cursor c = getReadableDatabase().query(T, ITEM_COLUMNS,
                 "peer_key=? AND status!=" + ST_DELETED, new String[]{peerKey},
-                null, null, order + " DESC, id DESC",
+                null, null, ORDER_KEY + " DESC, id DESC",
                 limit > 0 ? String.valueOf(limit) : null);
-        List<MessageItem> list = new ArrayList<>();
-        while (c.moveToNext()) list.add(toItem(c));
-        c.close();
+        List<MessageItem> list = readItems(c, new ArrayList<MessageItem>());
         java.util.Collections.reverse(list);
         return list;
     }
 
-    /** Latest message per peer, sorted newest first. Returns list of (peerKey, [snippet, timeStr, tsStr]).
-     *  Pending rows hold -nonce where nonce=(millis<<8)|counter — the display
-     *  time must decode back to millis or pendings show a far-future date. */
+    /** Up to {limit} rows strictly before the (orderKey, id) anchor, in
+     *  chronological order — the page above a thread window. */
+    List<MessageItem> getMessagesBefore(String peerKey, long orderKey, long id, int limit) {
+        Cursor c = getReadableDatabase().query(T, ITEM_COLUMNS,
+                // the bare <= bound is what lets the index seek to the anchor
+                "peer_key=? AND status!=" + ST_DELETED + " AND " + ORDER_KEY + "<=? AND ("
+                        + ORDER_KEY + "<? OR id<?)",
+                new String[]{peerKey, String.valueOf(orderKey), String.valueOf(orderKey), String.valueOf(id)},
+                null, null, ORDER_KEY + " DESC, id DESC", String.valueOf(limit));
+        List<MessageItem> list = readItems(c, new ArrayList<MessageItem>());
+        java.util.Collections.reverse(list);
+        return list;
+    }
+
+    /** Up to {limit} rows strictly after the (orderKey, id) anchor, in
+     *  chronological order (limit 0 = through the newest). */
+    List<MessageItem> getMessagesAfter(String peerKey, long orderKey, long id, int limit) {
+        Cursor c = getReadableDatabase().query(T, ITEM_COLUMNS,
+                "peer_key=? AND status!=" + ST_DELETED + " AND " + ORDER_KEY + ">=? AND ("
+                        + ORDER_KEY + ">? OR id>?)",
+                new String[]{peerKey, String.valueOf(orderKey), String.valueOf(orderKey), String.valueOf(id)},
+                null, null, ORDER_KEY + " ASC, id ASC", limit > 0 ? String.valueOf(limit) : null);
+        return readItems(c, new ArrayList<MessageItem>());
+    }
+
+    /** (orderKey, id) of the shown row at this ts (identity or edit revision),
+     *  or null — the anchor for a "window around ts" load. */
+    long[] anchorOf(String peerKey, long serverTs) {
+        Cursor c = getReadableDatabase().rawQuery("SELECT " + ORDER_KEY + ", id FROM " + T +
+                " WHERE peer_key=? AND (server_ts=? OR last_edit_ts=?) AND status!=" + ST_DELETED +
+                " LIMIT 1", new String[]{peerKey, String.valueOf(serverTs), String.valueOf(serverTs)});
+        try {
+            return c.moveToFirst() ? new long[]{c.getLong(0), c.getLong(1)} : null;
+        } finally {
+            c.close();
+        }
+    }
+
+    /** Media gallery: attachment rows and rows that may carry a link, newest
+     *  first — without inflating the rest of the thread. */
+    List<MessageItem> getMediaMessages(String peerKey) {
+        Cursor c = getReadableDatabase().query(T, ITEM_COLUMNS,
+                "peer_key=? AND server_ts>0 AND status!=" + ST_DELETED + " AND status!=" +
+                        ST_REMOTE_DELETED + " AND (att_id!='' OR local_uri IS NOT NULL OR text LIKE '%http%')",
+                new String[]{peerKey}, null, null, "server_ts DESC, id DESC");
+        return readItems(c, new ArrayList<MessageItem>());
+    }
+
+    /** Delta read for an open thread: rows by id (inserts) plus rows whose
+     *  server_ts or last_edit_ts is in {@code serverTs} (changes — edits are
+     *  announced by the revision ts). Tombstones ARE returned (status
+     *  ST_DELETED) so the caller can drop them; unordered. */
+    List<MessageItem> getMessagesDelta(String peerKey, java.util.Collection<Long> ids,
+                                       java.util.Collection<Long> serverTs) {
+        List<MessageItem> list = new ArrayList<>();
+        if (ids.isEmpty() && serverTs.isEmpty()) return list;
+        StringBuilder where = new StringBuilder("peer_key=? AND (0");
+        List<String> args = new ArrayList<>();
+        args.add(peerKey);
+        if (!ids.isEmpty()) {
+            where.append(" OR id IN (").append(placeholders(ids.size())).append(')');
+            for (long id : ids) args.add(String.valueOf(id));
+        }
+        if (!serverTs.isEmpty()) {
+            String ph = placeholders(serverTs.size());
+            where.append(" OR server_ts IN (").append(ph).append(')')
+                 .append(" OR last_edit_ts IN (").append(ph).append(')');
+            for (long ts : serverTs) args.add(String.valueOf(ts));
+            for (long ts : serverTs) args.add(String.valueOf(ts));
+        }
+        where.append(')');
+        Cursor c = getReadableDatabase().query(T, ITEM_COLUMNS, where.toString(),
+                args.toArray(new String[0]), null, null, null);
+        return readItems(c, list);
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder(n * 2);
+        for (int i = 0; i < n; i++) sb.append(i == 0 ? "?" : ",?");
+        return sb.toString();
+    }
+
+    /** Conversation list, newest first: (peerKey, [snippet, timeStr, tsStr, unread]).
+     *  One walk down idx_threads_last with a rowid join per row (see Threads).
+     *  limit <= 0 means all. */
+    List<Pair<String, String[]>> getConversationSummaries(int limit, int offset) {
+        Cursor c = getReadableDatabase().rawQuery(
+                "SELECT t.peer_key, m.dir, m.text, m.att_id, m.msg_type, t.last_ts, m.status, t.unread" +
+                " FROM " + Threads.T + " t INNER JOIN " + T + " m ON m.id=t.last_id" +
+                " ORDER BY t.last_ts DESC LIMIT ? OFFSET ?",
+                new String[]{String.valueOf(limit > 0 ? limit : -1), String.valueOf(Math.max(0, offset))});
+        List<Pair<String, String[]>> out = new ArrayList<>();
+        try {
+            while (c.moveToNext()) {
+                String dir  = c.getString(1);
+                String txt  = c.getString(2);
+                String att  = c.getString(3);
+                String type = c.getString(4);
+                long   ts   = c.getLong(5);
+                int rowSt = c.getInt(6);
+                String snip = rowSt == ST_REMOTE_DELETED ? "Message deleted"
+                        : (!isEmpty(txt) ? txt : snippetFor(type, att));
+                if ("out".equals(dir) && rowSt != ST_REMOTE_DELETED) snip = "You: " + snip;
+                out.add(new Pair<>(c.getString(0), new String[]{snip, formatShortTime(ts),
+                        String.valueOf(ts), String.valueOf(Math.max(0, c.getInt(7)))}));
+            }
+        } finally {
+            c.close();
+        }
+        return out;
+    }
+
     List<Pair<String, String[]>> getConversationSummaries() {
-        String dispTs = "(CASE WHEN m.server_ts<0 THEN ((-m.server_ts)>>8) ELSE m.server_ts END)";
-        String dispTsBare = "(CASE WHEN server_ts<0 THEN ((-server_ts)>>8) ELSE server_ts END)";
-        String sql =
-                "SELECT m.peer_key, m.dir, m.text, m.att_id, m.msg_type, " + dispTs + " dts, m.status" +
-                " FROM " + T + " m" +
-                " INNER JOIN (SELECT peer_key, MAX(" + dispTsBare + ") mts" +
-                "   FROM " + T + " WHERE status!=" + ST_DELETED + " GROUP BY peer_key) x" +
-                " ON m.peer_key=x.peer_key AND " + dispTs + "=x.mts" +
-                " ORDER BY x.mts DESC";
-        Cursor c = getReadableDatabase().rawQuery(sql, null);
+        return getConversationSummaries(0, 0);
+    }
+
+    /** In-chat search: serverTs of the peer's shown rows whose text or caption
+     *  contains every word of q as a word prefix, in display order. Served
+     *  from the FTS index (SearchIndex); the thread itself is never loaded. */
+    List<Long> searchThread(String peerKey, String q) {
+        List<Long> out = new ArrayList<>();
+        String match = SearchIndex.matchQuery(q);
+        if (match == null) return out;
+        Cursor c = getReadableDatabase().rawQuery(
+                "SELECT m.server_ts FROM " + SearchIndex.T + " f INNER JOIN " + T + " m ON m.id=f.docid" +
+                " WHERE " + SearchIndex.T + " MATCH ? AND m.peer_key=? AND m.status!=" + ST_DELETED +
+                " AND m.status!=" + ST_REMOTE_DELETED +
+                " ORDER BY m.display_ts, m.id",
+                new String[]{match, peerKey});
+        try {
+            while (c.moveToNext()) out.add(c.getLong(0));
+        } finally {
+            c.close();
+        }
+        return out;
+    }
+
+    /** Global search, one page: (peerKey, [snippet, timeStr, tsStr]) for every
+     *  shown row in any thread matching q (see searchThread), most recently
+     *  stored first — FTS hands docids back in order, so a page never sorts
+     *  the whole hit set. */
+    List<Pair<String, String[]>> searchAll(String q, int limit, int offset) {
         List<Pair<String, String[]>> out = new ArrayList<>();
-        Set<String> seen = new HashSet<>();
-        while (c.moveToNext()) {
-            String pk = c.getString(0);
-            if (!seen.add(pk)) continue;
-            String dir  = c.getString(1);
-            String txt  = c.getString(2);
-            String att  = c.getString(3);
-            String type = c.getString(4);
-            long   ts   = c.getLong(5);
-            int rowSt = c.getInt(6);
-            String snip = rowSt == ST_REMOTE_DELETED ? "Message deleted"
-                    : (!isEmpty(txt) ? txt : snippetFor(type, att));
-            if ("out".equals(dir) && rowSt != ST_REMOTE_DELETED) snip = "You: " + snip;
-            out.add(new Pair<>(pk, new String[]{snip, formatShortTime(ts), String.valueOf(ts)}));
+        String match = SearchIndex.matchQuery(q);
+        if (match == null) return out;
+        Cursor c = getReadableDatabase().rawQuery(
+                "SELECT m.peer_key, m.dir, m.text, m.caption, m.att_id, m.msg_type, m.server_ts" +
+                " FROM " + SearchIndex.T + " f INNER JOIN " + T + " m ON m.id=f.docid" +
+                " WHERE " + SearchIndex.T + " MATCH ? AND m.status!=" + ST_DELETED +
+                " AND m.status!=" + ST_REMOTE_DELETED +
+                " ORDER BY f.docid DESC LIMIT ? OFFSET ?",
+                new String[]{match, String.valueOf(limit), String.valueOf(Math.max(0, offset))});
+        try {
+            while (c.moveToNext()) {
+                String txt = c.getString(2);
+                if (isEmpty(txt)) txt = c.isNull(3) ? snippetFor(c.getString(5), c.getString(4)) : c.getString(3);
+                if ("out".equals(c.getString(1))) txt = "You: " + txt;
+                long ts = c.getLong(6);
+                long shown = ts < 0 ? (-ts) >> 8 : ts;
+                out.add(new Pair<>(c.getString(0), new String[]{txt, formatShortTime(shown),
+                        String.valueOf(ts)}));
+            }
+        } finally {
+            c.close();
         }
-        c.close();
         return out;
     }
 
@@ -683,35 +1120,45 @@ class MessageDatabase extends SQLiteOpenHelper {
         return "";
     }
 
-    int countUnread(String peerKey, long readTs) {
-        Cursor c = getReadableDatabase().rawQuery(
-                "SELECT COUNT(*) FROM " + T + " WHERE peer_key=? AND dir='in' AND server_ts>? AND status>=0",
-                new String[]{peerKey, String.valueOf(readTs)});
-        int n = 0;
-        if (c.moveToFirst()) n = c.getInt(0);
-        c.close();
-        return n;
+    /** Move a thread's read marker and recount its unread rows (only those
+     *  above the new marker are scanned). Writer thread only (see DbWriter). */
+    void setThreadRead(String peerKey, long readTs) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT OR IGNORE INTO " + Threads.T + "(peer_key) VALUES (?)", new Object[]{peerKey});
+            db.execSQL("UPDATE " + Threads.T + " SET read_ts=?, unread=(SELECT COUNT(*) FROM " + T +
+                    " WHERE peer_key=? AND dir='in' AND server_ts>? AND status>=0) WHERE peer_key=?",
+                    new Object[]{readTs, peerKey, readTs, peerKey});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 
-    void deleteByServerTs(String peerKey, long serverTs) {
-        // scrub content; keep the identity tombstone so re-delivery stays deduped
-        getWritableDatabase().execSQL("UPDATE " + T + " SET status=?, text='', caption=NULL, " +
-                "local_uri=NULL, reactions=NULL, quote_text=NULL, edit_history=NULL " +
-                "WHERE peer_key=? AND (server_ts=? OR last_edit_ts=?)",
-                new Object[]{ST_DELETED, peerKey, serverTs, serverTs});
+    /** Startup: bring threads.read_ts in line with PeerState wherever they
+     *  disagree (first run after the migration, or a crash between the two). */
+    void syncThreadReads(Map<String, Long> readTs) {
+        Map<String, Long> stored = new HashMap<>();
+        Cursor c = getReadableDatabase().rawQuery("SELECT peer_key, read_ts FROM " + Threads.T, null);
+        try {
+            while (c.moveToNext()) stored.put(c.getString(0), c.getLong(1));
+        } finally {
+            c.close();
+        }
+        for (Map.Entry<String, Long> e : readTs.entrySet()) {
+            Long have = stored.get(e.getKey());
+            if (have == null ? e.getValue() > 0 : have.longValue() != e.getValue())
+                setThreadRead(e.getKey(), e.getValue());
+        }
     }
 
     /** Remote delete: official clients show a placeholder, not a vanished bubble. */
     void remoteDeleteByServerTs(String peerKey, long serverTs) {
-        getWritableDatabase().execSQL(
-                "UPDATE " + T + " SET status=?, text='', caption=NULL, att_id='', local_uri=NULL, " +
-                "reactions=NULL, quote_text=NULL WHERE peer_key=? AND (server_ts=? OR last_edit_ts=?) " +
+        stmts.update("UPDATE " + T + " SET status=?, text='', caption=NULL, att_id='', local_uri=NULL, " +
+                "quote_text=NULL WHERE peer_key=? AND (server_ts=? OR last_edit_ts=?) " +
                 "AND status!=" + ST_DELETED,
-                new Object[]{ST_REMOTE_DELETED, peerKey, serverTs, serverTs});
-    }
-
-    void deleteMessages(String peerKey, java.util.Collection<Long> timestamps) {
-        for (long ts : timestamps) deleteByServerTs(peerKey, ts);
+                ST_REMOTE_DELETED, peerKey, serverTs, serverTs);
     }
 
     void applyEdit(String peerKey, long prevTs, String newText, long newEditTs) {
@@ -736,66 +1183,97 @@ class MessageDatabase extends SQLiteOpenHelper {
         } catch (Exception ignored) {}
     }
 
-    private static MessageItem toItem(Cursor c) {
-        String dir    = c.getString(c.getColumnIndexOrThrow("dir"));
-        String type   = c.getString(c.getColumnIndexOrThrow("msg_type"));
-        String text   = c.getString(c.getColumnIndexOrThrow("text"));
-        String attId  = c.getString(c.getColumnIndexOrThrow("att_id"));
-        String mime   = c.getString(c.getColumnIndexOrThrow("mime"));
-        String cap    = c.getString(c.getColumnIndexOrThrow("caption"));
-        String locUri = c.getString(c.getColumnIndexOrThrow("local_uri"));
-        long   ts     = c.getLong(c.getColumnIndexOrThrow("server_ts"));
-        int    status = c.getInt(c.getColumnIndexOrThrow("status"));
-        String qt     = c.getString(c.getColumnIndexOrThrow("quote_text"));
-        String qa     = c.getString(c.getColumnIndexOrThrow("quote_author"));
-        String from   = "out".equals(dir) ? "me" : "peer";
-
-        MessageItem item;
-        if (status == ST_REMOTE_DELETED) {
-            item = new MessageItem(from, "", status);
-            item.serverTs = ts;
-            return item;
+    /** Columns RowReader reads (plus peer_key for the report queue) — thread
+     *  reads skip the reported/expiry/nonce bookkeeping a SELECT * would pull. */
+    private static final String[] ITEM_COLUMNS = {
+            "id", "peer_key", "dir", "msg_type", "text", "att_id", "mime", "caption",
+            "local_uri", "server_ts", "status", "quote_ts", "quote_text", "quote_author",
+            "author", "client_nonce", Reactions.COLUMN, "edit_history", "last_edit_ts"};
+
+    /** Cursor → MessageItem with the column indices resolved once per cursor,
+     *  not once per row and field. Optional columns resolve to -1. */
+    private static final class RowReader {
+        final int dir, type, text, attId, mime, cap, locUri, ts, status, qt, qa, id,
+                qts, author, nonce, reactions, editHistory, lastEdit;
+
+        RowReader(Cursor c) {
+            dir         = c.getColumnIndexOrThrow("dir");
+            type        = c.getColumnIndexOrThrow("msg_type");
+            text        = c.getColumnIndexOrThrow("text");
+            attId       = c.getColumnIndexOrThrow("att_id");
+            mime        = c.getColumnIndexOrThrow("mime");
+            cap         = c.getColumnIndexOrThrow("caption");
+            locUri      = c.getColumnIndexOrThrow("local_uri");
+            ts          = c.getColumnIndexOrThrow("server_ts");
+            status      = c.getColumnIndexOrThrow("status");
+            qt          = c.getColumnIndexOrThrow("quote_text");
+            qa          = c.getColumnIndexOrThrow("quote_author");
+            id          = c.getColumnIndexOrThrow("id");
+            qts         = c.getColumnIndex("quote_ts");
+            author      = c.getColumnIndex("author");
+            nonce       = c.getColumnIndex("client_nonce");
+            reactions   = c.getColumnIndex("reactions");
+            editHistory = c.getColumnIndex("edit_history");
+            lastEdit    = c.getColumnIndex("last_edit_ts");
         }
-        boolean isMedia = !"text".equals(type);
-        if (isMedia) {
-            if (!isEmpty(locUri))
-                item = new MessageItem(from, locUri, isEmpty(cap) ? null : cap, status, true);
-            else
-                item = new MessageItem(from, attId, mime, isEmpty(cap) ? null : cap, status);
-            item.msgType = type;
-        } else {
-            item = new MessageItem(from, isEmpty(text) ? "" : text, status);
-        }
-        item.serverTs    = ts;
-        item.quoteText   = isEmpty(qt) ? null : qt;
-        item.quoteAuthor = isEmpty(qa) ? null : qa;
-        int qtsIdx = c.getColumnIndex("quote_ts");
-        if (qtsIdx >= 0) item.quoteTs = c.getLong(qtsIdx);
-        int authIdx = c.getColumnIndex("author");
-        if (authIdx >= 0) {
-            String a = c.getString(authIdx);
-            item.author = a == null ? "" : a;
-        }
-        int nonceIdx = c.getColumnIndex("client_nonce");
-        if (nonceIdx >= 0) item.clientNonce = c.getLong(nonceIdx);
-        int ri = c.getColumnIndex("reactions");
-        if (ri >= 0 && !c.isNull(ri)) {
-            try {
-                JSONObject ro = new JSONObject(c.getString(ri));
-                Map<String, String> reactions = new HashMap<>();
-                Iterator<String> keys = ro.keys();
-                while (keys.hasNext()) { String k = keys.next(); reactions.put(k, ro.getString(k)); }
-                if (!reactions.isEmpty()) item.reactions = reactions;
-            } catch (Exception ignored) {}
+
+        MessageItem read(Cursor c) {
+            String from = "out".equals(c.getString(dir)) ? "me" : "peer";
+            long   rowTs     = c.getLong(ts);
+            int    rowStatus = c.getInt(status);
+
+            MessageItem item;
+            if (rowStatus == ST_REMOTE_DELETED) {
+                item = new MessageItem(from, "", rowStatus);
+                item.id = c.getLong(id);
+                item.serverTs = rowTs;
+                return item;
+            }
+            String rowType = c.getString(type);
+            if (!"text".equals(rowType)) {
+                String rowCap = c.getString(cap);
+                String rowUri = c.getString(locUri);
+                if (!isEmpty(rowUri))
+                    item = new MessageItem(from, rowUri, isEmpty(rowCap) ? null : rowCap, rowStatus, true);
+                else
+                    item = new MessageItem(from, c.getString(attId), c.getString(mime),
+                            isEmpty(rowCap) ? null : rowCap, rowStatus);
+                item.msgType = rowType;
+            } else {
+                String rowText = c.getString(text);
+                item = new MessageItem(from, isEmpty(rowText) ? "" : rowText, rowStatus);
+            }
+            item.id          = c.getLong(id);
+            item.serverTs    = rowTs;
+            String q = c.getString(qt), qAuth = c.getString(qa);
+            item.quoteText   = isEmpty(q) ? null : q;
+            item.quoteAuthor = isEmpty(qAuth) ? null : qAuth;
+            if (qts >= 0) item.quoteTs = c.getLong(qts);
+            if (author >= 0) {
+                String a = c.getString(author);
+                item.author = a == null ? "" : a;
+            }
+            if (nonce >= 0) item.clientNonce = c.getLong(nonce);
+            // reactions / edit history stay raw strings: parsed only by whoever shows them
+            if (reactions >= 0 && !c.isNull(reactions)) item.reactionsPacked = c.getString(reactions);
+            if (editHistory >= 0 && !c.isNull(editHistory)) {
+                String eh = c.getString(editHistory);
+                if (!"[]".equals(eh)) item.editHistory = eh;
+            }
+            if (lastEdit >= 0) item.lastEditTs = c.getLong(lastEdit);
+            return item;
         }
-        int ehi = c.getColumnIndex("edit_history");
-        if (ehi >= 0 && !c.isNull(ehi)) {
-            String eh = c.getString(ehi);
-            if (eh != null && !eh.equals("[]")) item.editHistory = eh;
+    }
+
+    /** Reads every row of {c} into {out} and closes it. */
+    private static List<MessageItem> readItems(Cursor c, List<MessageItem> out) {
+        try {
+            RowReader r = new RowReader(c);
+            while (c.moveToNext()) out.add(r.read(c));
+        } finally {
+            c.close();
         }
-        int leti = c.getColumnIndex("last_edit_ts");
-        if (leti >= 0) item.lastEditTs = c.getLong(leti);
-        return item;
+        return out;
     }
 
     // ── legacy transitional API (callers move to Repo, then these die) ────────
@@ -808,12 +1286,8 @@ class MessageDatabase extends SQLiteOpenHelper {
     }
 
     void updateReaction(String peerKey, long serverTs, String authorKey, String emoji, boolean isRemove) {
-        try {
-            JSONObject map = new JSONObject(getReactions(peerKey, serverTs));
-            if (isRemove) map.remove(authorKey);
-            else map.put(authorKey, emoji);
-            setReactions(peerKey, serverTs, map.toString());
-        } catch (Exception ignored) {}
+        if (isRemove || isEmpty(emoji)) removeReaction(peerKey, serverTs, authorKey);
+        else setReaction(peerKey, serverTs, authorKey, emoji);
     }
 
 }
@@ -15,13 +15,14 @@ class MessageItem {
     int status;
     final String dateLabel;    // non-null only for TYPE_DATE_HEADER
 
+    long id;            // DB row id (stable adapter id); headers get a negative per-day id
     long serverTs;      // Signal-level timestamp (ms); negative = pending (-nonce)
     long lastEditTs;    // timestamp of the most recent edit (chained); 0 if never edited
     String quoteText;   // non-null when this message is a reply to another
     String quoteAuthor; // "me" or "peer", non-null when quoteText != null
     String quoteAuthorName; // display name for the quote header, resolved at bind time
     long quoteTs;       // server_ts of the quoted message; 0 if none
-    java.util.Map<String, String> reactions; // authorKey → emoji, null if none
+    String reactionsPacked; // packed reactions column (see Reactions); unpacked on first reactions() call
     String editHistory; // JSON array of previous texts (oldest first), null if never edited
     String msgType = "text"; // text|image|video|audio|file (media rows share TYPE_IMAGE rendering for now)
     long clientNonce;   // non-zero on rows born from a local send
@@ -29,6 +30,38 @@ class MessageItem {
     String author = "";     // group threads: sender peer key of incoming rows
     String authorName;      // display name (resolved by Chat before render)
 
+    private java.util.Map<String, String> reactions;
+    private boolean reactionsParsed;
+
+    /** reactorKey → emoji, null if none. Most rows never reach a bind, so the
+     *  packed column is left as read from the cursor until something asks. */
+    java.util.Map<String, String> reactions() {
+        if (!reactionsParsed) {
+            reactionsParsed = true;
+            reactions = unpackReactions(reactionsPacked);
+        }
+        return reactions;
+    }
+
+    /** Separators of the packed form — control characters, never inside a
+     *  reactor key or an emoji. */
+    static final char REACTION_UNIT = '\u001f', REACTION_RECORD = '\u001e';
+
+    /** "key US emoji RS key US emoji …" → ordered map; null for null/empty. */
+    static java.util.Map<String, String> unpackReactions(String packed) {
+        if (packed == null || packed.isEmpty()) return null;
+        java.util.Map<String, String> map = new java.util.LinkedHashMap<>();
+        int start = 0;
+        while (start < packed.length()) {
+            int end = packed.indexOf(REACTION_RECORD, start);
+            if (end < 0) end = packed.length();
+            int unit = packed.indexOf(REACTION_UNIT, start);
+            if (unit > start && unit < end) map.put(packed.substring(start, unit), packed.substring(unit + 1, end));
+            start = end + 1;
+        }
+        return map.isEmpty() ? null : map;
+    }
+
     /** Display timestamp: pendings sort at their send moment. */
     long displayTs() { return serverTs < 0 ? (clientNonce > 0 ? clientNonce >> 8 : -serverTs >> 8) : serverTs; }
 
@@ -3,11 +3,11 @@ package com.example.signalberry;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.IOException;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 /**
  * Single source of truth for outbound /v2/send requests. Centralises the
@@ -21,17 +21,12 @@ final class MessageSender {
     private final String myNumber;
     private final String recipient;   // number, uuid, or "group.<token>"
 
-    /** Body of the most recent non-2xx response (untrusted-identity sniffing). */
-    private static volatile String lastError = "";
-
     MessageSender(String base, String myNumber, String recipient) {
         this.base = base;
         this.myNumber = myNumber;
         this.recipient = recipient;
     }
 
-    static String lastError() { return lastError; }
-
     String recipient() { return recipient; }
 
     /** Bare body: message text + sender + single recipient. */
@@ -67,51 +62,51 @@ final class MessageSender {
         body.put("edit_timestamp", editTs);
     }
 
-    /** POST the body to /v2/send. Returns the raw "timestamp" field (string or
-     *  number, never parsed here per M1) or null on failure. */
-    String send(JSONObject body, int timeoutMs) {
+    /** The server answered, but not with 2xx. */
+    static final class Rejected extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int code;
+        /** Response body, "" when none (untrusted-identity sniffing). */
+        final String body;
+
+        Rejected(int code, String body) {
+            super("HTTP " + code + (body == null || body.isEmpty() ? "" : ": " + body));
+            this.code = code;
+            this.body = body == null ? "" : body;
+        }
+
+        /** Worth sending again later: the server was busy or timed out, not
+         *  refusing this request. */
+        boolean retryable() { return code >= 500 || code == 408 || code == 429; }
+    }
+
+    /** POST a prebuilt body to /v2/send. Returns the raw "timestamp" field
+     *  (string or number, never parsed here per M1), or null when a 2xx
+     *  carried none. Throws {@link Rejected} on a non-2xx answer and a plain
+     *  IOException when the server was never reached. */
+    static String send(String base, JSONObject body, int timeoutMs) throws IOException {
         return post(base + "/v2/send", body.toString(), timeoutMs);
     }
 
     /** Shared JSON POST that extracts the "timestamp" field. */
-    static String post(String url, String json, int timeoutMs) {
-        HttpURLConnection c = null;
-        try {
-            c = (HttpURLConnection) new URL(url).openConnection();
-            c.setConnectTimeout(8000);
-            c.setReadTimeout(timeoutMs);
-            c.setRequestMethod("POST");
-            Auth.apply(c);
-            c.setRequestProperty("Content-Type", "application/json; charset=utf-8");
-            c.setDoOutput(true);
-            try (OutputStream os = new java.io.BufferedOutputStream(c.getOutputStream())) {
-                os.write(json.getBytes("UTF-8"));
-            }
-            int code = c.getResponseCode();
-            if (code < 200 || code >= 300) {
-                lastError = readStream(c.getErrorStream());
-                return null;
-            }
-            String resp = readStream(c.getInputStream());
-            JSONObject o = new JSONObject(resp);
-            Object ts = o.opt("timestamp");
-            return ts == null ? null : String.valueOf(ts);
-        } catch (Exception e) {
-            return null;
-        } finally {
-            if (c != null) c.disconnect();
+    static String post(String url, String json, int timeoutMs) throws IOException {
+        Request req = Http.request(url).post(Http.json(json)).build();
+        try (Response r = Http.client(timeoutMs).newCall(req).execute()) {
+            ResponseBody b = r.body();
+            String resp = b == null ? "" : b.string();
+            if (!r.isSuccessful()) throw new Rejected(r.code(), resp);
+            return timestamp(resp);
         }
     }
 
-    private static String readStream(InputStream is) {
-        if (is == null) return "";
-        try (InputStream in = is; ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            byte[] buf = new byte[1024];
-            int n;
-            while ((n = in.read(buf)) != -1) bos.write(buf, 0, n);
-            return bos.toString("UTF-8");
+    /** The "timestamp" field of a /v2/send response, raw; null if absent. */
+    static String timestamp(String resp) {
+        try {
+            Object ts = new JSONObject(resp).opt("timestamp");
+            return ts == null ? null : String.valueOf(ts);
         } catch (Exception e) {
-            return "";
+            return null;
         }
     }
 }
@@ -15,9 +15,12 @@ import android.os.Looper;
 
 import androidx.core.app.NotificationCompat;
 
-import org.json.JSONObject;
-
+import java.io.File;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.OkHttpClient;
@@ -50,6 +53,38 @@ public class MessageService extends Service {
     private boolean destroyed = false;
     private int wsGeneration = 0; // stale callbacks from a replaced socket are ignored
 
+    /** Burst batching: frames arriving within BATCH_WINDOW_MS (or BATCH_MAX of
+     *  them) are ingested in one Repo transaction instead of one commit each.
+     *  A backlog drains in BACKLOG_MAX batches to amortise commits further. */
+    private static final int  BATCH_MAX       = 64;
+    private static final int  BACKLOG_MAX     = 256;
+    private static final long BATCH_WINDOW_MS = 50;
+    /** Frames held in memory before the queue spills to its journal. */
+    private static final int  QUEUE_CAPACITY  = 512;
+    private static final long LAG_WARN_MS     = 2_000;
+    private static final long LAG_LOG_EVERY_MS = 10_000;
+    /** A failed drain retries after this, doubling up to the max. */
+    private static final long INGEST_RETRY_MIN_MS = 500;
+    private static final long INGEST_RETRY_MAX_MS = 30_000;
+    private final ScheduledExecutorService ingestExec = Executors.newSingleThreadScheduledExecutor();
+    private IngestQueue queue;
+    private boolean journalFailed;   // socket reader only
+    private boolean spillLogged;     // ingestExec only
+    private long lastLagLog;         // ingestExec only
+    private long ingestRetryMs = INGEST_RETRY_MIN_MS; // ingestExec only
+    private boolean retryQueued;     // ingestExec only
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        queue = new IngestQueue(new File(getFilesDir(), "ingest.journal"), QUEUE_CAPACITY);
+        if (queue.depth() > 0) {
+            // frames a killed process had received but not applied
+            DebugLog.log("ingest: replaying " + queue.depth() + " journaled frames");
+            ingestExec.execute(this::drain);
+        }
+    }
+
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         createChannels();
@@ -78,6 +113,8 @@ public class MessageService extends Service {
         wsGeneration++;
         if (ws != null) { ws.cancel(); ws = null; }
         handler.removeCallbacksAndMessages(null);
+        ingestExec.execute(() -> { drain(); queue.close(); }); // delivered frames still get applied
+        ingestExec.shutdown();
         super.onDestroy();
     }
 
@@ -96,7 +133,8 @@ public class MessageService extends Service {
         final int gen = ++wsGeneration;
 
         if (client == null) {
-            client = new OkHttpClient.Builder()
+            // derived from the shared client: same pool, TLS sessions and dispatcher
+            client = Http.client().newBuilder()
                     .readTimeout(0, TimeUnit.MILLISECONDS)
                     .pingInterval(30, TimeUnit.SECONDS)
                     .build();
@@ -105,17 +143,17 @@ public class MessageService extends Service {
         try {
             String base  = normalizeBase(ip);
             String wsUrl = toWs(base) + "/v1/receive/" + URLEncoder.encode(number, "UTF-8");
-            Request req  = Auth.apply(new Request.Builder().url(wsUrl)).build();
+            Request req  = Http.request(wsUrl).build();
             ws = client.newWebSocket(req, new WebSocketListener() {
                 @Override public void onOpen(WebSocket s, Response r) {
                     if (gen != wsGeneration) { s.cancel(); return; }
                     retrySec = 1;
-                    // reconnect = catch up what the socket missed + retry unreported sends
+                    // reconnect = catch up what the socket missed + retry waiting sends and reports
                     new Thread(() -> {
                         Repo repo = Repo.get(MessageService.this);
                         repo.catchUp((peerKey, count, snippet) -> {
                             SharedPreferences p2 = getSharedPreferences("signalberry", MODE_PRIVATE);
-                            if (p2.getBoolean("mute_" + peerKey, false)) return;
+                            if (repo.peerState.muted(peerKey)) return;
                             String name = p2.getString("contact_name_" + peerKey, peerKey);
                             String num  = p2.getString("contact_num_" + peerKey, "");
                             String uuid = p2.getString("contact_uuid_" + peerKey, "");
@@ -124,6 +162,7 @@ public class MessageService extends Service {
                         });
                         repo.drainReportQueue();
                     }, "ws-catchup").start();
+                    Repo.get(MessageService.this).retrySendsNow();
                 }
                 @Override public void onMessage(WebSocket s, String text) {
                     if (gen == wsGeneration) handleFrame(text);
@@ -149,29 +188,110 @@ public class MessageService extends Service {
         retrySec = Math.min(retrySec * 2, 60);
     }
 
-    // ── envelope handling: parse → Repo → maybe notify ──────────────────────
+    // ── envelope handling: queue → parse → batch → Repo → maybe notify ──────
 
+    /** Socket reader thread: enqueue only, so ingest never stalls the socket. */
     private void handleFrame(String raw) {
+        boolean ok = queue.offer(raw, System.currentTimeMillis());
+        if (ok == journalFailed) {
+            journalFailed = !ok;
+            DebugLog.log(ok ? "ingest journal writable again"
+                            : "ingest journal write failed; holding frames in memory");
+        }
+        int depth = queue.depth();
+        try {
+            // first frame of a burst opens the window; a full batch drains now
+            if (depth == 1) ingestExec.schedule(this::drain, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+            else if (depth == BATCH_MAX) ingestExec.execute(this::drain);
+        } catch (java.util.concurrent.RejectedExecutionException ignored) {} // service destroyed
+    }
+
+    /** Runs on ingestExec only, so batches apply in arrival order. Empties the
+     *  queue, including whatever arrives while it runs. */
+    private void drain() {
+        while (true) {
+            List<String> frames;
+            try {
+                frames = queue.poll(queue.depth() > BACKLOG_MAX ? BACKLOG_MAX : BATCH_MAX);
+            } catch (Exception e) {
+                queue.unpoll();
+                retryDrain("ingest queue read failed: " + e);
+                return;
+            }
+            if (frames.isEmpty()) break;
+            List<Wire.Envelope> envs = new ArrayList<>(frames.size());
+            for (String raw : frames) {
+                try {
+                    Wire.Envelope env = Wire.decodeFrame(raw);
+                    if (env != null) envs.add(env);
+                } catch (Exception ignored) {}
+            }
+            List<Repo.IngestResult> results = null;
+            if (!envs.isEmpty()) {
+                try {
+                    results = Repo.get(this).ingestBatch(envs);
+                } catch (Exception e) {
+                    // no ack: the frames stay at the head for the retry
+                    queue.unpoll();
+                    retryDrain("ingest batch of " + envs.size() + " failed: " + e);
+                    return;
+                }
+            }
+            queue.ack(); // committed — the queue may let go of these frames
+            ingestRetryMs = INGEST_RETRY_MIN_MS;
+            if (results != null)
+                for (int i = 0; i < envs.size(); i++) maybeNotify(envs.get(i), results.get(i));
+            reportQueue();
+        }
+        reportQueue();
+    }
+
+    /** ingestExec: a failed pass can't count on the next frame to kick the
+     *  worker (that only happens at depth 1 or BATCH_MAX), so it schedules its
+     *  own retry, backed off, one at a time. */
+    private void retryDrain(String why) {
+        DebugLog.log(why + "; retry in " + ingestRetryMs + "ms");
+        if (retryQueued) return;
+        retryQueued = true;
         try {
-            JSONObject root = new JSONObject(raw);
-            JSONObject env  = root.optJSONObject("envelope");
-            if (env == null) return;
+            ingestExec.schedule(() -> { retryQueued = false; drain(); },
+                    ingestRetryMs, TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.RejectedExecutionException ignored) {} // service destroyed
+        ingestRetryMs = Math.min(ingestRetryMs * 2, INGEST_RETRY_MAX_MS);
+    }
 
-            Repo.IngestResult r = Repo.get(this).ingest(env);
+    /** Queue metrics: spill transitions, and lag while the oldest frame is stale. */
+    private void reportQueue() {
+        boolean spilling = queue.spilling();
+        if (spilling != spillLogged) {
+            spillLogged = spilling;
+            DebugLog.log(spilling ? "ingest queue spilling to journal, depth " + queue.depth()
+                                  : "ingest journal drained, " + queue.spilledTotal() + " frames spilled so far");
+        }
+        long now = System.currentTimeMillis();
+        long age = queue.oldestAgeMs(now);
+        if (age > LAG_WARN_MS && now - lastLagLog > LAG_LOG_EVERY_MS) {
+            lastLagLog = now;
+            DebugLog.log("ingest lag: depth " + queue.depth() + ", oldest " + age + "ms");
+        }
+    }
+
+    private void maybeNotify(Wire.Envelope env, Repo.IngestResult r) {
+        try {
             if (r == null || !r.newMessage || !"in".equals(r.dir)) return;
 
             SharedPreferences prefs = getSharedPreferences("signalberry", MODE_PRIVATE);
             String openPeer = prefs.getString("open_chat_peer", "");
             if (r.peerKey.equals(openPeer)) return;
-            if (prefs.getBoolean("mute_" + r.peerKey, false)) return;
+            if (Repo.get(this).peerState.muted(r.peerKey)) return;
 
             String name = prefs.getString("contact_name_" + r.peerKey, "");
-            String srcNum  = env.optString("sourceNumber", "");
-            String srcUuid = env.optString("sourceUuid", "");
+            String srcNum  = env.sourceNumber;
+            String srcUuid = env.sourceUuid;
             if (isEmpty(name)) name = isEmpty(srcNum) ? shortUuid(srcUuid) : srcNum;
 
             showMessageNotif(r.peerKey, name, r.snippet, srcNum, srcUuid);
-            Repo.get(this).advanceNotifiedTs(r.peerKey, env.optLong("timestamp", 0));
+            Repo.get(this).advanceNotifiedTs(r.peerKey, env.timestamp);
         } catch (Exception ignored) {}
     }
 
@@ -179,9 +299,7 @@ public class MessageService extends Service {
 
     private void showMessageNotif(String peerKey, String sender, String body,
                                   String number, String uuid) {
-        SharedPreferences prefs = getSharedPreferences("signalberry", MODE_PRIVATE);
-        int count = prefs.getInt("notif_count_" + peerKey, 0) + 1;
-        prefs.edit().putInt("notif_count_" + peerKey, count).apply();
+        int count = Repo.get(this).peerState.bumpNotifCount(peerKey);
 
         // back stack: Messages behind Chat, so back from a cold-start
         // notification lands on the conversation list, not the launcher
@@ -211,10 +329,9 @@ public class MessageService extends Service {
         if (nm != null) nm.notify(peerKey.hashCode(), notif);
     }
 
-    /** Chat calls this (via Repo prefs) when a thread is opened. */
+    /** Chat calls this when a thread is opened. */
     static void clearNotification(Context ctx, String peerKey) {
-        ctx.getSharedPreferences("signalberry", Context.MODE_PRIVATE)
-                .edit().remove("notif_count_" + peerKey).apply();
+        Repo.get(ctx).peerState.clearNotifCount(peerKey);
         NotificationManager nm = (NotificationManager) ctx.getSystemService(Context.NOTIFICATION_SERVICE);
         if (nm != null) nm.cancel(peerKey.hashCode());
     }
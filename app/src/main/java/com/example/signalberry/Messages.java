@@ -49,6 +49,16 @@ public class Messages extends AppCompatActivity {
     private EditText search;
     private boolean isLoading = false;
 
+    /** Global message search: hits per conversation, conversations in the
+     *  order they first turned up. Paged in lazily as the list scrolls. */
+    private static final int HIT_PAGE = 50;
+    private final Map<String, List<Map<String, String>>> hitGroups = new LinkedHashMap<>();
+    private String hitQuery = "";
+    private int hitOffset;
+    private boolean hitsMore, hitsLoading;
+    private int hitGen; // drops pages of superseded queries
+    private final Runnable hitSearchRun = () -> searchMessages(search.getText().toString(), true);
+
     private Handler handler;
 
     private String restBase;
@@ -75,9 +85,12 @@ public class Messages extends AppCompatActivity {
             rebuildListFromDb();
         }
     };
-    private final Repo.Listener repoListener = new Repo.Listener() {
-        @Override public void onItemInserted(String peerKey) { scheduleRebuild(); }
-        @Override public void onItemChanged(String peerKey, long serverTs) { scheduleRebuild(); }
+    private final ChangeBus.Listener repoListener = new ChangeBus.Listener() {
+        @Override public void onChanges(java.util.Collection<ChangeBus.Change> changes) {
+            // receipts and reactions don't touch the list: skip the rebuild
+            for (ChangeBus.Change c : changes)
+                if (c.summaryChanged) { scheduleRebuild(); return; }
+        }
         @Override public void onEphemeral(String peerKey, String kind) {
             if (kind != null && kind.startsWith("api_mismatch")) {
                 handler.post(() -> Toast.makeText(Messages.this,
@@ -127,6 +140,8 @@ public class Messages extends AppCompatActivity {
                     .putExtra("peer_uuid",   peerUuid)
                     .putExtra("peer_group",  item.get("group_key"));
             if (demoOn) intent.putExtra("demo_index", position);
+            if (item.get("jump_ts") != null) // a message hit: open at it
+                intent.putExtra("jump_ts", Long.parseLong(item.get("jump_ts")));
             startActivity(intent);
         });
 
@@ -140,8 +155,7 @@ public class Messages extends AppCompatActivity {
             String key = notEmpty(gk) ? gk
                     : PeerKeys.get(this).resolve(item.get("number"), item.get("uuid"));
             if (isEmpty(key)) return true;
-            boolean muted = prefs.getBoolean("mute_" + key, false);
-            boolean hasAlias = notEmpty(prefs.getString("alias_" + key, ""));
+            boolean muted = repo.peerState.muted(key);
             new AlertDialog.Builder(this)
                     .setTitle(item.get("name"))
                     .setItems(new String[]{
@@ -153,7 +167,7 @@ public class Messages extends AppCompatActivity {
                         if (w == 0) {
                             promptSetAlias(key, item.get("name"));
                         } else if (w == 1) {
-                            prefs.edit().putBoolean("mute_" + key, !muted).apply();
+                            repo.peerState.setMuted(key, !muted);
                         } else if (w == 2) {
                             new AlertDialog.Builder(this)
                                     .setMessage("Delete all messages in this conversation from this device? "
@@ -203,6 +217,13 @@ public class Messages extends AppCompatActivity {
         avatarCache = new AvatarCache(getCacheDir(), restBase, myNumber);
         adapter = new MessagesAdapter(this, visible, avatarCache, prefs.getBoolean("demo_mode", false));
         list.setAdapter(adapter);
+        list.setOnScrollListener(new android.widget.AbsListView.OnScrollListener() {
+            @Override public void onScrollStateChanged(android.widget.AbsListView v, int state) {}
+            @Override public void onScroll(android.widget.AbsListView v, int first, int count, int total) {
+                if (hitsMore && !hitsLoading && first + count >= total - 10)
+                    searchMessages(hitQuery, false);
+            }
+        });
 
         rebuildListFromDb();   // instant paint from cache
         loadSelfAvatar();
@@ -246,7 +267,11 @@ public class Messages extends AppCompatActivity {
         // Search filter
         search.addTextChangedListener(new TextWatcher() {
             @Override public void beforeTextChanged(CharSequence s, int st, int c, int a) {}
-            @Override public void onTextChanged(CharSequence s, int st, int b, int c) { filter(s.toString()); }
+            @Override public void onTextChanged(CharSequence s, int st, int b, int c) {
+                filter(s.toString());
+                handler.removeCallbacks(hitSearchRun);
+                handler.postDelayed(hitSearchRun, 250); // debounce keystrokes
+            }
             @Override public void afterTextChanged(Editable s) {}
         });
     }
@@ -395,10 +420,11 @@ public class Messages extends AppCompatActivity {
                 String snippet = s.second[0];
                 String time    = s.second[1];
                 String ts      = s.second[2];
+                String unread  = s.second[3];
                 boolean isSelf = notEmpty(myNumber) && key.equals(digits(myNumber));
                 // alias wins; the self thread gets "Note to Self" like official
                 // Signal; others fall back contact name → key
-                String name = prefs.getString("alias_" + key, "");
+                String name = repo.peerState.alias(key);
                 if (isEmpty(name) && isSelf) name = "Note to Self";
                 if (isEmpty(name)) synchronized (nameByPeerKey) { name = nameByPeerKey.get(key); }
                 if (isEmpty(name)) name = prefs.getString("contact_name_" + key,
@@ -406,9 +432,8 @@ public class Messages extends AppCompatActivity {
                 String num    = prefs.getString("contact_num_" + key, "");
                 String uuid   = prefs.getString("contact_uuid_" + key, "");
                 String avatar = prefs.getString("contact_avatar_" + key, "");
-                long readTs   = prefs.getLong("read_ts_" + key, 0);
-                int unread    = repo.db.countUnread(key, readTs);
                 Map<String, String> row = new HashMap<>();
+                row.put("key",         key);
                 row.put("name",        name);
                 row.put("snippet",     snippet);
                 row.put("time",        time);
@@ -425,7 +450,7 @@ public class Messages extends AppCompatActivity {
                     if (prefs.getBoolean("group_hidden_" + key, false))
                         prefs.edit().remove("group_hidden_" + key).apply();
                 }
-                row.put("unread",      String.valueOf(unread));
+                row.put("unread",      unread);
                 rows.add(row);
             }
 
@@ -440,6 +465,8 @@ public class Messages extends AppCompatActivity {
     }
 
     // ---------------- Search filter (mutates the bound adapter's list) ----------------
+    /** Conversations whose name or snippet matches, then the message hits of
+     *  the running global search, grouped per conversation. */
     private void filter(String q) {
         q = q.toLowerCase(Locale.US).trim();
         visible.clear();
@@ -452,9 +479,66 @@ public class Messages extends AppCompatActivity {
                 visible.add(m);
             }
         }
+        if (!q.isEmpty() && q.equalsIgnoreCase(hitQuery))
+            for (List<Map<String, String>> hits : hitGroups.values()) visible.addAll(hits);
         adapter.notifyDataSetChanged();
     }
 
+    /** Message bodies across every thread, from the FTS index (SearchIndex),
+     *  HIT_PAGE at a time. fresh starts a new query; otherwise the next page. */
+    private void searchMessages(String q, boolean fresh) {
+        final String query = q.trim();
+        if (fresh) {
+            hitGen++;
+            hitGroups.clear();
+            hitQuery = query;
+            hitOffset = 0;
+            hitsMore = hitsLoading = false;
+            if (SearchIndex.matchQuery(query) == null) { filter(query); return; }
+        } else if (!hitsMore || hitsLoading) {
+            return;
+        }
+        hitsLoading = true;
+        final int gen = hitGen, offset = hitOffset;
+        rebuildExec.execute(() -> {
+            final List<android.util.Pair<String, String[]>> page = repo.db.searchAll(query, HIT_PAGE, offset);
+            runOnUiThread(() -> {
+                if (gen != hitGen) return;
+                hitsLoading = false;
+                hitOffset = offset + page.size();
+                hitsMore = page.size() == HIT_PAGE;
+                for (android.util.Pair<String, String[]> h : page) {
+                    List<Map<String, String>> group = hitGroups.get(h.first);
+                    if (group == null) hitGroups.put(h.first, group = new ArrayList<>());
+                    group.add(hitRow(h.first, h.second));
+                }
+                filter(search.getText().toString());
+            });
+        });
+    }
+
+    /** A hit renders as its conversation's row with the matching message as
+     *  the snippet; tapping it opens the chat at that message. */
+    private Map<String, String> hitRow(String key, String[] hit) {
+        Map<String, String> row = null;
+        for (Map<String, String> m : all)
+            if (key.equals(m.get("key"))) { row = new HashMap<>(m); break; }
+        if (row == null) {
+            row = new HashMap<>();
+            row.put("key", key);
+            row.put("name", key);
+            if (key.startsWith("group:")) row.put("group_key", key);
+            else if (PeerKeys.isUuidKey(key)) row.put("uuid", key);
+            else row.put("number", key);
+        }
+        row.put("snippet", hit[0]);
+        row.put("time",    hit[1]);
+        row.put("ts",      hit[2]);
+        row.put("jump_ts", hit[2]);
+        row.put("unread",  "0");
+        return row;
+    }
+
     // ---------------- Self avatar ----------------
     // ── Settings: toggle grid + bottom actions (built in code, no Material) ──
 
@@ -701,7 +785,7 @@ public class Messages extends AppCompatActivity {
     private void promptSetAlias(String key, String current) {
         final EditText input = new EditText(this);
         input.setSingleLine(true);
-        String existing = prefs.getString("alias_" + key, "");
+        String existing = repo.peerState.alias(key);
         input.setText(existing);
         input.setSelection(input.getText().length());
         input.setHint("Name for this contact");
@@ -711,13 +795,12 @@ public class Messages extends AppCompatActivity {
                 .setView(input)
                 .setPositiveButton("Save", (d, w) -> {
                     String v = input.getText().toString().trim();
-                    if (v.isEmpty()) prefs.edit().remove("alias_" + key).apply();
-                    else prefs.edit().putString("alias_" + key, v).apply();
+                    repo.peerState.setAlias(key, v);
                     rebuildListFromDb();
                 })
                 .setNeutralButton(isEmpty(existing) ? null : "Clear",
                         isEmpty(existing) ? null : (d, w) -> {
-                            prefs.edit().remove("alias_" + key).apply();
+                            repo.peerState.setAlias(key, "");
                             rebuildListFromDb();
                         })
                 .setNegativeButton("Cancel", null)
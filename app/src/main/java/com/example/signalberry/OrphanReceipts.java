@@ -0,0 +1,88 @@
+package com.example.signalberry;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.Map;
+
+/**
+ * Receipts that beat their target row: the send hasn't confirmed yet (its
+ * row is still pending, keyed by nonce) or hasn't been confirmed in this
+ * process at all (SendQueue resumes jobs after a restart). Parked per
+ * (peer, ts) at the highest status seen and claimed when the send confirms.
+ *
+ * Bounded: rows expire after {@link #TTL_MS} and only the newest
+ * {@link #MAX_ROWS} are kept — a receipt whose send never confirms (or whose
+ * target lives on another device) must not accumulate forever.
+ * Writer thread only (see DbWriter).
+ */
+final class OrphanReceipts {
+
+    static final String T = "orphan_receipts";
+
+    static final long TTL_MS = 24 * 60 * 60_000L;
+    static final int MAX_ROWS = 2000;
+
+    private final MessageDatabase db;
+
+    OrphanReceipts(MessageDatabase db) { this.db = db; }
+
+    static void createTable(SQLiteDatabase d) {
+        d.execSQL("CREATE TABLE IF NOT EXISTS " + T + "(" +
+                "peer_key  TEXT    NOT NULL," +
+                "ts        INTEGER NOT NULL," +
+                "status    INTEGER NOT NULL," +
+                "parked_at INTEGER NOT NULL," +
+                "PRIMARY KEY(peer_key, ts))");
+        d.execSQL("CREATE INDEX IF NOT EXISTS idx_orphan_parked ON " + T + "(parked_at)");
+    }
+
+    /** Park one peer's unmatched receipts (ts → status), keeping the higher
+     *  status of a repeat. */
+    void park(String peerKey, Map<Long, Integer> receipts, long now) {
+        SQLiteDatabase d = db.getWritableDatabase();
+        for (Map.Entry<Long, Integer> e : receipts.entrySet()) {
+            // no UPSERT before SQLite 3.24: REPLACE carrying over the old max
+            d.execSQL("INSERT OR REPLACE INTO " + T + "(peer_key, ts, status, parked_at) VALUES(?,?," +
+                    "MAX(?, COALESCE((SELECT status FROM " + T + " WHERE peer_key=? AND ts=?), 0)),?)",
+                    new Object[]{peerKey, e.getKey(), (long) e.getValue(), peerKey, e.getKey(), now});
+        }
+    }
+
+    /** The parked status for (peer, ts), removing it; 0 when none. */
+    int claim(String peerKey, long ts) {
+        SQLiteDatabase d = db.getWritableDatabase();
+        String[] args = {peerKey, String.valueOf(ts)};
+        Cursor c = d.rawQuery("SELECT status FROM " + T + " WHERE peer_key=? AND ts=?", args);
+        int status;
+        try {
+            if (!c.moveToFirst()) return 0;
+            status = c.getInt(0);
+        } finally {
+            c.close();
+        }
+        d.delete(T, "peer_key=? AND ts=?", args);
+        return status;
+    }
+
+    /** Drop expired rows, then everything past the newest {@link #MAX_ROWS}. */
+    void prune(long now) {
+        SQLiteDatabase d = db.getWritableDatabase();
+        d.delete(T, "parked_at<?", new String[]{String.valueOf(now - TTL_MS)});
+        d.execSQL("DELETE FROM " + T + " WHERE rowid IN (SELECT rowid FROM " + T +
+                " ORDER BY parked_at DESC LIMIT -1 OFFSET " + MAX_ROWS + ")");
+    }
+
+    /** Re-key: a uuid key's parked receipts follow its rows to the number key. */
+    void rekey(String uuidKey, String numberKey) {
+        db.getWritableDatabase().execSQL("UPDATE OR IGNORE " + T + " SET peer_key=? WHERE peer_key=?",
+                new Object[]{numberKey, uuidKey});
+        db.getWritableDatabase().delete(T, "peer_key=?", new String[]{uuidKey});
+    }
+
+    /** Purge: null clears every peer. */
+    void clear(String peerKey) {
+        if (peerKey == null) db.getWritableDatabase().delete(T, null, null);
+        else db.getWritableDatabase().delete(T, "peer_key=?", new String[]{peerKey});
+    }
+}
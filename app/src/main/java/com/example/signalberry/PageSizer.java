@@ -0,0 +1,110 @@
+package com.example.signalberry;
+
+/**
+ * Picks the /v2/changes {@code limit} from what recent pages cost. Elapsed
+ * time is modelled as round-trip + rows × per-row cost; the limit aims for a
+ * response time well inside the HTTP read timeout and under a byte cap (a
+ * Q10 holds the whole page as one String).
+ *
+ * Round-trip and per-row cost are the intercept and slope of a least-squares
+ * fit over the last few pages of any size, so no single page can become its
+ * own round-trip floor. Until two sizes have been seen the whole elapsed time
+ * counts as per-row cost, which can only under-grow.
+ *
+ * Only a FULL page teaches anything about larger sizes — a short page just
+ * means the feed ran dry — so growth happens on full pages, at most 2× per
+ * page, and never after a page that overran the target. Shrinking is
+ * immediate, and a timeout halves the limit. Pure Java so the policy is
+ * unit-testable; not thread-safe (one prefetch thread owns it).
+ */
+final class PageSizer {
+
+    private final int min, max;
+    private final long targetMs;
+    private final long maxBytes;
+    private int limit;
+    private double bytesPerRow = -1;  // EWMA over full pages, -1 = none yet
+
+    /** Recent (rows, elapsed) samples, a ring. */
+    private static final int SAMPLES = 8;
+    private final long[] sampleRows = new long[SAMPLES], sampleMs = new long[SAMPLES];
+    private int samples, ring;
+    /** Last fit: fixed per-request cost, and cost per row. */
+    private double rttMs, msPerRow;
+
+    PageSizer(int min, int max, int initial, long targetMs, long maxBytes) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.targetMs = targetMs;
+        this.maxBytes = maxBytes;
+        this.limit = clamp(initial);
+    }
+
+    int limit() { return limit; }
+
+    /** Feed one page's measurements. @return true if the limit changed. */
+    boolean onPage(int requested, int rows, long bytes, long elapsedMs) {
+        if (rows <= 0) return false;
+        sample(rows, elapsedMs);
+        int next = limit;
+        if (rows >= requested) {
+            fit();
+            double b = Math.max(1, bytes) / (double) rows;
+            bytesPerRow = bytesPerRow < 0 ? b : (bytesPerRow + b) / 2;
+            double budget = Math.max(targetMs - rttMs, targetMs / 4.0);
+            double ideal = Math.min(budget / msPerRow, maxBytes / bytesPerRow);
+            next = (int) Math.min(ideal, limit * 2.0);
+        }
+        if (elapsedMs > targetMs) {
+            // the page ran long (the link itself, if it was short): no growth,
+            // and at least a proportional cut
+            next = Math.min(next, (int) (limit * (double) targetMs / elapsedMs));
+        }
+        return set(next);
+    }
+
+    /** A page request timed out. @return true if the limit changed. */
+    boolean onTimeout() { return set(limit / 2); }
+
+    double bytesPerRow() { return bytesPerRow; }
+
+    private void sample(int rows, long elapsedMs) {
+        sampleRows[ring] = rows;
+        sampleMs[ring] = elapsedMs;
+        ring = (ring + 1) % SAMPLES;
+        if (samples < SAMPLES) samples++;
+    }
+
+    /** elapsed = rtt + rows × msPerRow by least squares. Without a usable
+     *  slope (one size seen, or a negative one from noise) rtt is 0 and the
+     *  per-row cost is the plain average. */
+    private void fit() {
+        double sr = 0, se = 0, srr = 0, sre = 0;
+        long minMs = Long.MAX_VALUE;
+        for (int i = 0; i < samples; i++) {
+            sr += sampleRows[i];
+            se += sampleMs[i];
+            srr += (double) sampleRows[i] * sampleRows[i];
+            sre += (double) sampleRows[i] * sampleMs[i];
+            minMs = Math.min(minMs, sampleMs[i]);
+        }
+        double den = samples * srr - sr * sr;
+        double slope = den > 0 ? (samples * sre - sr * se) / den : 0;
+        if (slope > 0) {
+            rttMs = Math.max(0, Math.min(minMs, (se - slope * sr) / samples));
+            msPerRow = slope;
+        } else {
+            rttMs = 0;
+            msPerRow = Math.max(1, se) / sr;
+        }
+    }
+
+    private boolean set(int next) {
+        next = clamp(next);
+        if (next == limit) return false;
+        limit = next;
+        return true;
+    }
+
+    private int clamp(int v) { return Math.max(min, Math.min(max, v)); }
+}
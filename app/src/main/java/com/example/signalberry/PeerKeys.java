@@ -27,10 +27,13 @@ final class PeerKeys {
     }
 
     private static final String PREFS = "peer_map";
+    /** uuid → the number its rows were last folded into (see markApplied). */
+    private static final String PREFS_APPLIED = "peer_map_applied";
 
     private static PeerKeys instance;
 
     private final SharedPreferences prefs;
+    private final SharedPreferences applied;
     private final Map<String, String> uuidToNumber = new HashMap<>();
     private Listener listener;
 
@@ -41,6 +44,7 @@ final class PeerKeys {
 
     private PeerKeys(Context ctx) {
         prefs = ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        applied = ctx.getSharedPreferences(PREFS_APPLIED, Context.MODE_PRIVATE);
         for (Map.Entry<String, ?> e : prefs.getAll().entrySet()) {
             Object v = e.getValue();
             if (v instanceof String) uuidToNumber.put(e.getKey(), (String) v);
@@ -51,6 +55,17 @@ final class PeerKeys {
 
     synchronized Map<String, String> allMappings() { return new HashMap<>(uuidToNumber); }
 
+    /** The re-key for this mapping completed; startup replay may skip it. */
+    void markApplied(String uuidKey, String numberKey) {
+        applied.edit().putString(uuidKey, numberKey).apply();
+    }
+
+    /** Whether this exact mapping was already folded in (a re-learned number
+     *  for the same uuid is not). */
+    boolean isApplied(String uuidKey, String numberKey) {
+        return numberKey.equals(applied.getString(uuidKey, null));
+    }
+
     static boolean isUuidKey(String key) { return PeerKey.isUuidKey(key); }
 
     /** Normalize a single identifier — see {@link PeerKey#normalize}. */
@@ -0,0 +1,277 @@
+package com.example.signalberry;
+
+import android.content.ContentValues;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-peer watermarks and flags (read / notified / receipted / cleared ts,
+ * notification count, mute, alias): one row per peer in peer_state, held in
+ * memory. Reads never touch disk; every change updates the snapshot and
+ * queues an UPSERT of that one row on the writer's BULK lane, in order.
+ *
+ * Replaces seven families of SharedPreferences keys — with hundreds of peers
+ * that XML was parsed on every process start and rewritten whole on every
+ * read marker. Migrated from prefs once, on first load.
+ */
+final class PeerState {
+
+    static final String T = "peer_state";
+
+    static final class Entry {
+        long readTs, notifiedTs, receiptedTs, clearedTs;
+        int notifCount;
+        boolean muted;
+        String alias = "";
+
+        private Entry copy() {
+            Entry e = new Entry();
+            e.readTs = readTs; e.notifiedTs = notifiedTs;
+            e.receiptedTs = receiptedTs; e.clearedTs = clearedTs;
+            e.notifCount = notifCount; e.muted = muted; e.alias = alias;
+            return e;
+        }
+    }
+
+    private static final Entry NONE = new Entry();
+
+    private final MessageDatabase db;
+    private final DbWriter writer;
+    private final Map<String, Entry> peers = new HashMap<>();
+
+    PeerState(MessageDatabase db, DbWriter writer, SharedPreferences prefs) {
+        this.db = db;
+        this.writer = writer;
+        if (!prefs.getBoolean("peer_state_migrated", false)) migrateFromPrefs(prefs);
+        Cursor c = db.getReadableDatabase().rawQuery("SELECT peer_key, read_ts, notified_ts, "
+                + "receipted_ts, cleared_ts, notif_count, muted, alias FROM " + T, null);
+        try {
+            while (c.moveToNext()) {
+                Entry e = new Entry();
+                e.readTs      = c.getLong(1);
+                e.notifiedTs  = c.getLong(2);
+                e.receiptedTs = c.getLong(3);
+                e.clearedTs   = c.getLong(4);
+                e.notifCount  = c.getInt(5);
+                e.muted       = c.getInt(6) != 0;
+                e.alias       = c.isNull(7) ? "" : c.getString(7);
+                peers.put(c.getString(0), e);
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    static void createTable(SQLiteDatabase d) {
+        d.execSQL("CREATE TABLE IF NOT EXISTS " + T + "(" +
+                "peer_key     TEXT PRIMARY KEY," +
+                "read_ts      INTEGER NOT NULL DEFAULT 0," +
+                "notified_ts  INTEGER NOT NULL DEFAULT 0," +
+                "receipted_ts INTEGER NOT NULL DEFAULT 0," +
+                "cleared_ts   INTEGER NOT NULL DEFAULT 0," + // thread wiped up to here
+                "notif_count  INTEGER NOT NULL DEFAULT 0," +
+                "muted        INTEGER NOT NULL DEFAULT 0," +
+                "alias        TEXT    NOT NULL DEFAULT ''" +
+                ")");
+    }
+
+    // ── reads (snapshot only) ─────────────────────────────────────────────────
+
+    synchronized long readTs(String peer)      { return get(peer).readTs; }
+    synchronized long notifiedTs(String peer)  { return get(peer).notifiedTs; }
+    synchronized long receiptedTs(String peer) { return get(peer).receiptedTs; }
+    synchronized long clearedTs(String peer)   { return get(peer).clearedTs; }
+    synchronized boolean muted(String peer)    { return get(peer).muted; }
+    synchronized String alias(String peer)     { return get(peer).alias; }
+
+    synchronized Map<String, Long> allReadTs() {
+        Map<String, Long> out = new HashMap<>();
+        for (Map.Entry<String, Entry> e : peers.entrySet())
+            if (e.getValue().readTs > 0) out.put(e.getKey(), e.getValue().readTs);
+        return out;
+    }
+
+    // ── writes (snapshot + queued row upsert) ─────────────────────────────────
+
+    /** Raise read_ts (and notified_ts with it). @return true if read_ts moved. */
+    synchronized boolean advanceRead(String peer, long ts) {
+        Entry e = edit(peer);
+        boolean advanced = ts > e.readTs;
+        if (advanced) e.readTs = ts;
+        // read implies notified — a reconnect must not re-notify read messages
+        boolean notified = ts > e.notifiedTs;
+        if (notified) e.notifiedTs = ts;
+        if (advanced || notified) persist(peer, e);
+        return advanced;
+    }
+
+    synchronized void advanceNotified(String peer, long ts) {
+        Entry e = edit(peer);
+        if (ts <= e.notifiedTs) return;
+        e.notifiedTs = ts;
+        persist(peer, e);
+    }
+
+    synchronized void advanceReceipted(String peer, long ts) {
+        Entry e = edit(peer);
+        if (ts <= e.receiptedTs) return;
+        e.receiptedTs = ts;
+        persist(peer, e);
+    }
+
+    synchronized void setCleared(String peer, long ts) {
+        Entry e = edit(peer);
+        e.clearedTs = ts;
+        persist(peer, e);
+    }
+
+    /** @return the new count. */
+    synchronized int bumpNotifCount(String peer) {
+        Entry e = edit(peer);
+        e.notifCount++;
+        persist(peer, e);
+        return e.notifCount;
+    }
+
+    synchronized void clearNotifCount(String peer) {
+        Entry e = peers.get(peer);
+        if (e == null || e.notifCount == 0) return;
+        e.notifCount = 0;
+        persist(peer, e);
+    }
+
+    synchronized void setMuted(String peer, boolean muted) {
+        Entry e = edit(peer);
+        e.muted = muted;
+        persist(peer, e);
+    }
+
+    synchronized void setAlias(String peer, String alias) {
+        Entry e = edit(peer);
+        e.alias = alias == null ? "" : alias.trim();
+        persist(peer, e);
+    }
+
+    /** uuid-keyed thread re-keyed onto its number: fold the old row into the
+     *  new one (timestamps take the max, mute sticks, alias fills a gap). */
+    synchronized void merge(String fromPeer, String intoPeer) {
+        Entry from = peers.remove(fromPeer);
+        if (from == null) return;
+        Entry to = edit(intoPeer);
+        to.readTs      = Math.max(to.readTs, from.readTs);
+        to.notifiedTs  = Math.max(to.notifiedTs, from.notifiedTs);
+        to.receiptedTs = Math.max(to.receiptedTs, from.receiptedTs);
+        to.clearedTs   = Math.max(to.clearedTs, from.clearedTs);
+        to.muted      |= from.muted;
+        if (to.alias.isEmpty()) to.alias = from.alias;
+        persist(intoPeer, to);
+        writer.execute(DbWriter.Lane.BULK,
+                () -> db.getWritableDatabase().delete(T, "peer_key=?", new String[]{fromPeer}));
+    }
+
+    /** Purge: drop every watermark and notification count; mute and alias survive. */
+    synchronized void clearWatermarks() {
+        for (Entry e : peers.values()) {
+            e.readTs = e.notifiedTs = e.receiptedTs = e.clearedTs = 0;
+            e.notifCount = 0;
+        }
+        writer.execute(DbWriter.Lane.BULK, () -> db.getWritableDatabase().execSQL("UPDATE " + T
+                + " SET read_ts=0, notified_ts=0, receipted_ts=0, cleared_ts=0, notif_count=0"));
+    }
+
+    // ── internals ─────────────────────────────────────────────────────────────
+
+    private Entry get(String peer) {
+        Entry e = peer == null ? null : peers.get(peer);
+        return e == null ? NONE : e;
+    }
+
+    private Entry edit(String peer) {
+        Entry e = peers.get(peer);
+        if (e == null) peers.put(peer, e = new Entry());
+        return e;
+    }
+
+    /** Caller holds the monitor, so rows are queued in mutation order (one
+     *  lane is FIFO). */
+    private void persist(String peer, Entry e) {
+        final ContentValues v = values(peer, e.copy());
+        writer.execute(DbWriter.Lane.BULK, () -> {
+            try {
+                db.getWritableDatabase().insertWithOnConflict(T, null, v,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            } catch (Exception ex) {
+                DebugLog.log("peer_state write failed: " + ex);
+            }
+        });
+    }
+
+    private static ContentValues values(String peer, Entry e) {
+        ContentValues v = new ContentValues();
+        v.put("peer_key", peer);
+        v.put("read_ts", e.readTs);
+        v.put("notified_ts", e.notifiedTs);
+        v.put("receipted_ts", e.receiptedTs);
+        v.put("cleared_ts", e.clearedTs);
+        v.put("notif_count", e.notifCount);
+        v.put("muted", e.muted ? 1 : 0);
+        v.put("alias", e.alias);
+        return v;
+    }
+
+    /** One pass over the old prefs keys, one transaction, then the keys go. */
+    private void migrateFromPrefs(SharedPreferences prefs) {
+        Map<String, Entry> found = new HashMap<>();
+        SharedPreferences.Editor ed = prefs.edit();
+        for (Map.Entry<String, ?> kv : prefs.getAll().entrySet()) {
+            String k = kv.getKey();
+            Object v = kv.getValue();
+            String peer;
+            if ((peer = strip(k, "read_ts_")) != null && v instanceof Long)
+                slot(found, peer).readTs = (Long) v;
+            else if ((peer = strip(k, "notified_ts_")) != null && v instanceof Long)
+                slot(found, peer).notifiedTs = (Long) v;
+            else if ((peer = strip(k, "receipted_ts_")) != null && v instanceof Long)
+                slot(found, peer).receiptedTs = (Long) v;
+            else if ((peer = strip(k, "thread_cleared_ts_")) != null && v instanceof Long)
+                slot(found, peer).clearedTs = (Long) v;
+            else if ((peer = strip(k, "notif_count_")) != null && v instanceof Integer)
+                slot(found, peer).notifCount = (Integer) v;
+            else if ((peer = strip(k, "mute_")) != null && v instanceof Boolean)
+                slot(found, peer).muted = (Boolean) v;
+            else if ((peer = strip(k, "alias_")) != null && v instanceof String)
+                slot(found, peer).alias = (String) v;
+            else continue;
+            ed.remove(k);
+        }
+        SQLiteDatabase d = db.getWritableDatabase();
+        d.beginTransaction();
+        try {
+            for (Map.Entry<String, Entry> e : found.entrySet())
+                d.insertWithOnConflict(T, null, values(e.getKey(), e.getValue()),
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            d.setTransactionSuccessful();
+        } finally {
+            d.endTransaction();
+        }
+        // keys go only after the rows are committed: a crash in between
+        // re-runs the migration, never loses a watermark
+        ed.putBoolean("peer_state_migrated", true).apply();
+        if (!found.isEmpty()) DebugLog.log("peer_state: migrated " + found.size() + " peers from prefs");
+    }
+
+    private static String strip(String key, String prefix) {
+        return key.startsWith(prefix) && key.length() > prefix.length()
+                ? key.substring(prefix.length()) : null;
+    }
+
+    private static Entry slot(Map<String, Entry> m, String peer) {
+        Entry e = m.get(peer);
+        if (e == null) m.put(peer, e = new Entry());
+        return e;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.signalberry;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reactions, one row per (message, reactor): adding or removing one is a
+ * single-row write instead of a read-parse-rewrite of a JSON blob on the
+ * message row (the messages.reactions column this replaced in v18).
+ *
+ * reactor_key is "me", "peer" (the other side of a 1:1 thread) or
+ * {@code "peer:<key>"} (a group member, keyed as the bridge keys them), so
+ * members' reactions no longer collapse into one entry.
+ *
+ * Thread reads pick a row's reactions up in the same statement, through one
+ * primary-key probe per row ({@link #COLUMN}) — a JOIN would multiply rows
+ * and break the LIMIT-paged windows. Triggers drop a message's reactions
+ * when it is deleted or turns into a tombstone, so no delete path has to
+ * remember.
+ */
+final class Reactions {
+
+    static final String T = "reactions";
+
+    private Reactions() {}
+
+    /** Item-query column "reactions": the row's reactions packed for
+     *  {@link MessageItem#unpackReactions}, NULL when none. */
+    static final String COLUMN = "(SELECT group_concat(reactor_key||'" + MessageItem.REACTION_UNIT
+            + "'||emoji,'" + MessageItem.REACTION_RECORD + "') FROM " + T
+            + " WHERE message_id=messages.id) AS reactions";
+
+    static void createTable(SQLiteDatabase d) {
+        d.execSQL("CREATE TABLE IF NOT EXISTS " + T + "(" +
+                "message_id  INTEGER NOT NULL," +
+                "reactor_key TEXT    NOT NULL," +
+                "emoji       TEXT    NOT NULL," +
+                "PRIMARY KEY(message_id, reactor_key))");
+        d.execSQL("CREATE TRIGGER IF NOT EXISTS reactions_msg_del AFTER DELETE ON messages BEGIN " +
+                "DELETE FROM " + T + " WHERE message_id=OLD.id; END");
+        // tombstones, remote deletes, expiry, failed pendings: nothing to react to
+        d.execSQL("CREATE TRIGGER IF NOT EXISTS reactions_msg_dead AFTER UPDATE OF status ON messages " +
+                "WHEN NEW.status<0 AND OLD.status>=0 BEGIN " +
+                "DELETE FROM " + T + " WHERE message_id=NEW.id; END");
+    }
+
+    /** v17→v18: unpack every JSON blob into rows, then clear the column
+     *  (SQLite before 3.35 can't drop it). */
+    static void migrateBlobs(SQLiteDatabase d) {
+        List<Object[]> rows = new ArrayList<>();
+        Cursor c = d.rawQuery("SELECT id, reactions FROM messages WHERE reactions IS NOT NULL" +
+                " AND reactions!='{}' AND status>=0", null);
+        try {
+            while (c.moveToNext()) {
+                try {
+                    JSONObject o = new JSONObject(c.getString(1));
+                    Iterator<String> keys = o.keys();
+                    while (keys.hasNext()) {
+                        String k = keys.next();
+                        rows.add(new Object[]{c.getLong(0), k, o.getString(k)});
+                    }
+                } catch (Exception ignored) {} // a corrupt blob loses its reactions, not the upgrade
+            }
+        } finally {
+            c.close();
+        }
+        for (Object[] r : rows)
+            d.execSQL("INSERT OR REPLACE INTO " + T + "(message_id, reactor_key, emoji) VALUES(?,?,?)", r);
+        d.execSQL("UPDATE messages SET reactions=NULL WHERE reactions IS NOT NULL");
+    }
+
+    /** Duplicate rows merging: the loser's reactions move to the survivor
+     *  (the survivor's own entry wins a clash). Before deleting the loser. */
+    static void move(SQLiteDatabase d, long fromId, long toId) {
+        d.execSQL("INSERT OR IGNORE INTO " + T + "(message_id, reactor_key, emoji)" +
+                " SELECT ?, reactor_key, emoji FROM " + T + " WHERE message_id=?",
+                new Object[]{toId, fromId});
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.signalberry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Delivery/read receipts waiting for the next flush, collapsed per
+ * (peer, ts) to the highest status seen — a delivered and a read receipt
+ * for the same message in one window cost a single write. Any thread.
+ */
+final class ReceiptCoalescer {
+
+    private Map<String, Map<Long, Integer>> pending = new HashMap<>();
+    private int size;
+
+    /** @return distinct (peer, ts) targets now pending — 1 means this receipt
+     *  opened a new window. */
+    synchronized int add(String peerKey, long ts, int status) {
+        Map<Long, Integer> m = pending.get(peerKey);
+        if (m == null) pending.put(peerKey, m = new HashMap<>());
+        Integer prev = m.get(ts);
+        if (prev == null) size++;
+        if (prev == null || prev < status) m.put(ts, status);
+        return size;
+    }
+
+    /** Everything pending (peer → ts → status); the next add opens a new window. */
+    synchronized Map<String, Map<Long, Integer>> drain() {
+        Map<String, Map<Long, Integer>> out = pending;
+        pending = new HashMap<>();
+        size = 0;
+        return out;
+    }
+
+    synchronized int size() { return size; }
+}
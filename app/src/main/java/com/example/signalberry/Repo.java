@@ -12,8 +12,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.example.signalberry.Utils.*;
@@ -21,7 +26,9 @@ import static com.example.signalberry.Utils.*;
 /**
  * The single writer. Every envelope (from MessageService's WebSocket), every
  * bridge change-feed row, and every local send funnels through here — the
- * activities only read the DB and listen for granular change events.
+ * activities only read the DB and listen for granular change events. The
+ * writes themselves run as commands on one thread (DbWriter), user actions
+ * ahead of socket traffic ahead of catch-up.
  *
  * Envelope shapes are pinned from live capture 2026-06-11 (see REDESIGN.md M1):
  * /v2/send returns {"timestamp": "<string>"}; receiptMessage carries
@@ -30,15 +37,6 @@ import static com.example.signalberry.Utils.*;
  */
 final class Repo {
 
-    interface Listener {
-        /** A new message row appeared in this thread. */
-        void onItemInserted(String peerKey);
-        /** An existing row changed (status/reaction/edit/delete). */
-        void onItemChanged(String peerKey, long serverTs);
-        /** Ephemeral, non-persisted event: "typing_started" | "typing_stopped". */
-        void onEphemeral(String peerKey, String kind);
-    }
-
     private static Repo instance;
 
     static synchronized Repo get(Context ctx) {
@@ -60,29 +58,29 @@ final class Repo {
         } catch (Exception e) {
             return "Bridge unreachable, nothing deleted";
         }
-        synchronized (writeLock) {
+        writer.call(DbWriter.Lane.USER, () -> {
             db.getWritableDatabase().execSQL("DELETE FROM messages");
+            db.getWritableDatabase().execSQL("DELETE FROM " + Threads.T);
+            sendQueue.clear(null);
+            orphans.clear(null);
+            outbox.clear(null);
+            peerState.clearWatermarks(); // its row update queues behind this command
             // purge means the BYTES are gone, not just the rows — without
             // VACUUM the content lingers in SQLite free pages
             db.getWritableDatabase().execSQL("VACUUM");
-        }
+            db.checkpointTruncate();
+            return null;
+        });
         java.io.File att = new java.io.File(ctx.getFilesDir(), "att");
         java.io.File[] files = att.listFiles();
         if (files != null) for (java.io.File f : files) //noinspection ResultOfMethodCallIgnored
             f.delete();
-        SharedPreferences.Editor ed = prefs.edit();
-        for (String k : prefs.getAll().keySet())
-            if (k.startsWith("read_ts_") || k.startsWith("notified_ts_")
-                    || k.startsWith("receipted_ts_") || k.startsWith("thread_cleared_ts_")
-                    || k.startsWith("notif_count_"))
-                ed.remove(k);
         // cursor back to 0 is safe: the bridge preserves its mod_seq counter
-        ed.putLong("bridge_seq", 0).putBoolean("reconcile_done", true).apply();
+        prefs.edit().putLong("bridge_seq", 0).putBoolean("reconcile_done", true).apply();
         android.app.NotificationManager nm = (android.app.NotificationManager)
                 ctx.getSystemService(Context.NOTIFICATION_SERVICE);
         if (nm != null) nm.cancelAll();
-        main.post(() -> { synchronized (listeners) {
-            for (Listener l : listeners) l.onItemInserted(""); } });
+        bus.reload("");
         return null;
     }
 
@@ -101,130 +99,169 @@ final class Repo {
             return "Bridge unreachable, nothing deleted";
         }
         deleteThread(peerKey);
-        synchronized (writeLock) {
+        writer.call(DbWriter.Lane.USER, () -> {
+            outbox.clear(peerKey);
             db.getWritableDatabase().execSQL("VACUUM");
-        }
+            return null;
+        });
         return null;
     }
 
     /** Logout: drop the singleton so re-login gets a fresh DB handle/identity. */
     static synchronized void reset() {
         if (instance != null) {
+            instance.expiry.cancel();
+            instance.writer.shutdown();
             try { instance.db.close(); } catch (Exception ignored) {}
-            instance.io.shutdown();
             instance.reportIo.shutdown();
+            instance.feedIo.shutdown();
+            instance.sendQueue.shutdown();
             instance = null;
         }
     }
 
     final MessageDatabase db;
+    /** Per-peer watermarks, mute and alias (peer_state, cached in memory). */
+    final PeerState peerState;
     private final PeerKeys peerKeys;
     private final SharedPreferences prefs;
     private final Handler main = new Handler(Looper.getMainLooper());
-    private final List<Listener> listeners = new ArrayList<>();
-    /** Data-integrity work (re-keys, init) — must never starve behind network calls. */
-    private final ExecutorService io = Executors.newSingleThreadExecutor();
-    /** Bridge report traffic (blocking HTTP with retries) — separate lane. */
-    private final ExecutorService reportIo = Executors.newSingleThreadExecutor();
+    /** Change events for the screens, folded per frame (see ChangeBus). */
+    private final ChangeBus bus;
+    /** Every Repo write to messages.db, on one thread, user actions first
+     *  (see DbWriter). Re-keys and init ride its BULK lane. */
+    private final DbWriter writer = new DbWriter();
+    /** Bridge report traffic (outbox drain passes, backoff timers) — separate lane. */
+    private final ScheduledExecutorService reportIo = Executors.newSingleThreadScheduledExecutor();
+    /** Reports owed to the bridge, batched per drain pass. */
+    private final BridgeOutbox outbox;
+    /** Outbound sends, edits and reactions (durable; per-peer lanes). */
+    private final SendQueue sendQueue;
+    /** Each rejected job's own error, up to its sendFailed — jobs to
+     *  different peers fail concurrently. */
+    private final Map<Long, MessageSender.Rejected> rejections = new ConcurrentHashMap<>();
+    private final Object outboxLock = new Object();
+    private boolean outboxQueued;
+    private ScheduledFuture<?> outboxTimer;
+    /** Change-feed page prefetch for catchUp (network + decode, no DB writes). */
+    private final ExecutorService feedIo = Executors.newSingleThreadExecutor();
     private final AtomicInteger nonceCounter = new AtomicInteger();
-    private final Object writeLock = new Object();
     private final Object catchUpLock = new Object();
-    private final Object readTsLock = new Object();
-    /** Receipts that raced ahead of their send confirmation (peer|ts → status). */
-    private final java.util.Map<String, Integer> earlyReceipts = new HashMap<>();
+    /** Receipt lane: receipts coalesce for RECEIPT_WINDOW_MS (or until
+     *  RECEIPT_FLUSH_AT distinct targets) and apply as one RECEIPT-lane
+     *  command, so a post-reconnect storm never delays new message rows. */
+    private static final long RECEIPT_WINDOW_MS = 300;
+    private static final int RECEIPT_FLUSH_AT = 1000;
+    private final ReceiptCoalescer receipts = new ReceiptCoalescer();
+    /** Receipts that raced ahead of their send confirmation. */
+    private final OrphanReceipts orphans;
 
     private String selfNumber = "";
     private String selfUuid = "";
 
     private Repo(Context ctx) {
         db = new MessageDatabase(ctx);
+        // every committed change reaches the bus, so its frame tick doubles as
+        // the write signal the idle WAL checkpoint waits out
+        bus = new ChangeBus(r -> {
+            db.noteWrite();
+            main.postDelayed(r, ChangeBus.FRAME_MS);
+        });
+        expiry = new ExpiryTimer(main, () -> writer.execute(DbWriter.Lane.BULK, this::expireDue));
         peerKeys = PeerKeys.get(ctx);
         prefs = ctx.getSharedPreferences("signalberry", Context.MODE_PRIVATE);
+        peerState = new PeerState(db, writer, prefs);
+        outbox = new BridgeOutbox(db, writer);
+        orphans = new OrphanReceipts(db);
+        sendQueue = new SendQueue(db, writer, new SendQueue.Runner() {
+            @Override public SendQueue.Outcome run(SendQueue.Job j) { return runSend(j); }
+            @Override public void failed(SendQueue.Job j) { sendFailed(j); }
+        });
         selfNumber = digits(prefs.getString("number", ""));
         selfUuid = PeerKeys.normalize(prefs.getString("self_uuid", ""));
         peerKeys.setListener(new PeerKeys.Listener() {
             @Override public void onMappingLearned(String uuidKey, String numberKey) {
-                io.execute(() -> rekeyWithPrefs(uuidKey, numberKey));
+                writer.execute(DbWriter.Lane.BULK, () -> rekeyWithState(uuidKey, numberKey));
             }
         });
-        sweepExpiry();
-        io.execute(() -> {
-            synchronized (writeLock) { db.failStalePendings(10 * 60_000L); }
+        writer.execute(DbWriter.Lane.BULK, () -> {
+            db.syncThreadReads(peerState.allReadTs());
+            db.failStalePendings(10 * 60_000L);
+            orphans.prune(System.currentTimeMillis());
+            // one pass over known watermarks: rows read before this process
+            // (or before v16, when a sweep did the arming) get their deadline
+            for (Map.Entry<String, Long> e : peerState.allReadTs().entrySet())
+                db.armExpiry(e.getKey(), e.getValue());
+            expireDue(); // also schedules the first wake-up
+            sendQueue.pump(); // resume sends a previous process left queued
             // re-keys for mappings learned before this Repo (and its listener)
-            // existed would otherwise be permanently lost — replay them all;
-            // rekeyPeer is idempotent and cheap when nothing matches the old key
+            // existed would otherwise be permanently lost — replay the ones not
+            // marked applied, plus any whose uuid key still holds rows (an ingest
+            // that resolved the key just before the mapping landed)
             for (Map.Entry<String, String> e : peerKeys.allMappings().entrySet())
-                rekeyWithPrefs(e.getKey(), e.getValue());
+                if (!peerKeys.isApplied(e.getKey(), e.getValue()) || db.hasRows(e.getKey()))
+                    rekeyWithState(e.getKey(), e.getValue());
             drainReportQueue();
         });
     }
 
-    private void rekeyWithPrefs(String uuidKey, String numberKey) {
-        synchronized (writeLock) { db.rekeyPeer(uuidKey, numberKey); }
-        synchronized (readTsLock) {
-            SharedPreferences.Editor ed = prefs.edit();
-            for (String fam : new String[]{"read_ts_", "notified_ts_",
-                    "thread_cleared_ts_", "receipted_ts_"}) {
-                long u = prefs.getLong(fam + uuidKey, 0);
-                if (u > prefs.getLong(fam + numberKey, 0)) ed.putLong(fam + numberKey, u);
-                ed.remove(fam + uuidKey);
-            }
-            if (prefs.getBoolean("mute_" + uuidKey, false)) ed.putBoolean("mute_" + numberKey, true);
-            ed.remove("mute_" + uuidKey);
-            String alias = prefs.getString("alias_" + uuidKey, "");
-            if (notEmpty(alias) && isEmpty(prefs.getString("alias_" + numberKey, "")))
-                ed.putString("alias_" + numberKey, alias);
-            ed.remove("alias_" + uuidKey);
-            ed.apply();
+    /** Writer thread. */
+    private void rekeyWithState(String uuidKey, String numberKey) {
+        int moved = db.rekeyPeer(uuidKey, numberKey);
+        sendQueue.rekey(uuidKey, numberKey);
+        orphans.rekey(uuidKey, numberKey);
+        peerState.merge(uuidKey, numberKey);
+        if (moved > 0) {
+            db.setThreadRead(numberKey, peerState.readTs(numberKey));
+            armExpiry(numberKey); // the merged watermark may cover rows the old key held
+            bus.reload(numberKey);
+            bus.summary(uuidKey); // the old list entry is gone
         }
-        notifyInserted(numberKey);
+        peerKeys.markApplied(uuidKey, numberKey);
     }
 
-    /** The only writer of read_ts_ prefs — three components used to race here. */
+    /** The only writer of read watermarks — three components used to race here.
+     *  Any thread; the DB side (unread count, expiry arming) is queued. */
     void advanceReadTs(String peerKey, long ts) {
         if (isEmpty(peerKey) || ts <= 0) return;
-        boolean advanced = false;
-        synchronized (readTsLock) {
-            if (ts > prefs.getLong("read_ts_" + peerKey, 0)) {
-                prefs.edit().putLong("read_ts_" + peerKey, ts).apply();
-                advanced = true;
-            }
-            // read implies notified — a reconnect must not re-notify read messages
-            if (ts > prefs.getLong("notified_ts_" + peerKey, 0))
-                prefs.edit().putLong("notified_ts_" + peerKey, ts).apply();
-        }
-        if (advanced) sweepExpiry();
+        if (!peerState.advanceRead(peerKey, ts)) return;
+        // the list's unread count moves in the same step as the watermark
+        writer.execute(DbWriter.Lane.USER, () -> {
+            db.setThreadRead(peerKey, peerState.readTs(peerKey));
+            bus.summary(peerKey);
+            armExpiry(peerKey);
+        });
+        expiry.poke();
     }
 
     void advanceNotifiedTs(String peerKey, long ts) {
         if (isEmpty(peerKey) || ts <= 0) return;
-        synchronized (readTsLock) {
-            if (ts > prefs.getLong("notified_ts_" + peerKey, 0))
-                prefs.edit().putLong("notified_ts_" + peerKey, ts).apply();
-        }
+        peerState.advanceNotified(peerKey, ts);
     }
 
     /** Honor disappearing-message timers (REDESIGN exception now closed app-side;
-     *  the bridge's copy is a documented follow-up). */
-    private volatile long lastSweepMs = 0;
+     *  the bridge's copy is a documented follow-up). Rows arm as they are sent
+     *  or read; the timer wakes at the earliest deadline, nothing sweeps. */
+    private final ExpiryTimer expiry;
 
-    void sweepExpiry() {
-        long now = System.currentTimeMillis();
-        if (now - lastSweepMs < 30_000) return; // debounce: full-table scans are not free on a Q10
-        lastSweepMs = now;
-        io.execute(() -> {
-            try {
-                Map<String, Long> readTs = new HashMap<>();
-                for (Map.Entry<String, ?> e : prefs.getAll().entrySet())
-                    if (e.getKey().startsWith("read_ts_") && e.getValue() instanceof Long)
-                        readTs.put(e.getKey().substring(8), (Long) e.getValue());
-                java.util.Set<String> affected;
-                synchronized (writeLock) { affected = db.sweepExpiry(readTs); }
-                for (String pk : affected) notifyInserted(pk);
-            } catch (Exception e) {
-                DebugLog.log("expiry sweep: " + e);
-            }
-        });
+    /** Arm what the peer's watermark now covers (writer thread). */
+    private void armExpiry(String peerKey) {
+        try {
+            if (db.armExpiry(peerKey, peerState.readTs(peerKey)) > 0) expiry.offer(db.nextExpiry());
+        } catch (Exception e) {
+            DebugLog.log("expiry arm: " + e);
+        }
+    }
+
+    /** Deadline reached: expire what is due, then wait for the next one (writer thread). */
+    private void expireDue() {
+        try {
+            java.util.Set<String> affected = db.expireDue(System.currentTimeMillis());
+            expiry.reset(db.nextExpiry());
+            for (String pk : affected) bus.reload(pk);
+        } catch (Exception e) {
+            DebugLog.log("expiry: " + e);
+        }
     }
 
     void setSelf(String number, String uuid) {
@@ -234,23 +271,8 @@ final class Repo {
 
     // ── listeners ─────────────────────────────────────────────────────────────
 
-    void addListener(Listener l)    { synchronized (listeners) { listeners.add(l); } }
-    void removeListener(Listener l) { synchronized (listeners) { listeners.remove(l); } }
-
-    private void notifyInserted(String peerKey) {
-        main.post(() -> { synchronized (listeners) {
-            for (Listener l : listeners) l.onItemInserted(peerKey); } });
-    }
-
-    private void notifyChanged(String peerKey, long serverTs) {
-        main.post(() -> { synchronized (listeners) {
-            for (Listener l : listeners) l.onItemChanged(peerKey, serverTs); } });
-    }
-
-    private void notifyEphemeral(String peerKey, String kind) {
-        main.post(() -> { synchronized (listeners) {
-            for (Listener l : listeners) l.onEphemeral(peerKey, kind); } });
-    }
+    void addListener(ChangeBus.Listener l)    { bus.addListener(l); }
+    void removeListener(ChangeBus.Listener l) { bus.removeListener(l); }
 
     // ── envelope ingestion (single parser — replaces Chat/Messages/Service triplication) ──
 
@@ -268,7 +290,12 @@ final class Repo {
 
     /** @return result for message envelopes, null for everything else
      *  (receipts, typing, markers, reactions, deletes, edits). */
-    IngestResult ingest(JSONObject envelope) {
+    IngestResult ingest(Wire.Envelope envelope) {
+        return writer.call(DbWriter.Lane.LIVE, () -> ingestOne(envelope));
+    }
+
+    /** Writer thread. */
+    private IngestResult ingestOne(Wire.Envelope envelope) {
         try {
             return ingestInner(envelope);
         } catch (Exception e) {
@@ -277,22 +304,43 @@ final class Repo {
         }
     }
 
-    private IngestResult ingestInner(JSONObject env) throws Exception {
-        String srcNum  = safeOptString(env, "sourceNumber");
-        String srcUuid = safeOptString(env, "sourceUuid");
-        long envTs = env.optLong("timestamp", 0);
+    /** A WebSocket burst applied in ONE transaction — a reconnect delivering a
+     *  few hundred envelopes pays one journal commit instead of one per row.
+     *  Results line up index-for-index with the input (null where ingest()
+     *  would return null); a failing envelope is logged and skipped without
+     *  aborting its neighbours. Change events are held until the commit.
+     *  Blocks the caller (the socket's ingest thread) until the writer is done. */
+    List<IngestResult> ingestBatch(List<Wire.Envelope> envelopes) {
+        return writer.call(DbWriter.Lane.LIVE, () -> {
+            List<IngestResult> out = new ArrayList<>(envelopes.size());
+            android.database.sqlite.SQLiteDatabase d = db.getWritableDatabase();
+            bus.hold();
+            d.beginTransaction();
+            try {
+                for (Wire.Envelope env : envelopes) out.add(ingestOne(env));
+                d.setTransactionSuccessful();
+            } finally {
+                d.endTransaction();
+                bus.release();
+            }
+            return out;
+        });
+    }
+
+    /** Writer thread (as is everything it reaches). */
+    private IngestResult ingestInner(Wire.Envelope env) throws Exception {
+        String srcNum  = env.sourceNumber;
+        String srcUuid = env.sourceUuid;
+        long envTs = env.timestamp;
         if (notEmpty(srcNum) && notEmpty(srcUuid)) peerKeys.learn(srcUuid, srcNum);
 
-        JSONObject data = env.optJSONObject("dataMessage");
-        JSONObject sync = env.optJSONObject("syncMessage");
-        JSONObject receipt = env.optJSONObject("receiptMessage");
-        JSONObject typing = env.optJSONObject("typingMessage");
+        Wire.Msg data = env.dataMessage;
+        Wire.Receipt receipt = env.receipt;
+        Wire.Typing typing = env.typing;
 
         if (data != null) {
-            JSONObject gi = data.optJSONObject("groupInfo");
-            if (gi == null) gi = nestedGroupInfo(data);
-            String gid = gi != null ? gi.optString("groupId", "") : "";
-            if (gi != null && isEmpty(gid)) return null;
+            String gid = data.effectiveGroupId();
+            if (gid != null && isEmpty(gid)) return null;
             String sender = peerKeys.resolve(srcNum, srcUuid);
             String peer = notEmpty(gid) ? "group:" + gid : sender;
             if (isEmpty(peer)) return null;
@@ -300,38 +348,33 @@ final class Repo {
                     notEmpty(gid) ? sender : "");
         }
 
-        if (sync != null) {
-            JSONObject sent = sync.optJSONObject("sentMessage");
+        if (env.hasSync) {
+            Wire.Msg sent = env.sentMessage;
             if (sent != null) {
-                JSONObject sgi = sent.optJSONObject("groupInfo");
-                if (sgi == null) sgi = nestedGroupInfo(sent);
-                String sgid = sgi != null ? sgi.optString("groupId", "") : "";
-                if (sgi != null && isEmpty(sgid)) return null;
-                String destNum  = firstNonEmpty(safeOptString(sent, "destinationNumber"),
-                                                safeOptString(sent, "destination"));
-                String destUuid = safeOptString(sent, "destinationUuid");
+                String sgid = sent.effectiveGroupId();
+                if (sgid != null && isEmpty(sgid)) return null;
+                String destNum  = firstNonEmpty(sent.destinationNumber, sent.destination);
+                String destUuid = sent.destinationUuid;
                 if (notEmpty(destNum) && notEmpty(destUuid)) peerKeys.learn(destUuid, destNum);
                 String peer = notEmpty(sgid) ? "group:" + sgid : peerKeys.resolve(destNum, destUuid);
                 if (isEmpty(peer)) return null;
-                long sentTs = sent.optLong("timestamp", envTs);
+                long sentTs = sent.timestamp >= 0 ? sent.timestamp : envTs;
                 if (sentTs <= 0) return null;
                 return ingestDataMessage(peer, "out", sent, sentTs, true, "");
             }
-            JSONArray readMsgs = sync.optJSONArray("readMessages");
-            if (readMsgs != null && readMsgs.length() > 0) {
-                String lastPeer = "";
-                for (int i = 0; i < readMsgs.length(); i++) {
-                    JSONObject rm = readMsgs.optJSONObject(i);
-                    if (rm == null) continue;
+            List<Wire.ReadMark> readMsgs = env.readMessages;
+            if (readMsgs != null && !readMsgs.isEmpty()) {
+                // the watermark only moves forward: one advance per peer, at its newest ts
+                Map<String, Long> newest = new HashMap<>();
+                for (Wire.ReadMark rm : readMsgs) {
                     String peer = peerKeys.resolve(
-                            firstNonEmpty(safeOptString(rm, "senderNumber"), safeOptString(rm, "sender")),
-                            safeOptString(rm, "senderUuid"));
-                    long ts = rm.optLong("timestamp", 0);
+                            firstNonEmpty(rm.senderNumber, rm.sender), rm.senderUuid);
+                    long ts = rm.timestamp;
                     if (isEmpty(peer) || ts <= 0) continue;
-                    advanceReadTs(peer, ts);
-                    lastPeer = peer;
+                    Long prev = newest.get(peer);
+                    if (prev == null || ts > prev) newest.put(peer, ts);
                 }
-                if (notEmpty(lastPeer)) notifyChanged(lastPeer, 0);
+                for (Map.Entry<String, Long> e : newest.entrySet()) advanceReadTs(e.getKey(), e.getValue());
                 return null; // marker only — never notification-worthy
             }
             return null;
@@ -339,134 +382,138 @@ final class Repo {
 
         if (receipt != null) {
             String peer = peerKeys.resolve(srcNum, srcUuid);
-            int newStatus = receipt.optBoolean("isDelivery") ? MessageDatabase.ST_DELIVERED
-                    : (receipt.optBoolean("isRead") || receipt.optBoolean("isViewed"))
-                        ? MessageDatabase.ST_READ : 0;
+            int newStatus = receipt.isDelivery ? MessageDatabase.ST_DELIVERED
+                    : (receipt.isRead || receipt.isViewed) ? MessageDatabase.ST_READ : 0;
             if (newStatus == 0 || isEmpty(peer)) return null;
-            JSONArray tss = receipt.optJSONArray("timestamps");
-            if (tss != null) {
-                synchronized (writeLock) {
-                    for (int i = 0; i < tss.length(); i++) {
-                        long ts = tss.optLong(i, 0);
-                        if (ts <= 0) continue;
-                        if (!db.applyReceipt(peer, ts, newStatus)) {
-                            // raced ahead of confirmSend — stash for replay
-                            String k = peer + "|" + ts;
-                            Integer prev = earlyReceipts.get(k);
-                            if (prev == null || prev < newStatus) earlyReceipts.put(k, newStatus);
-                        }
-                    }
-                }
-                notifyChanged(peer, 0);
-            }
+            long[] tss = receipt.timestamps;
+            if (tss != null) for (long ts : tss) if (ts > 0) queueReceipt(peer, ts, newStatus);
             return null; // receipts are silent
         }
 
         if (typing != null) {
             String peer = peerKeys.resolve(srcNum, srcUuid);
-            String tgid = typing.optString("groupId", "");
-            if (notEmpty(tgid)) peer = "group:" + tgid;
+            if (notEmpty(typing.groupId)) peer = "group:" + typing.groupId;
             if (notEmpty(peer))
-                notifyEphemeral(peer, "STARTED".equals(typing.optString("action"))
+                bus.ephemeral(peer, "STARTED".equals(typing.action)
                         ? "typing_started" : "typing_stopped");
             return null;
         }
         return null;
     }
 
-    /** Edit envelopes nest the group marker inside the new revision. */
-    private static JSONObject nestedGroupInfo(JSONObject msg) {
-        JSONObject em = msg.optJSONObject("editMessage");
-        if (em == null) return null;
-        JSONObject inner = em.optJSONObject("dataMessage");
-        return inner != null ? inner.optJSONObject("groupInfo") : null;
+    // ── receipt lane ─────────────────────────────────────────────────────────
+
+    private void queueReceipt(String peer, long ts, int status) {
+        int pending = receipts.add(peer, ts, status);
+        // first receipt opens the window; a storm flushes without waiting
+        if (pending == 1) main.postDelayed(this::flushReceiptsLater, RECEIPT_WINDOW_MS);
+        else if (pending == RECEIPT_FLUSH_AT) flushReceiptsLater();
     }
 
-    /** Shared shaping for dataMessage and syncMessage.sentMessage. */
-    private IngestResult ingestDataMessage(String peer, String dir, JSONObject msg,
-                                           long ts, boolean selfAuthored) throws Exception {
-        return ingestDataMessage(peer, dir, msg, ts, selfAuthored, "");
+    private void flushReceiptsLater() {
+        writer.execute(DbWriter.Lane.RECEIPT, this::flushReceipts);
+    }
+
+    /** Writer thread. Everything coalesced so far in one transaction; targets
+     *  that don't exist yet are parked for confirmSend. */
+    private void flushReceipts() {
+        Map<String, Map<Long, Integer>> due = receipts.drain();
+        if (due.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        int parked = 0;
+        android.database.sqlite.SQLiteDatabase d = db.getWritableDatabase();
+        bus.hold();
+        d.beginTransaction();
+        try {
+            for (Map.Entry<String, Map<Long, Integer>> e : due.entrySet()) {
+                String peer = e.getKey();
+                Map<Long, Integer> byTs = e.getValue();
+                Set<Long> hit = db.applyReceipts(peer, byTs);
+                if (!hit.isEmpty()) bus.changed(peer, MessageDatabase.sortedTs(hit), false);
+                if (hit.size() == byTs.size()) continue;
+                Map<Long, Integer> early = new HashMap<>(byTs);
+                early.keySet().removeAll(hit);
+                orphans.park(peer, early, now);
+                parked += early.size();
+            }
+            if (parked > 0) orphans.prune(now);
+            d.setTransactionSuccessful();
+        } finally {
+            d.endTransaction();
+            bus.release();
+        }
     }
 
-    private IngestResult ingestDataMessage(String peer, String dir, JSONObject msg,
+    /** Shared shaping for dataMessage and syncMessage.sentMessage. */
+    private IngestResult ingestDataMessage(String peer, String dir, Wire.Msg msg,
                                            long ts, boolean selfAuthored,
                                            String author) throws Exception {
         // reaction? ("me"/"peer" in 1:1 chats; "peer:<sender>" in groups so
         // multiple members' reactions don't clobber each other
-        JSONObject reaction = msg.optJSONObject("reaction");
+        Wire.Reaction reaction = msg.reaction;
         if (reaction != null) {
-            long targetTs = reaction.optLong("targetSentTimestamp", 0);
+            long targetTs = reaction.targetSentTimestamp;
             String reactorKey = selfAuthored ? "me"
                     : notEmpty(author) ? "peer:" + author : "peer";
-            synchronized (writeLock) {
-                db.updateReaction(peer, targetTs, reactorKey,
-                        reaction.optString("emoji", ""), reaction.optBoolean("isRemove"));
-            }
-            notifyChanged(peer, targetTs);
+            db.updateReaction(peer, targetTs, reactorKey, reaction.emoji, reaction.isRemove);
+            bus.changed(peer, targetTs, false);
             return null;
         }
 
         // remote delete?
-        JSONObject rd = msg.optJSONObject("remoteDelete");
-        if (rd != null) {
-            long targetTs = rd.optLong("timestamp", 0);
+        if (msg.isRemoteDelete) {
+            long targetTs = msg.remoteDeleteTs;
             if (targetTs > 0) {
-                synchronized (writeLock) { db.remoteDeleteByServerTs(peer, targetTs); }
-                notifyChanged(peer, targetTs);
+                db.remoteDeleteByServerTs(peer, targetTs);
+                bus.changed(peer, targetTs, true);
             }
             return null;
         }
 
         // edit?
-        JSONObject em = msg.optJSONObject("editMessage");
-        if (em != null) {
-            long targetTs = em.optLong("targetSentTimestamp", 0);
-            JSONObject inner = em.optJSONObject("dataMessage");
-            String newText = inner != null ? safeOptString(inner, "message") : "";
+        if (msg.isEdit) {
+            long targetTs = msg.editTargetTs;
+            String newText = msg.editData != null ? msg.editData.message : "";
             if (targetTs > 0 && notEmpty(newText)) {
-                synchronized (writeLock) { db.applyEdit(peer, targetTs, newText, ts); }
-                notifyChanged(peer, targetTs);
+                db.applyEdit(peer, targetTs, newText, ts);
+                bus.changed(peer, targetTs, true);
             }
             return null;
         }
 
-        String text = safeOptString(msg, "message");
-        JSONArray mentions = msg.optJSONArray("mentions");
-        if (mentions != null && mentions.length() > 0 && text.indexOf('\uFFFC') >= 0) {
+        String text = msg.message;
+        List<Wire.Mention> mentions = msg.mentions;
+        if (mentions != null && !mentions.isEmpty() && text.indexOf('\uFFFC') >= 0) {
             // bake mentions into readable text (cheapest Q10-safe rendering)
             StringBuilder sb = new StringBuilder(text);
-            for (int i = mentions.length() - 1; i >= 0; i--) {
-                JSONObject men = mentions.optJSONObject(i);
+            for (int i = mentions.size() - 1; i >= 0; i--) {
+                Wire.Mention men = mentions.get(i);
                 if (men == null) continue;
-                int start = men.optInt("start", -1);
-                int len = men.optInt("length", 0);
+                int start = men.start;
+                int len = men.length;
                 if (start < 0 || start + len > sb.length()) continue;
-                String name = firstNonEmpty(men.optString("name", ""),
-                        men.optString("number", ""), "mention");
+                String name = firstNonEmpty(men.name, men.number, "mention");
                 sb.replace(start, start + len, "@" + name);
             }
             text = sb.toString();
         }
-        JSONArray attsRaw = msg.optJSONArray("attachments");
         // Signal "long message" overflow rides along as a text/x-signal-plain
         // attachment while the full body is already inline — it's not real
         // media, so drop it and let the message render as plain text instead
         // of a bogus file bubble with a play overlay.
-        JSONArray atts = new JSONArray();
-        if (attsRaw != null) {
-            for (int i = 0; i < attsRaw.length(); i++) {
-                JSONObject att = attsRaw.optJSONObject(i);
-                if (att == null || isEmpty(safeOptString(att, "id"))) continue;
-                if ("text/x-signal-plain".equals(safeOptString(att, "contentType"))) continue;
-                atts.put(att);
+        List<Wire.Att> atts = new ArrayList<>();
+        if (msg.attachments != null) {
+            for (Wire.Att att : msg.attachments) {
+                if (isEmpty(att.id)) continue;
+                if ("text/x-signal-plain".equals(att.contentType)) continue;
+                atts.add(att);
             }
         }
-        JSONObject quote = msg.optJSONObject("quote");
-        long quoteTs = quote != null ? quote.optLong("id", 0) : 0;
-        String quoteText = quote != null ? safeOptString(quote, "text") : null;
+        Wire.Quote quote = msg.quote;
+        long quoteTs = quote != null ? quote.id : 0;
+        String quoteText = quote != null ? quote.text : null;
         String quoteAuthorRaw = quote != null ? PeerKeys.normalize(firstNonEmpty(
-                quote.optString("authorNumber", ""), quote.optString("author", ""),
-                quote.optString("authorUuid", ""))) : "";
+                quote.authorNumber, quote.author, quote.authorUuid)) : "";
         String quoteAuthor = isEmpty(quoteAuthorRaw) ? null
                 : (quoteAuthorRaw.equals(selfNumber) || quoteAuthorRaw.equals(selfUuid)) ? "me" : "peer";
 
@@ -474,42 +521,37 @@ final class Repo {
         // Note-to-Self echoes are delivered BY DEFINITION (we just received one
         // on this device, and self-thread messages never get delivery receipts)
         if ("out".equals(dir) && peer.equals(selfNumber)) status = MessageDatabase.ST_DELIVERED;
-        boolean inserted = false;
+        List<Long> insertedIds = new ArrayList<>();
         String snippet = text;
-        synchronized (writeLock) {
-            if (atts != null && atts.length() > 0) {
-                boolean first = true;
-                for (int i = 0; i < atts.length(); i++) {
-                    JSONObject att = atts.optJSONObject(i);
-                    if (att == null) continue;
-                    String attId = safeOptString(att, "id");
-                    if (isEmpty(attId)) continue;
-                    String mime = safeOptString(att, "contentType");
-                    if (first && isEmpty(snippet)) snippet = mediaSnippet(kindFromMime(mime));
-                    // a locally-sent attachment row may exist with att_id='' — adopt it
-                    boolean adopted = "out".equals(dir) && adoptLocalAttachmentRow(peer, ts, attId, mime);
-                    if (!adopted) {
-                        long id = db.upsertByIdentity(peer, dir, kindFromMime(mime),
-                                "", attId, mime, first ? emptyToNull(text) : null, null,
-                                ts, status, quoteTs, quoteText, quoteAuthor, author);
-                        inserted |= id != -1;
-                    }
-                    first = false;
+        if (!atts.isEmpty()) {
+            boolean first = true;
+            for (Wire.Att att : atts) {
+                String attId = att.id;
+                String mime = att.contentType;
+                if (first && isEmpty(snippet)) snippet = mediaSnippet(kindFromMime(mime));
+                // a locally-sent attachment row may exist with att_id='' — adopt it
+                boolean adopted = "out".equals(dir) && adoptLocalAttachmentRow(peer, ts, attId, mime);
+                if (!adopted) {
+                    long id = db.upsertByIdentity(peer, dir, kindFromMime(mime),
+                            "", attId, mime, first ? emptyToNull(text) : null, null,
+                            ts, status, quoteTs, quoteText, quoteAuthor, author);
+                    if (id != -1) insertedIds.add(id);
                 }
-            } else if (notEmpty(text)) {
-                long id = db.upsertByIdentity(peer, dir, "text", text, "", "", null, null,
-                        ts, status, quoteTs, quoteText, quoteAuthor, author);
-                inserted = id != -1;
-            } else {
-                return null; // nothing visible (e.g. expiration-timer update)
+                first = false;
             }
+        } else if (notEmpty(text)) {
+            long id = db.upsertByIdentity(peer, dir, "text", text, "", "", null, null,
+                    ts, status, quoteTs, quoteText, quoteAuthor, author);
+            if (id != -1) insertedIds.add(id);
+        } else {
+            return null; // nothing visible (e.g. expiration-timer update)
         }
-        int expireS = msg.optInt("expiresInSeconds", 0);
-        if (expireS > 0) {
-            synchronized (writeLock) { db.setExpiry(peer, dir, ts, expireS); }
-        }
-        if (inserted) notifyInserted(peer);
-        else notifyChanged(peer, ts);
+        int expireS = msg.expiresInSeconds;
+        if (expireS > 0) expiry.offer(db.setExpiry(peer, dir, ts, expireS, peerState.readTs(peer)));
+        expiry.poke();
+        boolean inserted = !insertedIds.isEmpty();
+        if (inserted) for (long id : insertedIds) bus.inserted(peer, id);
+        else bus.changed(peer, ts, false);
         return new IngestResult(peer, dir, inserted, snippet);
     }
 
@@ -562,10 +604,6 @@ final class Repo {
         return "file";
     }
 
-    private static String safeOptString(JSONObject o, String key) {
-        return o == null || o.isNull(key) ? "" : o.optString(key, "");
-    }
-
     private static String emptyToNull(String s) { return isEmpty(s) ? null : s; }
 
     // ── send pipeline ─────────────────────────────────────────────────────────
@@ -576,71 +614,267 @@ final class Repo {
         return (System.currentTimeMillis() << 8) | (nonceCounter.incrementAndGet() & 0xFF);
     }
 
-    /** Insert the pending row and return its nonce; caller renders optimistically. */
-    long beginSend(String peerKey, String msgType, String text, String mime,
-                   String caption, String localUri,
+    /** Queue a text send: the pending row (rendered optimistically) and its
+     *  send_queue job commit together, on the writer's USER lane — the caller
+     *  (the UI) never waits on SQLite. {@code sendBody} is the complete
+     *  /v2/send body (MessageSender). @return the nonce, or -1; a write that
+     *  fails later surfaces as a "send_failed" ephemeral. */
+    long queueText(String peerKey, String recipient, String text, JSONObject sendBody,
                    long quoteTs, String quoteText, String quoteAuthor) {
-        long nonce;
-        synchronized (writeLock) {
-            nonce = db.insertPending(peerKey, msgType, text, mime, caption, localUri,
-                    newNonce(), quoteTs, quoteText, quoteAuthor);
+        try {
+            JSONObject spec = new JSONObject();
+            spec.put("send", sendBody);
+            spec.put("text", text);
+            if (quoteTs > 0) {
+                spec.put("quote_ts", quoteTs);
+                spec.put("quote_text", quoteText);
+                spec.put("quote_author", quoteAuthor);
+            }
+            return beginSend(peerKey, recipient, SendQueue.KIND_TEXT, spec, "text", text, null,
+                    null, null, quoteTs, quoteText, quoteAuthor);
+        } catch (Exception e) {
+            DebugLog.log("queue text failed: " + e);
+            return -1;
+        }
+    }
+
+    /** Queue an attachment already copied into the store. @return the nonce, or -1. */
+    long queueMedia(String peerKey, String recipient, String kind, String mime,
+                    String caption, String path) {
+        try {
+            JSONObject spec = new JSONObject();
+            spec.put("kind", kind);
+            spec.put("mime", mime);
+            spec.put("path", path);
+            if (caption != null) spec.put("caption", caption);
+            return beginSend(peerKey, recipient, SendQueue.KIND_MEDIA, spec, kind, null, mime,
+                    caption, path, 0, null, null);
+        } catch (Exception e) {
+            DebugLog.log("queue media failed: " + e);
+            return -1;
+        }
+    }
+
+    /** Queue an edit of {@code prevTs}; applied locally once signal-api takes it. */
+    void queueEdit(String peerKey, String recipient, JSONObject sendBody,
+                   long prevTs, String newText) {
+        try {
+            JSONObject spec = new JSONObject();
+            spec.put("send", sendBody);
+            spec.put("prev_ts", prevTs);
+            spec.put("text", newText);
+            writer.execute(DbWriter.Lane.USER, () -> {
+                sendQueue.add(peerKey, SendQueue.KIND_EDIT, 0, recipient, spec);
+                sendQueue.pump();
+            });
+        } catch (Exception e) {
+            DebugLog.log("queue edit failed: " + e);
+        }
+    }
+
+    /** Apply a reaction locally now and queue it for signal-api. */
+    void queueReaction(String peerKey, String recipient, long targetTs, String emoji,
+                       String targetAuthor, boolean isRemove) {
+        sendLocalReaction(peerKey, targetTs, emoji, isRemove);
+        try {
+            JSONObject body = new JSONObject();
+            body.put("recipient", recipient);
+            body.put("reaction", emoji);
+            body.put("target_author", targetAuthor);
+            body.put("timestamp", targetTs);
+            JSONObject spec = new JSONObject();
+            spec.put("body", body);
+            spec.put("remove", isRemove);
+            writer.execute(DbWriter.Lane.USER, () -> {
+                sendQueue.add(peerKey, SendQueue.KIND_REACTION, 0, recipient, spec);
+                sendQueue.pump();
+            });
+        } catch (Exception e) {
+            DebugLog.log("queue reaction failed: " + e);
+        }
+    }
+
+    /** Connectivity is back (socket reconnect): retry waiting sends now. */
+    void retrySendsNow() { sendQueue.retryNow(); }
+
+    private long beginSend(String peerKey, String recipient, String jobKind, JSONObject spec,
+                           String msgType, String text, String mime,
+                           String caption, String localUri,
+                           long quoteTs, String quoteText, String quoteAuthor) {
+        long wanted = newNonce();
+        writer.execute(DbWriter.Lane.USER, () -> {
+            long nonce;
+            long id = -1;
+            android.database.sqlite.SQLiteDatabase d = db.getWritableDatabase();
+            d.beginTransaction();
+            try {
+                // may step past a taken identity slot, so the row's nonce can differ
+                nonce = db.insertPending(peerKey, msgType, text, mime, caption, localUri,
+                        wanted, quoteTs, quoteText, quoteAuthor);
+                if (nonce != -1) {
+                    sendQueue.add(peerKey, jobKind, nonce, recipient, spec);
+                    id = db.idByServerTs(peerKey, -nonce);
+                }
+                d.setTransactionSuccessful();
+            } finally {
+                d.endTransaction();
+            }
+            if (nonce == -1) {
+                bus.ephemeral(peerKey, "send_failed");
+                return;
+            }
+            bus.inserted(peerKey, id);
+            sendQueue.pump();
+        });
+        return wanted;
+    }
+
+    /** One send_queue job against signal-api (a SendQueue worker thread). */
+    private SendQueue.Outcome runSend(SendQueue.Job j) {
+        String ip = prefs.getString("ip", "");
+        String me = prefs.getString("number", "");
+        if (isEmpty(ip) || isEmpty(me)) return SendQueue.Outcome.RETRY; // logged out / mid-setup
+        String base = normalizeBase(ip);
+        JSONObject s = j.spec;
+        // the user deleted the pending row (or it settled) while it waited
+        if (j.nonce != 0 && !db.hasPending(j.nonce)) return SendQueue.Outcome.SENT;
+        try {
+            switch (j.kind) {
+                case SendQueue.KIND_TEXT: {
+                    String ts = MessageSender.send(base, s.getJSONObject("send"), 8000);
+                    long qTs = s.optLong("quote_ts", 0);
+                    confirmSend(j.peerKey, j.nonce, ts, "text", s.optString("text", ""), null, null,
+                            qTs, qTs > 0 ? s.optString("quote_text", null) : null,
+                            qTs > 0 ? s.optString("quote_author", null) : null);
+                    return SendQueue.Outcome.SENT;
+                }
+                case SendQueue.KIND_MEDIA: {
+                    java.io.File f = new java.io.File(s.getString("path"));
+                    if (!f.exists()) return SendQueue.Outcome.REJECTED; // store copy gone
+                    String caption = s.has("caption") ? s.getString("caption") : null;
+                    String mime = s.getString("mime");
+                    // constant-memory streaming upload (REDESIGN §3.5)
+                    String ts = AttachmentStore.sendStreaming(base, me, j.recipient,
+                            caption == null ? "" : caption, mime, f, null, null, null);
+                    confirmSend(j.peerKey, j.nonce, ts, s.getString("kind"), caption, null, mime,
+                            0, null, null);
+                    return SendQueue.Outcome.SENT;
+                }
+                case SendQueue.KIND_EDIT: {
+                    String ts = MessageSender.send(base, s.getJSONObject("send"), 8000);
+                    long newEditTs = ts == null ? 0 : parseLongSafe(ts);
+                    long prevTs = s.getLong("prev_ts");
+                    String text = s.getString("text");
+                    applyLocalEdit(j.peerKey, prevTs, text, newEditTs);
+                    reportEdit(j.peerKey, prevTs, text, newEditTs);
+                    return SendQueue.Outcome.SENT;
+                }
+                case SendQueue.KIND_REACTION: {
+                    String url = base + "/v1/reactions/" + java.net.URLEncoder.encode(me, "UTF-8");
+                    String body = s.getJSONObject("body").toString();
+                    int code = s.optBoolean("remove") ? httpDeleteJson(url, body)
+                                                      : httpPostJson(url, body);
+                    if (code >= 200 && code < 300) return SendQueue.Outcome.SENT;
+                    throw new MessageSender.Rejected(code, "");
+                }
+                default:
+                    DebugLog.log("send queue: unknown job kind " + j.kind);
+                    return SendQueue.Outcome.REJECTED;
+            }
+        } catch (MessageSender.Rejected e) {
+            DebugLog.log("send " + j.kind + " to " + j.peerKey + " rejected: " + e.getMessage());
+            if (e.retryable()) return SendQueue.Outcome.RETRY;
+            rejections.put(j.id, e); // for sendFailed, which runs next on this thread
+            return SendQueue.Outcome.REJECTED;
+        } catch (java.io.IOException e) {
+            return SendQueue.Outcome.RETRY; // never reached the server
+        } catch (Exception e) {
+            DebugLog.log("send " + j.kind + " failed: " + e);
+            return SendQueue.Outcome.REJECTED;
         }
-        notifyInserted(peerKey);
-        return nonce;
     }
 
-    /** Confirm with the /v2/send response ts (string-or-number, M1). */
+    /** A job left the queue unsent: FAILED row (tap to retry) and a one-shot
+     *  ephemeral for the open chat ("send_failed" | "send_untrusted" |
+     *  "edit_failed" | "reaction_failed"). */
+    private void sendFailed(SendQueue.Job j) {
+        String kind;
+        if (SendQueue.KIND_EDIT.equals(j.kind)) {
+            kind = "edit_failed";
+        } else if (SendQueue.KIND_REACTION.equals(j.kind)) {
+            kind = "reaction_failed";
+        } else {
+            failSend(j.peerKey, j.nonce);
+            MessageSender.Rejected e = rejections.get(j.id);
+            kind = e != null && e.body.toLowerCase(java.util.Locale.US).contains("untrusted")
+                    ? "send_untrusted" : "send_failed";
+        }
+        rejections.remove(j.id);
+        bus.ephemeral(j.peerKey, kind);
+    }
+
+    /** Confirm with the /v2/send response ts (string-or-number, M1). Waits
+     *  for the writer: the job must not leave the queue before its row settles. */
     void confirmSend(String peerKey, long nonce, String tsRaw, String kind,
                      String body, String attId, String mime,
                      long quoteTs, String quoteText, String quoteAuthor) {
         long ts = parseLongSafe(tsRaw == null ? "" : tsRaw.replace("\"", "").trim());
         if (ts <= 0) { failSend(peerKey, nonce); return; }
-        synchronized (writeLock) {
+        writer.call(DbWriter.Lane.LIVE, () -> {
             db.confirmPendingByNonce(nonce, ts, MessageDatabase.ST_SENT);
             // a receipt may have arrived while the row was still pending
-            Integer early = earlyReceipts.remove(peerKey + "|" + ts);
-            if (early != null) db.applyReceipt(peerKey, ts, early);
-        }
-        notifyChanged(peerKey, ts);
+            int early = orphans.claim(peerKey, ts);
+            if (early > 0) db.applyReceipt(peerKey, ts, early);
+            return null;
+        });
+        bus.changed(peerKey, -nonce, false); // the pending row left this ts…
+        bus.changed(peerKey, ts, true);      // …and reappears (or merged) here
         reportSent(peerKey, kind, body, ts, attId, mime, quoteTs, quoteText, quoteAuthor);
     }
 
     void failSend(String peerKey, long nonce) {
-        synchronized (writeLock) { db.markFailedByNonce(nonce); }
-        notifyChanged(peerKey, -nonce);
+        writer.call(DbWriter.Lane.LIVE, () -> {
+            db.markFailedByNonce(nonce);
+            return null;
+        });
+        bus.changed(peerKey, -nonce, false);
     }
 
-    // ── bridge /v2/sent report queue (DB-backed via the reported flag) ────────
+    // ── bridge report outbox (DB-backed, batched; see BridgeOutbox) ─────────
 
     private void reportSent(String peerKey, String kind, String body, long ts,
                             String attId, String mime,
                             long quoteTs, String quoteText, String quoteAuthor) {
-        reportIo.execute(() -> {
-            try {
-                JSONObject o = new JSONObject();
-                o.put("peer", peerKey);
-                o.put("kind", kind == null ? "text" : kind);
-                o.put("body", body == null ? "" : body);
-                o.put("server_ts", ts);
-                if (notEmpty(attId)) { o.put("att_id", attId); o.put("mime", mime); }
-                if (quoteTs > 0) {
-                    o.put("quote_ts", quoteTs);
-                    o.put("quote_text", quoteText);
-                    o.put("quote_author", quoteAuthor);
-                }
-                String base = prefs.getString("bridge", "");
-                if (isEmpty(base)) return;
-                int code = httpPostJson(base + "/v2/sent", o.toString());
-                if (code >= 200 && code < 300) {
-                    synchronized (writeLock) { db.markReported(peerKey, ts); }
-                }
-            } catch (Exception e) {
-                DebugLog.log("report-sent failed (will retry on init): " + e);
+        try {
+            JSONObject o = new JSONObject();
+            o.put("peer", peerKey);
+            o.put("kind", kind == null ? "text" : kind);
+            o.put("body", body == null ? "" : body);
+            o.put("server_ts", ts);
+            if (notEmpty(attId)) { o.put("att_id", attId); o.put("mime", mime); }
+            if (quoteTs > 0) {
+                o.put("quote_ts", quoteTs);
+                o.put("quote_text", quoteText);
+                o.put("quote_author", quoteAuthor);
             }
+            enqueueReport(DbWriter.Lane.LIVE, BridgeOutbox.OP_SENT, peerKey, ts, o);
+        } catch (Exception e) {
+            DebugLog.log("report-sent enqueue failed (will retry on init): " + e);
+        }
+    }
+
+    /** Outbox insert on the writer — callers include the UI thread — then a
+     *  drain kick once the row is in. */
+    private void enqueueReport(DbWriter.Lane lane, String op, String peerKey, long ts, JSONObject o) {
+        writer.execute(lane, () -> {
+            outbox.add(op, peerKey, ts, o);
+            kickOutbox();
         });
     }
 
-    /** Re-report confirmed-but-unreported sends (Repo init + reconnect). */
+    /** Re-queue confirmed-but-unreported sends (the reported flag stays the
+     *  source of truth; duplicates of queued rows are dropped) and retry the
+     *  outbox now. Repo init + reconnect. */
     void drainReportQueue() {
         try {
             List<MessageItem> unreported = db.getUnreported();
@@ -653,51 +887,105 @@ final class Repo {
         } catch (Exception e) {
             DebugLog.log("drain report queue: " + e);
         }
+        // BULK: behind the re-queued reports (LIVE), so the pass sees them
+        writer.execute(DbWriter.Lane.BULK, () -> {
+            outbox.retryNow();
+            kickOutbox();
+        });
+    }
+
+    /** Reports waiting for the bridge (metric). */
+    long outboxDepth() { return outbox.depth(); }
+
+    /** Schedule one drain pass on reportIo; calls while one is queued fold into it. */
+    private void kickOutbox() {
+        synchronized (outboxLock) {
+            if (outboxQueued) return;
+            outboxQueued = true;
+            if (outboxTimer != null) { outboxTimer.cancel(false); outboxTimer = null; }
+        }
+        try {
+            reportIo.execute(this::drainOutbox);
+        } catch (java.util.concurrent.RejectedExecutionException ignored) {} // after reset()
+    }
+
+    private void drainOutbox() {
+        synchronized (outboxLock) { outboxQueued = false; }
+        String base = prefs.getString("bridge", "");
+        if (isEmpty(base)) return;
+        try {
+            outbox.drain(outboxLink(base));
+            long next = outbox.nextDueAt();
+            if (next == 0) return;
+            long delay = Math.max(0, next - System.currentTimeMillis());
+            synchronized (outboxLock) {
+                if (outboxQueued) return; // a kick beat the timer to it
+                if (outboxTimer != null) outboxTimer.cancel(false);
+                outboxTimer = reportIo.schedule(this::kickOutbox, delay, TimeUnit.MILLISECONDS);
+            }
+        } catch (Exception e) {
+            DebugLog.log("outbox drain failed: " + e);
+        }
+    }
+
+    private BridgeOutbox.Link outboxLink(String base) {
+        return new BridgeOutbox.Link() {
+            @Override public int post(String path, String json) throws Exception {
+                return httpPostJson(base + path, json);
+            }
+            @Override public void delivered(BridgeOutbox.Row r) {
+                if (BridgeOutbox.OP_SENT.equals(r.op)) {
+                    writer.execute(DbWriter.Lane.BULK, () -> db.markReported(r.peerKey, r.serverTs));
+                } else if (BridgeOutbox.OP_RECEIPTS.equals(r.op)) {
+                    peerState.advanceReceipted(r.peerKey, r.serverTs);
+                }
+            }
+        };
     }
 
     // ── local actions from the UI (the activities never write the DB directly) ──
+    // Queued on the writer's USER lane and returned from at once: the change
+    // event, not the call, tells the screen the row moved.
 
     void sendLocalReaction(String peerKey, long targetTs, String emoji, boolean isRemove) {
-        synchronized (writeLock) {
+        writer.execute(DbWriter.Lane.USER, () -> {
             db.updateReaction(peerKey, targetTs, "me", emoji, isRemove);
-        }
-        notifyChanged(peerKey, targetTs);
+            bus.changed(peerKey, targetTs, false);
+        });
     }
 
     void applyLocalEdit(String peerKey, long prevTs, String newText, long newEditTs) {
-        synchronized (writeLock) {
+        writer.execute(DbWriter.Lane.USER, () -> {
             db.applyEdit(peerKey, prevTs, newText, newEditTs);
-        }
-        notifyChanged(peerKey, prevTs);
+            bus.changed(peerKey, prevTs, true);
+        });
     }
 
     /** Own remote-delete (app-originated): placeholder locally + tell the bridge
      *  (no self-echo exists to carry it there). */
     void remoteDeleteLocal(String peerKey, long serverTs) {
-        synchronized (writeLock) {
+        writer.execute(DbWriter.Lane.USER, () -> {
             db.remoteDeleteByServerTs(peerKey, serverTs);
-        }
-        notifyChanged(peerKey, serverTs);
-        reportIo.execute(() -> {
-            try {
-                String base = prefs.getString("bridge", "");
-                if (isEmpty(base)) return;
-                JSONObject o = new JSONObject();
-                o.put("peer", peerKey);
-                o.put("server_ts", serverTs);
-                o.put("deleted", 1);
-                httpPostJson(base + "/v2/sent", o.toString());
-            } catch (Exception e) {
-                DebugLog.log("remote-delete report failed: " + e);
-            }
+            bus.changed(peerKey, serverTs, true);
         });
+        try {
+            JSONObject o = new JSONObject();
+            o.put("peer", peerKey);
+            o.put("server_ts", serverTs);
+            o.put("deleted", 1);
+            enqueueReport(DbWriter.Lane.USER, BridgeOutbox.OP_DELETE, peerKey, serverTs, o);
+        } catch (Exception e) {
+            DebugLog.log("remote-delete report failed: " + e);
+        }
     }
 
     void deleteLocal(String peerKey, java.util.Collection<Long> timestamps) {
-        synchronized (writeLock) {
-            db.deleteMessages(peerKey, timestamps);
-        }
-        notifyChanged(peerKey, 0);
+        long[] tss = MessageDatabase.sortedTs(timestamps); // snapshot: the write runs later
+        if (tss.length == 0) return;
+        writer.execute(DbWriter.Lane.USER, () -> {
+            db.deleteMessages(peerKey, tss);
+            bus.changed(peerKey, tss, true);
+        });
     }
 
     /** Send read receipts for newly-read incoming messages, via the bridge's
@@ -709,7 +997,7 @@ final class Repo {
         if (!prefs.getBoolean("send_read_receipts", false)) return;
         if (isEmpty(recipient) || isEmpty(peerKey)) return;
         if (peerKey.equals(selfNumber) || PeerKeys.normalize(recipient).equals(selfNumber)) return;
-        long mark = prefs.getLong("receipted_ts_" + peerKey, 0);
+        long mark = peerState.receiptedTs(peerKey);
         final java.util.ArrayList<Long> ts = new java.util.ArrayList<>();
         long newMark = mark;
         for (MessageItem m : thread) {
@@ -719,71 +1007,147 @@ final class Repo {
         }
         if (ts.isEmpty()) return;
         while (ts.size() > 25) ts.remove(0); // cap: newest 25
-        final long markToStore = newMark;
-        reportIo.execute(() -> {
-            try {
-                String base = prefs.getString("bridge", "");
-                if (isEmpty(base)) return;
-                JSONObject o = new JSONObject();
-                o.put("peer", peerKey);
-                o.put("recipient", recipient);
-                o.put("timestamps", new JSONArray(ts));
-                int code = httpPostJson(base + "/v2/read-receipts", o.toString());
-                if (code >= 200 && code < 300) {
-                    synchronized (readTsLock) {
-                        if (markToStore > prefs.getLong("receipted_ts_" + peerKey, 0))
-                            prefs.edit().putLong("receipted_ts_" + peerKey, markToStore).apply();
-                    }
-                }
-            } catch (Exception e) {
-                DebugLog.log("read-receipt queue failed: " + e);
-            }
-        });
+        try {
+            JSONObject o = new JSONObject();
+            o.put("peer", peerKey);
+            o.put("recipient", recipient);
+            o.put("timestamps", new JSONArray(ts));
+            // the watermark advances on delivery (Link.delivered), not here
+            enqueueReport(DbWriter.Lane.RECEIPT, BridgeOutbox.OP_RECEIPTS, peerKey, newMark, o);
+        } catch (Exception e) {
+            DebugLog.log("read-receipt queue failed: " + e);
+        }
     }
 
     List<MessageItem> getThread(String peerKey) { return db.getMessages(peerKey); }
 
-    List<MessageItem> getThreadFull(String peerKey) { return db.getMessages(peerKey, 0); }
+    /** Keyset pages around an open thread's window (see MessageDatabase.getMessagesBefore). */
+    List<MessageItem> getThreadBefore(String peerKey, long orderKey, long id, int limit) {
+        return db.getMessagesBefore(peerKey, orderKey, id, limit);
+    }
+
+    List<MessageItem> getThreadAfter(String peerKey, long orderKey, long id, int limit) {
+        return db.getMessagesAfter(peerKey, orderKey, id, limit);
+    }
+
+    /** About {size} rows centred on the message at ts (identity or edit
+     *  revision), chronological; empty if it isn't stored. [0] of the result
+     *  pair says whether older rows remain, [1] whether newer ones do. */
+    android.util.Pair<List<MessageItem>, boolean[]> getThreadAround(String peerKey, long ts, int size) {
+        long[] at = db.anchorOf(peerKey, ts);
+        if (at == null) return new android.util.Pair<>(new ArrayList<>(), new boolean[2]);
+        int half = size / 2;
+        List<MessageItem> out = db.getMessagesBefore(peerKey, at[0], at[1], half);
+        boolean older = out.size() == half;
+        List<MessageItem> after = db.getMessagesAfter(peerKey, at[0], at[1] - 1, half + 1);
+        boolean newer = after.size() == half + 1;
+        out.addAll(after);
+        return new android.util.Pair<>(out, new boolean[]{older, newer});
+    }
+
+    List<MessageItem> getThreadMedia(String peerKey) { return db.getMediaMessages(peerKey); }
+
+    /** Just the rows a ChangeBus.Change names (inserted ids, changed server_ts),
+     *  tombstones included — lets an open thread patch itself in place. */
+    List<MessageItem> getThreadDelta(String peerKey, java.util.Collection<Long> ids,
+                                     java.util.Collection<Long> serverTs) {
+        return db.getMessagesDelta(peerKey, ids, serverTs);
+    }
 
     /** App-originated edit: tell the bridge (no self-echo) so edit-revision
      *  receipts find their target and other clients of the feed see the text. */
     void reportEdit(String peerKey, long targetTs, String newText, long editTs) {
-        reportIo.execute(() -> {
+        try {
+            JSONObject o = new JSONObject();
+            o.put("peer", peerKey);
+            o.put("server_ts", targetTs);
+            o.put("body", newText);
+            o.put("edited_ts", editTs);
+            // a newer edit replaces a queued one; USER lane, behind applyLocalEdit
+            enqueueReport(DbWriter.Lane.USER, BridgeOutbox.OP_EDIT, peerKey, targetTs, o);
+        } catch (Exception e) {
+            DebugLog.log("edit report failed: " + e);
+        }
+    }
+
+    /** Pre-DB builds kept each thread as JSON in prefs: import it into the
+     *  (empty) thread on the writer, drop the key, then one reload event. */
+    void importLegacyHistory(String peerKey) {
+        String histKey = "chat_hist_" + peerKey;
+        if (!prefs.contains(histKey)) return;
+        writer.execute(DbWriter.Lane.BULK, () -> {
+            int n = 0;
+            android.database.sqlite.SQLiteDatabase d = db.getWritableDatabase();
+            d.beginTransaction();
             try {
-                String base = prefs.getString("bridge", "");
-                if (isEmpty(base)) return;
-                JSONObject o = new JSONObject();
-                o.put("peer", peerKey);
-                o.put("server_ts", targetTs);
-                o.put("body", newText);
-                o.put("edited_ts", editTs);
-                httpPostJson(base + "/v2/sent", o.toString());
-            } catch (Exception e) {
-                DebugLog.log("edit report failed: " + e);
+                JSONArray arr = new JSONArray(prefs.getString(histKey, "[]"));
+                for (int i = 0; i < arr.length(); i++) {
+                    JSONObject o   = arr.getJSONObject(i);
+                    String from    = o.optString("from", "peer");
+                    int status     = o.optInt("status", MessageDatabase.ST_DELIVERED);
+                    String type    = o.optString("type", "text");
+                    long   sTs     = o.optLong("serverTs", 0);
+                    String qt      = o.optString("quoteText", "");
+                    String qa      = o.optString("quoteAuthor", "peer");
+                    String dir     = "me".equals(from) ? "out" : "in";
+                    if ("image".equals(type)) {
+                        String cid     = o.optString("attId", "");
+                        String mime    = o.optString("mime", "");
+                        String caption = o.optString("caption", "");
+                        String locUri  = o.optString("localUri", "");
+                        db.upsert(peerKey, dir, "image", null,
+                                cid.isEmpty() ? null : cid, mime,
+                                caption.isEmpty() ? null : caption,
+                                locUri.isEmpty() ? null : locUri,
+                                sTs, status, qt.isEmpty() ? null : qt, qa.isEmpty() ? null : qa);
+                    } else {
+                        String text = o.optString("text", "");
+                        db.upsert(peerKey, dir, "text", text, null, null, null, null,
+                                sTs, status, qt.isEmpty() ? null : qt, qa.isEmpty() ? null : qa);
+                    }
+                    n++;
+                }
+                d.setTransactionSuccessful();
+            } catch (org.json.JSONException e) {
+                DebugLog.log("legacy history for " + peerKey + " unreadable, dropped: " + e);
+            } finally {
+                d.endTransaction();
             }
+            prefs.edit().remove(histKey).apply();
+            if (n > 0) bus.reload(peerKey);
         });
     }
 
     /** Device-local thread wipe: rows gone entirely (no tombstones — the next
-     *  catch-up would re-deliver, so also pin the cursor watermark forward). */
+     *  catch-up would re-deliver, so also pin the cursor watermark forward).
+     *  Blocking — call off the main thread. */
     void deleteThread(String peerKey) {
-        long maxTs;
-        synchronized (writeLock) {
-            maxTs = db.getLastTs(peerKey); // pin to DATA, not the device clock —
-                                           // a fast clock would silently eat future messages
+        long maxTs = writer.call(DbWriter.Lane.USER, () -> {
+            long last = db.getLastTs(peerKey); // pin to DATA, not the device clock —
+                                               // a fast clock would silently eat future messages
             db.getWritableDatabase().execSQL(
                     "DELETE FROM messages WHERE peer_key=?", new Object[]{peerKey});
-        }
+            sendQueue.clear(peerKey);
+            orphans.clear(peerKey);
+            return last;
+        });
         if (maxTs > 0) {
             advanceReadTs(peerKey, maxTs);
-            prefs.edit().putLong("thread_cleared_ts_" + peerKey, maxTs).apply();
+            peerState.setCleared(peerKey, maxTs);
         }
-        notifyInserted(peerKey);
+        bus.reload(peerKey);
     }
 
     // ── bridge change-feed catch-up ───────────────────────────────────────────
 
-    private static final int PAGE = 200;
+    /** Change-feed page size bounds; the live limit adapts in between (PageSizer).
+     *  Overridable via the feed_page_min / feed_page_max prefs. */
+    private static final int PAGE_MIN = 50;
+    private static final int PAGE     = 200;
+    private static final int PAGE_MAX = 1000;
+    /** Response-time target for one page — well inside httpGet's 8s read timeout. */
+    private static final long PAGE_TARGET_MS = 3000;
+    private static final long PAGE_MAX_BYTES = 512 * 1024;
 
     interface CatchUpNotifier { void onMissed(String peerKey, int count, String snippet); }
 
@@ -800,18 +1164,11 @@ final class Repo {
                 apiMismatchWarned = true;
                 DebugLog.log("BRIDGE API MISMATCH: bridge=" + got
                         + " app=" + EXPECTED_API_VERSION + ", update one to match");
-                main.post(() -> {
-                    for (Listener l : listenersSnapshot())
-                        l.onEphemeral("", "api_mismatch:" + got);
-                });
+                bus.ephemeral("", "api_mismatch:" + got);
             }
         } catch (Exception ignored) {} // health unreachable: catch-up will fail loudly on its own
     }
 
-    private java.util.List<Listener> listenersSnapshot() {
-        synchronized (listeners) { return new ArrayList<>(listeners); }
-    }
-
     /** Drain /v2/changes from the stored cursor. Runs on the caller's thread;
      *  single-flight (concurrent calls would race the cursor pref). The first
      *  drain after migration runs in reconcile mode (§3.6 step 7): legacy
@@ -841,82 +1198,29 @@ final class Repo {
                     reconcileTarget = head.optLong("max_seq", -1);
                     if (reconcileTarget < 0) return;
                 }
-                while (true) {
-                    String resp = httpGet(base + "/v2/changes?since_seq=" + cursor + "&limit=" + PAGE);
-                    JSONObject o = new JSONObject(resp);
-                    JSONArray items = o.optJSONArray("items");
-                    JSONArray markers = o.optJSONArray("markers");
-                    JSONObject peerMap = o.optJSONObject("peerMap");
-                    if (peerMap != null) {
-                        java.util.Iterator<String> it = peerMap.keys();
-                        while (it.hasNext()) { String u = it.next(); peerKeys.learn(u, peerMap.optString(u)); }
-                    }
-                    // The two streams are independently limited. Coverage below
-                    // a bound is only guaranteed per-stream: a full page covers
-                    // up to its last row; a short page covers everything. The
-                    // safe cursor is the MIN of the two bounds.
-                    long itemsBound = Long.MAX_VALUE, markersBound = Long.MAX_VALUE;
-                    java.util.Set<String> touched = new java.util.HashSet<>();
-                    if (missedIn == null) missedIn = new HashMap<>();
-                    if (items != null) {
-                        for (int i = 0; i < items.length(); i++) {
-                            JSONObject row = items.optJSONObject(i);
-                            if (row == null) continue;
-                            try {
-                                String peer = ingestBridgeRow(row, reconcile);
-                                if (notEmpty(peer)) touched.add(peer);
-                                if (notEmpty(peer) && !reconcile && "in".equals(row.optString("dir"))
-                                        && row.optLong("serverTs", 0) > Math.max(
-                                                prefs.getLong("notified_ts_" + peer, 0),
-                                                prefs.getLong("read_ts_" + peer, 0))) {
-                                    Object[] cur = missedIn.get(peer);
-                                    long ts = row.optLong("serverTs", 0);
-                                    String snip = row.optString("body", "");
-                                    if (cur == null || ts > (Long) cur[1])
-                                        missedIn.put(peer, new Object[]{(cur == null ? 1 : (Integer) cur[0] + 1), ts, snip});
-                                    else cur[0] = (Integer) cur[0] + 1;
-                                }
-                            } catch (Exception rowEx) {
-                                DebugLog.log("poison feed row seq=" + row.optLong("modSeq", -1) + ": " + rowEx);
-                            }
-                        }
-                        if (items.length() >= PAGE)
-                            itemsBound = items.optJSONObject(items.length() - 1).optLong("modSeq", cursor);
-                    }
-                    if (markers != null) {
-                        for (int i = 0; i < markers.length(); i++) {
-                            JSONObject m = markers.optJSONObject(i);
-                            if (m == null) continue;
-                            String peer = m.optString("peer", "");
-                            long ts = m.optLong("lastReadTs", 0);
-                            if (notEmpty(peer) && ts > 0) {
-                                advanceReadTs(peer, ts);
-                                touched.add(peer);
-                            }
-                        }
-                        if (markers.length() >= PAGE)
-                            markersBound = markers.optJSONObject(markers.length() - 1).optLong("modSeq", cursor);
+                // pipelined drain: feedIo fetches + decodes ahead (at most
+                // PREFETCH pages buffered) while this thread applies in order.
+                // The cursor is still persisted only after a page is applied.
+                final java.util.concurrent.BlockingQueue<FeedPage> ready =
+                        new java.util.concurrent.ArrayBlockingQueue<>(PREFETCH);
+                final java.util.concurrent.atomic.AtomicBoolean stop =
+                        new java.util.concurrent.atomic.AtomicBoolean();
+                final long from = cursor;
+                feedIo.execute(() -> prefetch(base, from, ready, stop));
+                try {
+                    while (true) {
+                        FeedPage fp = ready.poll(PREFETCH_STALL_S, java.util.concurrent.TimeUnit.SECONDS);
+                        if (fp == null) throw new java.io.IOException("change-feed prefetch stalled");
+                        if (fp.error != null) throw fp.error;
+                        java.util.Set<String> touched = applyFeedPage(fp.page, reconcile);
+                        for (String p : touched) bus.reload(p);
+                        if (fp.next <= cursor) break;
+                        cursor = fp.next;
+                        if (!reconcile) prefs.edit().putLong("bridge_seq", cursor).apply();
+                        if (fp.last) break;
                     }
-                    // §2.2: advance ONLY to the last RETURNED row's modSeq — max_seq
-                    // is informational; the bridge reads items/markers/meta in
-                    // separate snapshots, so trusting it can skip rows forever
-                    long lastReturned = cursor;
-                    if (items != null)
-                        for (int i = 0; i < items.length(); i++) {
-                            JSONObject r2 = items.optJSONObject(i);
-                            if (r2 != null) lastReturned = Math.max(lastReturned, r2.optLong("modSeq", 0));
-                        }
-                    if (markers != null)
-                        for (int i = 0; i < markers.length(); i++) {
-                            JSONObject m2 = markers.optJSONObject(i);
-                            if (m2 != null) lastReturned = Math.max(lastReturned, m2.optLong("modSeq", 0));
-                        }
-                    long next = Math.min(Math.min(itemsBound, markersBound), lastReturned);
-                    for (String p : touched) notifyInserted(p);
-                    if (next <= cursor) break;
-                    cursor = next;
-                    if (!reconcile) prefs.edit().putLong("bridge_seq", cursor).apply();
-                    if (itemsBound == Long.MAX_VALUE && markersBound == Long.MAX_VALUE) break;
+                } finally {
+                    stop.set(true);
                 }
                 if (reconcile && cursor >= reconcileTarget) {
                     prefs.edit().putBoolean("reconcile_done", true)
@@ -929,7 +1233,7 @@ final class Repo {
                         if (e.getKey().equals(openPeer)) continue;
                         Object[] v = e.getValue();
                         notifier.onMissed(e.getKey(), (Integer) v[0], v[2] == null ? "" : (String) v[2]);
-                        prefs.edit().putLong("notified_ts_" + e.getKey(), (Long) v[1]).apply();
+                        peerState.advanceNotified(e.getKey(), (Long) v[1]);
                     }
                 }
                 missedIn = null;
@@ -939,6 +1243,182 @@ final class Repo {
         }
     }
 
+    /** Pages the prefetcher may hold decoded ahead of the applier. */
+    private static final int PREFETCH = 2;
+    /** A page that takes longer than this to arrive aborts the drain (the
+     *  cursor stays at the last applied page; the next catch-up resumes). */
+    private static final long PREFETCH_STALL_S = 60;
+
+    /** A decoded /v2/changes page plus the cursor it advances to — computed
+     *  from the page content alone, which is what lets the next fetch start
+     *  before this page is applied. */
+    private static final class FeedPage {
+        final Wire.ChangesPage page;
+        final long next;
+        final boolean last;
+        final Exception error;
+
+        FeedPage(Wire.ChangesPage page, long cursor, int limit) {
+            this.page = page;
+            this.error = null;
+            List<Wire.ChangeRow> items = page.items;
+            List<Wire.Marker> markers = page.markers;
+            // The two streams are independently limited. Coverage below
+            // a bound is only guaranteed per-stream: a full page covers
+            // up to its last row; a short page covers everything. The
+            // safe cursor is the MIN of the two bounds.
+            // With adaptive sizing a stream counts as possibly-truncated from
+            // PAGE rows up: should the bridge clamp a larger limit server-side,
+            // its short-looking page must not be read as "covers everything"
+            // (costs at most one extra empty request when the feed ran dry).
+            int full = Math.min(limit, PAGE);
+            long itemsBound = Long.MAX_VALUE, markersBound = Long.MAX_VALUE;
+            if (items != null && items.size() >= full)
+                itemsBound = seqOr(items.get(items.size() - 1).modSeq, cursor);
+            if (markers != null && markers.size() >= full)
+                markersBound = seqOr(markers.get(markers.size() - 1).modSeq, cursor);
+            // §2.2: advance ONLY to the last RETURNED row's modSeq — max_seq
+            // is informational; the bridge reads items/markers/meta in
+            // separate snapshots, so trusting it can skip rows forever
+            long lastReturned = cursor;
+            if (items != null)
+                for (Wire.ChangeRow r : items) lastReturned = Math.max(lastReturned, r.modSeq);
+            if (markers != null)
+                for (Wire.Marker m : markers) lastReturned = Math.max(lastReturned, m.modSeq);
+            next = Math.min(Math.min(itemsBound, markersBound), lastReturned);
+            last = next <= cursor
+                    || (itemsBound == Long.MAX_VALUE && markersBound == Long.MAX_VALUE);
+        }
+
+        FeedPage(Exception error) {
+            this.page = null; this.next = 0; this.last = true; this.error = error;
+        }
+    }
+
+    /** feedIo side of the pipeline. Always ends with a last or error page,
+     *  unless the applier already gave up (stop). */
+    private void prefetch(String base, long cursor, java.util.concurrent.BlockingQueue<FeedPage> out,
+                          java.util.concurrent.atomic.AtomicBoolean stop) {
+        try {
+            while (!stop.get()) {
+                int limit = pageSizer().limit();
+                long t0 = android.os.SystemClock.elapsedRealtime();
+                String resp;
+                try {
+                    resp = httpGet(base + "/v2/changes?since_seq=" + cursor + "&limit=" + limit);
+                } catch (java.net.SocketTimeoutException te) {
+                    if (pageSizer.onTimeout()) logPageSize("timeout");
+                    throw te;
+                }
+                long elapsed = android.os.SystemClock.elapsedRealtime() - t0;
+                Wire.ChangesPage page = Wire.decodePage(new java.io.StringReader(resp));
+                int rows = Math.max(page.items == null ? 0 : page.items.size(),
+                        page.markers == null ? 0 : page.markers.size());
+                if (pageSizer.onPage(limit, rows, resp.length(), elapsed))
+                    logPageSize(rows + " rows in " + elapsed + "ms");
+                FeedPage fp = new FeedPage(page, cursor, limit);
+                if (!handOff(out, fp, stop) || fp.last) return;
+                cursor = fp.next;
+            }
+        } catch (Exception e) {
+            handOff(out, new FeedPage(e), stop);
+        }
+    }
+
+    private PageSizer pageSizer; // feedIo only
+
+    private PageSizer pageSizer() {
+        if (pageSizer == null)
+            pageSizer = new PageSizer(prefs.getInt("feed_page_min", PAGE_MIN),
+                    prefs.getInt("feed_page_max", PAGE_MAX),
+                    prefs.getInt("feed_page", PAGE), PAGE_TARGET_MS, PAGE_MAX_BYTES);
+        return pageSizer;
+    }
+
+    private void logPageSize(String why) {
+        int limit = pageSizer.limit();
+        prefs.edit().putInt("feed_page", limit).apply(); // next catch-up starts here
+        DebugLog.log("feed page size → " + limit + " (" + why + ", ~"
+                + Math.round(pageSizer.bytesPerRow()) + " B/row)");
+    }
+
+    private static boolean handOff(java.util.concurrent.BlockingQueue<FeedPage> out, FeedPage fp,
+                                   java.util.concurrent.atomic.AtomicBoolean stop) {
+        try {
+            while (!stop.get())
+                if (out.offer(fp, 1, java.util.concurrent.TimeUnit.SECONDS)) return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /** Rows per writer command while applying a feed page: one transaction
+     *  each, and the longest a user action waits behind a catch-up. */
+    private static final int FEED_SLICE = 50;
+
+    /** Apply one page in feed order, as BULK slices on the writer (FIFO within
+     *  the lane keeps the order; user commands slot in between slices).
+     *  Blocks until the page is in. @return peers whose threads changed. */
+    private java.util.Set<String> applyFeedPage(Wire.ChangesPage o, boolean reconcile) throws Exception {
+        if (o.peerMap != null)
+            for (Map.Entry<String, String> e : o.peerMap.entrySet())
+                peerKeys.learn(e.getKey(), e.getValue());
+        java.util.Set<String> touched = new java.util.HashSet<>(); // writer-only until the gets below
+        if (missedIn == null) missedIn = new HashMap<>();
+        List<java.util.concurrent.Future<Void>> slices = new ArrayList<>();
+        List<Wire.ChangeRow> items = o.items != null ? o.items : new ArrayList<Wire.ChangeRow>();
+        for (int i = 0; i < items.size(); i += FEED_SLICE) {
+            List<Wire.ChangeRow> slice = items.subList(i, Math.min(items.size(), i + FEED_SLICE));
+            slices.add(writer.submit(DbWriter.Lane.BULK, () -> {
+                android.database.sqlite.SQLiteDatabase d = db.getWritableDatabase();
+                d.beginTransaction();
+                try {
+                    applyFeedRows(slice, reconcile, touched);
+                    d.setTransactionSuccessful();
+                } finally {
+                    d.endTransaction();
+                }
+                return null;
+            }));
+        }
+        for (java.util.concurrent.Future<Void> f : slices) f.get();
+        if (o.markers != null) {
+            for (Wire.Marker m : o.markers) {
+                if (notEmpty(m.peer) && m.lastReadTs > 0) {
+                    advanceReadTs(m.peer, m.lastReadTs);
+                    touched.add(m.peer);
+                }
+            }
+        }
+        return touched;
+    }
+
+    /** Writer thread; a poison row is logged and skipped. */
+    private void applyFeedRows(List<Wire.ChangeRow> rows, boolean reconcile, java.util.Set<String> touched) {
+        for (Wire.ChangeRow row : rows) {
+            try {
+                String peer = ingestBridgeRow(row, reconcile);
+                if (notEmpty(peer)) touched.add(peer);
+                if (notEmpty(peer) && !reconcile && "in".equals(row.dir)
+                        && row.serverTs > Math.max(
+                                peerState.notifiedTs(peer), peerState.readTs(peer))) {
+                    Object[] cur = missedIn.get(peer);
+                    long ts = row.serverTs;
+                    String snip = row.body;
+                    if (cur == null || ts > (Long) cur[1])
+                        missedIn.put(peer, new Object[]{(cur == null ? 1 : (Integer) cur[0] + 1), ts, snip});
+                    else cur[0] = (Integer) cur[0] + 1;
+                }
+            } catch (Exception rowEx) {
+                DebugLog.log("poison feed row seq=" + row.modSeq + ": " + rowEx);
+            }
+        }
+    }
+
+    /** Absent modSeq (-1 from Wire) falls back like optLong(key, fallback) did. */
+    private static long seqOr(long modSeq, long fallback) { return modSeq >= 0 ? modSeq : fallback; }
+
     private Map<String, Object[]> missedIn; // peer -> [count, maxTs, snippet]; guarded by catchUpLock
     private final java.util.Set<Long> reconcileConsumed = new java.util.HashSet<>(); // guarded by catchUpLock
 
@@ -946,100 +1426,97 @@ final class Repo {
      *  upsert; status=MAX; bridge body/edits/deletes adopt; local-only fields
      *  untouched. In reconcile mode (first drain after migration), legacy
      *  local-clock rows adopt the bridge's Signal ts instead of duplicating.
-     *  @return affected peerKey. */
-    private String ingestBridgeRow(JSONObject row, boolean reconcile) {
-        String peer = row.optString("peer", "");
-        String dir = row.optString("dir", "in");
+     *  Writer thread. @return affected peerKey. */
+    private String ingestBridgeRow(Wire.ChangeRow row, boolean reconcile) {
+        String peer = row.peer;
+        String dir = row.dir;
         if (isEmpty(peer)) return "";
-        long ts = row.optLong("serverTs", 0);
+        long ts = row.serverTs;
         if (ts <= 0) return "";
-        String kind = row.optString("kind", "text");
-        String body = safeOptString(row, "body");
-        String attId = safeOptString(row, "attId");
-        String mime = safeOptString(row, "mime");
-        int status = row.optInt("status", 1);
+        String kind = row.kind;
+        String body = row.body;
+        String attId = row.attId;
+        String mime = row.mime;
+        int status = row.status;
         if ("out".equals(dir) && peer.equals(selfNumber))
             status = Math.max(status, MessageDatabase.ST_DELIVERED); // self-thread: see ingestDataMessage
-        long quoteTs = row.optLong("quoteTs", 0);
-        String quoteText = row.isNull("quoteText") ? null : row.optString("quoteText", null);
-        String quoteAuthorRaw = PeerKeys.normalize(row.optString("quoteAuthor", ""));
+        long quoteTs = row.quoteTs;
+        String quoteText = row.quoteText;
+        String quoteAuthorRaw = PeerKeys.normalize(row.quoteAuthor);
         String quoteAuthor = isEmpty(quoteAuthorRaw) ? null
                 : (quoteAuthorRaw.equals(selfNumber) || quoteAuthorRaw.equals(selfUuid)) ? "me" : "peer";
 
-        if (ts <= prefs.getLong("thread_cleared_ts_" + peer, 0)) return ""; // user wiped this thread
+        if (ts <= peerState.clearedTs(peer)) return ""; // user wiped this thread
         boolean isText = "text".equals(kind);
-        synchronized (writeLock) {
-            if (row.optBoolean("deleted")) {
-                db.remoteDeleteByServerTs(peer, ts);
-                return peer;
-            }
-            // reconcile legs (§3.6 step 7): attachment first, then exact-text
-            if (reconcile) {
-                if (notEmpty(attId)) {
-                    // attachment leg (§3.6.7.ii): re-timestamp a legacy media row
-                    // found by att_id so the upsert below dedups instead of twinning
-                    long existing = db.findByAttachment(peer, dir, attId);
-                    if (existing >= 0) {
-                        android.database.sqlite.SQLiteDatabase d = db.getWritableDatabase();
-                        android.database.Cursor rc = d.rawQuery(
-                                "SELECT server_ts FROM messages WHERE id=?",
-                                new String[]{String.valueOf(existing)});
-                        long curTs = rc.moveToFirst() ? rc.getLong(0) : ts;
-                        rc.close();
-                        if (curTs != ts) {
-                            android.database.Cursor occ = d.rawQuery(
-                                    "SELECT id FROM messages WHERE peer_key=? AND dir=? AND server_ts=? AND att_id=?",
-                                    new String[]{peer, dir, String.valueOf(ts), attId});
-                            if (occ.moveToFirst()) {
-                                d.execSQL("DELETE FROM messages WHERE id=?", new Object[]{existing});
-                            } else {
-                                d.execSQL("UPDATE messages SET server_ts=? WHERE id=?",
-                                        new Object[]{ts, existing});
-                            }
-                            occ.close();
+        if (row.deleted) {
+            db.remoteDeleteByServerTs(peer, ts);
+            return peer;
+        }
+        // reconcile legs (§3.6 step 7): attachment first, then exact-text
+        if (reconcile) {
+            if (notEmpty(attId)) {
+                // attachment leg (§3.6.7.ii): re-timestamp a legacy media row
+                // found by att_id so the upsert below dedups instead of twinning
+                long existing = db.findByAttachment(peer, dir, attId);
+                if (existing >= 0) {
+                    android.database.sqlite.SQLiteDatabase d = db.getWritableDatabase();
+                    android.database.Cursor rc = d.rawQuery(
+                            "SELECT server_ts FROM messages WHERE id=?",
+                            new String[]{String.valueOf(existing)});
+                    long curTs = rc.moveToFirst() ? rc.getLong(0) : ts;
+                    rc.close();
+                    if (curTs != ts) {
+                        android.database.Cursor occ = d.rawQuery(
+                                "SELECT id FROM messages WHERE peer_key=? AND dir=? AND server_ts=? AND att_id=?",
+                                new String[]{peer, dir, String.valueOf(ts), attId});
+                        if (occ.moveToFirst()) {
+                            d.execSQL("DELETE FROM messages WHERE id=?", new Object[]{existing});
+                        } else {
+                            // display_ts follows: it is the thread order (v15)
+                            d.execSQL("UPDATE messages SET server_ts=?, display_ts=? WHERE id=?",
+                                    new Object[]{ts, ts, existing});
                         }
+                        occ.close();
                     }
-                } else if (isText && notEmpty(body)) {
-                    db.adoptTimestamp(peer, dir, body, ts, 30_000, reconcileConsumed);
                 }
+            } else if (isText && notEmpty(body)) {
+                db.adoptTimestamp(peer, dir, body, ts, 30_000, reconcileConsumed);
             }
-            // sent-attachment merge: our confirmed row may sit at att_id=''
-            if (!isText && notEmpty(attId) && "out".equals(dir)) {
-                adoptLocalAttachmentRow(peer, ts, attId, mime);
-                // fall through: identity now matches, upsert below raises status
-            }
-            db.upsertByIdentity(peer, dir, kind,
-                    isText ? body : "", attId, mime,
-                    isText ? null : emptyToNull(body), null,
-                    ts, status, quoteTs, quoteText, quoteAuthor,
-                    row.optString("author", ""));
-            long editedTs = row.optLong("editedTs", 0);
-            if (editedTs > 0 && isText) {
-                // idempotent: skip if this edit was already applied
-                java.util.List<MessageItem> cur = db.getMessages(peer);
-                boolean applied = false;
-                for (MessageItem it : cur)
-                    if (it.serverTs == ts && it.lastEditTs >= editedTs) { applied = true; break; }
-                if (!applied) db.applyEdit(peer, ts, body, editedTs);
-            }
-            JSONObject reactions = row.optJSONObject("reactions");
-            if (reactions != null) {
-                // bridge can't know reactions the app itself sent (F1: no echo,
-                // not yet reported) — merge, preferring the local "me" entry
-                try {
-                    JSONObject merged = new JSONObject();
-                    java.util.Iterator<String> it = reactions.keys();
-                    while (it.hasNext()) {
-                        String k = it.next();
-                        // bridge keys: "me" | "peer:<key>" → app keys: "me" | "peer"
-                        merged.put(k.startsWith("peer") ? "peer" : "me", reactions.optString(k));
-                    }
-                    JSONObject local = new JSONObject(db.getReactions(peer, ts));
-                    if (local.has("me")) merged.put("me", local.optString("me"));
-                    if (merged.length() > 0 || local.length() > 0)
-                        db.setReactions(peer, ts, merged.toString());
-                } catch (Exception ignored) {}
+        }
+        // sent-attachment merge: our confirmed row may sit at att_id=''
+        if (!isText && notEmpty(attId) && "out".equals(dir)) {
+            adoptLocalAttachmentRow(peer, ts, attId, mime);
+            // fall through: identity now matches, upsert below raises status
+        }
+        db.upsertByIdentity(peer, dir, kind,
+                isText ? body : "", attId, mime,
+                isText ? null : emptyToNull(body), null,
+                ts, status, quoteTs, quoteText, quoteAuthor,
+                row.author);
+        long editedTs = row.editedTs;
+        if (editedTs > 0 && isText) {
+            // idempotent: skip if this edit was already applied
+            java.util.List<MessageItem> cur = db.getMessages(peer);
+            boolean applied = false;
+            for (MessageItem it : cur)
+                if (it.serverTs == ts && it.lastEditTs >= editedTs) { applied = true; break; }
+            if (!applied) db.applyEdit(peer, ts, body, editedTs);
+        }
+        Map<String, String> reactions = row.reactions;
+        if (reactions != null) {
+            // bridge keys: "me" | "peer:<key>". A 1:1 thread has one other
+            // party, which live ingest keys "peer"; a group keeps each member
+            // apart under the same "peer:<key>" live ingest writes
+            boolean group = peer.startsWith("group:");
+            Map<String, String> theirs = new HashMap<>();
+            String bridgeMe = null;
+            for (Map.Entry<String, String> e : reactions.entrySet()) {
+                String k = e.getKey(), emoji = e.getValue();
+                if (isEmpty(emoji)) continue;
+                if (!k.startsWith("peer")) bridgeMe = emoji;
+                else theirs.put(group && k.startsWith("peer:") ? k : "peer", emoji);
             }
+            db.mergeBridgeReactions(peer, ts, theirs, bridgeMe);
         }
         return peer;
     }
@@ -0,0 +1,68 @@
+package com.example.signalberry;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * FTS4 index over message text and captions (external content: the words
+ * live in messages, the index stores only the doclists, keyed by row id).
+ *
+ * Kept in step by triggers on messages, so every writer is covered: an edit
+ * re-indexes the new text, and remote deletes / tombstones / expiry scrub
+ * text and caption to nothing, which drops the row out of every match.
+ * Receipts, reactions and report flags don't touch the index.
+ *
+ * Tokenizer is FTS "simple" — API 18 ships SQLite 3.7.11, before unicode61;
+ * case folds for ASCII only, and matchQuery folds the query the same way
+ * ("Über" is indexed as "Über", so its query term must keep the capital).
+ */
+final class SearchIndex {
+
+    static final String T = "messages_fts";
+
+    /** Shorter terms match too much to be worth a prefix scan. */
+    static final int MIN_TERM = 2;
+
+    private SearchIndex() {}
+
+    static void createTable(SQLiteDatabase d) {
+        d.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + T
+                + " USING fts4(content=\"messages\", text, caption)");
+        // external content: the old words must be removed while the row still holds them
+        d.execSQL("CREATE TRIGGER IF NOT EXISTS fts_bu BEFORE UPDATE OF text, caption ON messages BEGIN "
+                + "DELETE FROM " + T + " WHERE docid=OLD.id; END");
+        d.execSQL("CREATE TRIGGER IF NOT EXISTS fts_bd BEFORE DELETE ON messages BEGIN "
+                + "DELETE FROM " + T + " WHERE docid=OLD.id; END");
+        d.execSQL("CREATE TRIGGER IF NOT EXISTS fts_au AFTER UPDATE OF text, caption ON messages BEGIN "
+                + "INSERT INTO " + T + "(docid, text, caption) VALUES (NEW.id, NEW.text, NEW.caption); END");
+        d.execSQL("CREATE TRIGGER IF NOT EXISTS fts_ai AFTER INSERT ON messages BEGIN "
+                + "INSERT INTO " + T + "(docid, text, caption) VALUES (NEW.id, NEW.text, NEW.caption); END");
+    }
+
+    /** v13→v14: index what is already stored. */
+    static void rebuild(SQLiteDatabase d) {
+        d.execSQL("INSERT INTO " + T + "(" + T + ") VALUES ('rebuild')");
+    }
+
+    /** User input → FTS MATCH expression: every word must appear, each as a
+     *  word prefix ("sig ber" finds "Signal Berry", not "blueberry").
+     *  Operators and quotes in the input are stripped, never interpreted.
+     *  @return null if no usable term. */
+    static String matchQuery(String q) {
+        if (q == null) return null;
+        StringBuilder sb = new StringBuilder();
+        for (String w : asciiLower(q).split("[^\\p{L}\\p{N}]+")) {
+            if (w.length() < MIN_TERM) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(w).append('*');
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /** A-Z only, as the simple tokenizer folds. */
+    private static String asciiLower(String s) {
+        char[] c = s.toCharArray();
+        for (int i = 0; i < c.length; i++)
+            if (c[i] >= 'A' && c[i] <= 'Z') c[i] += 'a' - 'A';
+        return new String(c);
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.signalberry;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable outbox for everything the app sends to signal-api: new messages
+ * (text, media), edits and reactions. A job is a row in send_queue, written
+ * with the pending message row it drives, so a send survives the activity
+ * that started it and process death; Repo init resumes whatever is left.
+ *
+ * Dispatch: each peer is one lane, served strictly in id order with at most
+ * one job in flight, so a burst to one chat lands in the order typed.
+ * Different peers run side by side up to {@link #MAX_IN_FLIGHT}. A job that
+ * couldn't reach the server (or got a 5xx/408/429) backs off and retries,
+ * holding its lane; {@link #retryNow()} (socket reconnect) makes it due at
+ * once. A job the server rejected fails for good.
+ *
+ * Honest residual (REDESIGN §3.2): /v2/send has no idempotency token, so a
+ * send whose response was lost is sent again on retry.
+ */
+final class SendQueue {
+
+    static final String T = "send_queue";
+
+    static final String KIND_TEXT = "text", KIND_MEDIA = "media", KIND_EDIT = "edit",
+            KIND_REACTION = "reaction";
+
+    /** Jobs on the wire at once, across all peers. */
+    static final int MAX_IN_FLIGHT = 3;
+    /** Past this a job stops retrying and its message goes FAILED (tap to retry). */
+    static final long GIVE_UP_MS = 24 * 3600_000L;
+
+    enum Outcome { SENT, RETRY, REJECTED }
+
+    /** Performs jobs against signal-api; Repo supplies it. Worker threads. */
+    interface Runner {
+        Outcome run(Job j);
+        /** The job was rejected or gave up; it has left the queue. */
+        void failed(Job j);
+    }
+
+    static final class Job {
+        final long id;
+        final String peerKey, kind;
+        /** Pending-row nonce for text/media (server_ts = -nonce), else 0. */
+        final long nonce;
+        final String recipient;
+        final JSONObject spec;
+        final int attempts;
+        final long nextAt, created;
+
+        Job(long id, String peerKey, String kind, long nonce, String recipient,
+            JSONObject spec, int attempts, long nextAt, long created) {
+            this.id = id; this.peerKey = peerKey; this.kind = kind; this.nonce = nonce;
+            this.recipient = recipient; this.spec = spec; this.attempts = attempts;
+            this.nextAt = nextAt; this.created = created;
+        }
+    }
+
+    private final MessageDatabase db;
+    private final DbWriter writer;
+    private final Runner runner;
+    private final ScheduledExecutorService pool = Executors.newScheduledThreadPool(MAX_IN_FLIGHT);
+    private final Random rnd = new Random();
+    /** Lanes with a job in flight, and those jobs' ids (a re-key can move a
+     *  running job to another lane name). */
+    private final Set<String> busy = new HashSet<>();
+    private final Set<Long> inFlight = new HashSet<>();
+    private ScheduledFuture<?> wake;
+
+    SendQueue(MessageDatabase db, DbWriter writer, Runner runner) {
+        this.db = db;
+        this.writer = writer;
+        this.runner = runner;
+    }
+
+    static void createTable(SQLiteDatabase d) {
+        d.execSQL("CREATE TABLE IF NOT EXISTS " + T + "(" +
+                "id        INTEGER PRIMARY KEY AUTOINCREMENT," + // lane order
+                "peer_key  TEXT    NOT NULL," +
+                "kind      TEXT    NOT NULL," +
+                "nonce     INTEGER NOT NULL DEFAULT 0," +
+                "recipient TEXT    NOT NULL," +
+                "spec      TEXT    NOT NULL," +
+                "attempts  INTEGER NOT NULL DEFAULT 0," +
+                "next_at   INTEGER NOT NULL DEFAULT 0," +
+                "created   INTEGER NOT NULL)");
+        d.execSQL("CREATE INDEX IF NOT EXISTS idx_send_queue_nonce ON " + T + "(nonce)");
+    }
+
+    /** Queue a job. Writer thread only (see DbWriter); text/media callers
+     *  insert the pending row in the same transaction. */
+    void add(String peerKey, String kind, long nonce, String recipient, JSONObject spec) {
+        ContentValues v = new ContentValues();
+        v.put("peer_key", peerKey);
+        v.put("kind", kind);
+        v.put("nonce", nonce);
+        v.put("recipient", recipient == null ? "" : recipient);
+        v.put("spec", spec.toString());
+        v.put("created", System.currentTimeMillis());
+        db.getWritableDatabase().insert(T, null, v);
+    }
+
+    /** Connectivity is back: every waiting job is due now. Any thread. */
+    void retryNow() {
+        writer.execute(DbWriter.Lane.LIVE, () -> {
+            db.getWritableDatabase().execSQL("UPDATE " + T + " SET next_at=0 WHERE next_at>0");
+            pump();
+        });
+    }
+
+    /** Purge / thread delete: its queued sends go with it. Writer thread only. */
+    void clear(String peerKey) {
+        if (peerKey == null) db.getWritableDatabase().delete(T, null, null);
+        else db.getWritableDatabase().delete(T, "peer_key=?", new String[]{peerKey});
+    }
+
+    /** uuid-keyed lane re-keyed onto its number; order by id is preserved.
+     *  Writer thread only. */
+    void rekey(String fromPeer, String intoPeer) {
+        ContentValues v = new ContentValues();
+        v.put("peer_key", intoPeer);
+        db.getWritableDatabase().update(T, v, "peer_key=?", new String[]{fromPeer});
+    }
+
+    void shutdown() { pool.shutdownNow(); }
+
+    // ── dispatch ──────────────────────────────────────────────────────────────
+
+    /** Start every lane head that is due and fits under the cap; arm a timer
+     *  for the earliest one that isn't due yet. Cheap to call from anywhere. */
+    synchronized void pump() {
+        long now = System.currentTimeMillis();
+        long nextWake = 0;
+        Set<String> seen = new HashSet<>();
+        for (Job j : load()) {
+            if (!seen.add(j.peerKey)) continue; // behind its lane head
+            if (busy.contains(j.peerKey) || inFlight.contains(j.id)) continue;
+            if (j.nextAt > now) {
+                if (nextWake == 0 || j.nextAt < nextWake) nextWake = j.nextAt;
+                continue;
+            }
+            if (inFlight.size() >= MAX_IN_FLIGHT) break; // a finishing job pumps again
+            busy.add(j.peerKey);
+            inFlight.add(j.id);
+            try {
+                pool.execute(() -> runJob(j));
+            } catch (RejectedExecutionException e) { // shut down (logout)
+                busy.remove(j.peerKey);
+                inFlight.remove(j.id);
+                return;
+            }
+        }
+        if (wake != null) { wake.cancel(false); wake = null; }
+        if (nextWake > 0) {
+            try {
+                wake = pool.schedule(this::pump, nextWake - now, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ignored) {}
+        }
+    }
+
+    private void runJob(Job j) {
+        Outcome o;
+        try {
+            o = runner.run(j);
+        } catch (Exception e) {
+            DebugLog.log("send job " + j.kind + " crashed: " + e);
+            o = Outcome.RETRY;
+        }
+        try {
+            if (o == Outcome.RETRY && System.currentTimeMillis() - j.created > GIVE_UP_MS) {
+                DebugLog.log("send job " + j.kind + " to " + j.peerKey + " gave up after "
+                        + (j.attempts + 1) + " attempts");
+                o = Outcome.REJECTED;
+            }
+            // waited on: the finally's pump must not see the job still queued
+            if (o == Outcome.RETRY) {
+                int attempts = j.attempts + 1;
+                long delay = BridgeOutbox.backoffMs(attempts, rnd);
+                ContentValues v = new ContentValues();
+                v.put("attempts", attempts);
+                v.put("next_at", System.currentTimeMillis() + delay);
+                writer.call(DbWriter.Lane.LIVE, () ->
+                        db.getWritableDatabase().update(T, v, "id=?", new String[]{String.valueOf(j.id)}));
+                DebugLog.log("send " + j.kind + " to " + j.peerKey + ": retry in " + delay / 1000 + "s");
+            } else {
+                writer.call(DbWriter.Lane.LIVE, () ->
+                        db.getWritableDatabase().delete(T, "id=?", new String[]{String.valueOf(j.id)}));
+                if (o == Outcome.REJECTED) runner.failed(j);
+            }
+        } catch (Exception e) {
+            DebugLog.log("send queue bookkeeping failed: " + e);
+        } finally {
+            synchronized (this) { busy.remove(j.peerKey); inFlight.remove(j.id); }
+            pump();
+        }
+    }
+
+    private List<Job> load() {
+        List<Job> out = new ArrayList<>();
+        Cursor c = db.getReadableDatabase().rawQuery("SELECT id, peer_key, kind, nonce, "
+                + "recipient, spec, attempts, next_at, created FROM " + T + " ORDER BY id", null);
+        try {
+            while (c.moveToNext()) {
+                JSONObject spec;
+                try {
+                    spec = new JSONObject(c.getString(5));
+                } catch (Exception e) {
+                    spec = new JSONObject();
+                }
+                out.add(new Job(c.getLong(0), c.getString(1), c.getString(2), c.getLong(3),
+                        c.getString(4), spec, c.getInt(6), c.getLong(7), c.getLong(8)));
+            }
+        } finally {
+            c.close();
+        }
+        return out;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.signalberry;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled write statements, keyed by their SQL text. Each is prepared once
+ * against the helper's writable connection and then only re-bound per call —
+ * the hot write path (identity upsert, receipts, reactions, report flags)
+ * stops re-parsing the same SQL thousands of times during a catch-up.
+ *
+ * A statement's bindings live on the object, so bind+execute is done under
+ * the statement's own monitor. Owned by MessageDatabase; cleared on close()
+ * because a statement is tied to the connection that compiled it.
+ */
+final class StatementCache {
+
+    private final SQLiteOpenHelper helper;
+    private final Map<String, SQLiteStatement> compiled = new HashMap<>();
+    private SQLiteDatabase compiledOn;
+
+    StatementCache(SQLiteOpenHelper helper) { this.helper = helper; }
+
+    /** INSERT; @return the new row id, or -1 if nothing was inserted (OR IGNORE). */
+    long insert(String sql, Object... args) {
+        SQLiteStatement st = get(sql);
+        synchronized (st) {
+            bind(st, args);
+            return st.executeInsert();
+        }
+    }
+
+    /** UPDATE / DELETE; @return rows matched. */
+    int update(String sql, Object... args) {
+        SQLiteStatement st = get(sql);
+        synchronized (st) {
+            bind(st, args);
+            return st.executeUpdateDelete();
+        }
+    }
+
+    synchronized void clear() {
+        for (SQLiteStatement st : compiled.values()) {
+            try { st.close(); } catch (Exception ignored) {}
+        }
+        compiled.clear();
+        compiledOn = null;
+    }
+
+    private synchronized SQLiteStatement get(String sql) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        if (db != compiledOn) { // reopened since: the old handles are dead
+            clear();
+            compiledOn = db;
+        }
+        SQLiteStatement st = compiled.get(sql);
+        if (st == null) compiled.put(sql, st = db.compileStatement(sql));
+        return st;
+    }
+
+    private static void bind(SQLiteStatement st, Object[] args) {
+        st.clearBindings();
+        for (int i = 0; i < args.length; i++) {
+            Object a = args[i];
+            if (a == null) st.bindNull(i + 1);
+            else if (a instanceof String) st.bindString(i + 1, (String) a);
+            else if (a instanceof Long || a instanceof Integer) st.bindLong(i + 1, ((Number) a).longValue());
+            else if (a instanceof Boolean) st.bindLong(i + 1, (Boolean) a ? 1 : 0);
+            else if (a instanceof Double) st.bindDouble(i + 1, (Double) a);
+            else if (a instanceof byte[]) st.bindBlob(i + 1, (byte[]) a);
+            else st.bindString(i + 1, a.toString());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.signalberry;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conversation list, denormalised: one row per peer holding its newest
+ * visible message (last_id, last_ts = display ts) and its unread count, so
+ * the list is one walk down idx_threads_last instead of a GROUP BY over
+ * messages plus a COUNT per peer.
+ *
+ * Kept current by triggers on messages, i.e. inside whatever transaction did
+ * the write — every insert, confirm, receipt, delete, re-key and expiry path
+ * is covered without each one having to remember. Each trigger touches only
+ * the affected peer's row: unread moves by ±1, and the newest message is
+ * re-found (one probe down idx_peer_display) only when the current one stops
+ * qualifying. Snippet, direction and status are read through last_id, so an
+ * edit or receipt on the newest message needs no write here.
+ *
+ * read_ts mirrors PeerState's read watermark; Repo moves it (and recounts
+ * unread) on the writer thread (see DbWriter) whenever the watermark advances.
+ */
+final class Threads {
+
+    static final String T = "threads";
+
+    private Threads() {}
+
+    static void createTable(SQLiteDatabase d) {
+        for (String sql : ddl()) d.execSQL(sql);
+    }
+
+    /** v14→v15: the triggers now read display_ts; replace the v13 ones. */
+    static void recreateTriggers(SQLiteDatabase d) {
+        for (String t : new String[]{"threads_ins", "threads_upd", "threads_del"})
+            d.execSQL("DROP TRIGGER IF EXISTS " + t);
+        createTable(d);
+    }
+
+    /** v12→v13: build every peer's row from what is already stored. read_ts
+     *  starts from peer_state; Repo init re-syncs it against PeerState. */
+    static void backfill(SQLiteDatabase d) {
+        d.execSQL("INSERT OR IGNORE INTO " + T + "(peer_key) SELECT DISTINCT peer_key FROM messages");
+        d.execSQL("UPDATE " + T + " SET read_ts=COALESCE((SELECT read_ts FROM " + PeerState.T
+                + " p WHERE p.peer_key=" + T + ".peer_key),0)");
+        List<String> peers = new ArrayList<>();
+        Cursor c = d.rawQuery("SELECT peer_key FROM " + T, null);
+        try {
+            while (c.moveToNext()) peers.add(c.getString(0));
+        } finally {
+            c.close();
+        }
+        for (String p : peers) {
+            d.execSQL("UPDATE " + T + " SET last_id=" + newest("?") + " WHERE peer_key=?",
+                    new Object[]{p, p});
+            d.execSQL(refreshLastTs("?"), new Object[]{p});
+        }
+        d.execSQL("UPDATE " + T + " SET unread=(SELECT COUNT(*) FROM messages m WHERE m.peer_key="
+                + T + ".peer_key AND m.dir='in' AND m.server_ts>" + T + ".read_ts AND m.status>=0)");
+    }
+
+    static String[] ddl() {
+        String in = contributes("NEW"), out = contributes("OLD");
+        return new String[]{
+                "CREATE TABLE IF NOT EXISTS " + T + "(" +
+                        "peer_key TEXT PRIMARY KEY," +
+                        "last_id  INTEGER," +                    // newest visible message; NULL = none
+                        "last_ts  INTEGER NOT NULL DEFAULT 0," + // its display ts
+                        "read_ts  INTEGER NOT NULL DEFAULT 0," +
+                        "unread   INTEGER NOT NULL DEFAULT 0)",
+                "CREATE INDEX IF NOT EXISTS idx_threads_last ON " + T + "(last_ts)",
+
+                "CREATE TRIGGER IF NOT EXISTS threads_ins AFTER INSERT ON messages BEGIN " +
+                        "INSERT OR IGNORE INTO " + T + "(peer_key) VALUES (NEW.peer_key); " +
+                        "UPDATE " + T + " SET unread=unread+" + in + ", " +
+                        "last_id=CASE WHEN " + takesLead() + " THEN NEW.id ELSE last_id END, " +
+                        "last_ts=CASE WHEN " + takesLead() + " THEN NEW.display_ts ELSE last_ts END " +
+                        "WHERE peer_key=NEW.peer_key; " +
+                        "END",
+
+                // text/reactions/reported/... don't change the list row
+                "CREATE TRIGGER IF NOT EXISTS threads_upd AFTER UPDATE OF peer_key, dir, server_ts, display_ts, status " +
+                        "ON messages BEGIN " +
+                        "INSERT OR IGNORE INTO " + T + "(peer_key) VALUES (NEW.peer_key); " +
+                        "UPDATE " + T + " SET unread=unread-" + out + " WHERE peer_key=OLD.peer_key; " +
+                        "UPDATE " + T + " SET unread=unread+" + in + " WHERE peer_key=NEW.peer_key; " +
+                        // the newest row moved, hid or was re-timed: find the newest again
+                        "UPDATE " + T + " SET last_id=" + newest("OLD.peer_key") +
+                        " WHERE peer_key=OLD.peer_key AND last_id=OLD.id AND (NEW.status=" +
+                        MessageDatabase.ST_DELETED + " OR NEW.peer_key!=OLD.peer_key" +
+                        " OR NEW.display_ts!=OLD.display_ts); " +
+                        "UPDATE " + T + " SET last_id=NEW.id WHERE peer_key=NEW.peer_key AND NEW.status!=" +
+                        MessageDatabase.ST_DELETED + " AND (last_id IS NULL OR NEW.display_ts" +
+                        ">=COALESCE((SELECT display_ts FROM messages m WHERE m.id=" + T +
+                        ".last_id),0)); " +
+                        refreshLastTs("OLD.peer_key") + "; " +
+                        refreshLastTs("NEW.peer_key") + "; " +
+                        "END",
+
+                "CREATE TRIGGER IF NOT EXISTS threads_del AFTER DELETE ON messages BEGIN " +
+                        "UPDATE " + T + " SET unread=unread-" + out + " WHERE peer_key=OLD.peer_key; " +
+                        "UPDATE " + T + " SET last_id=" + newest("OLD.peer_key") +
+                        " WHERE peer_key=OLD.peer_key AND last_id=OLD.id; " +
+                        refreshLastTs("OLD.peer_key") + "; " +
+                        "END",
+        };
+    }
+
+    /** 1 when row r counts as unread against this thread's read_ts, else 0 —
+     *  the list's old per-peer COUNT, as a trigger term. */
+    private static String contributes(String r) {
+        return "(" + r + ".dir='in' AND " + r + ".status>=0 AND " + r + ".server_ts>read_ts)";
+    }
+
+    /** The new row outranks the thread's current newest. */
+    private static String takesLead() {
+        return "(NEW.status!=" + MessageDatabase.ST_DELETED + " AND (last_id IS NULL OR "
+                + "NEW.display_ts>=last_ts))";
+    }
+
+    /** Id of peer's newest visible message — one probe down
+     *  idx_peer_display. NULL when nothing is visible. */
+    private static String newest(String peer) {
+        return "(SELECT id FROM messages WHERE peer_key=" + peer + " AND status!="
+                + MessageDatabase.ST_DELETED + " ORDER BY display_ts DESC, id DESC LIMIT 1)";
+    }
+
+    private static String refreshLastTs(String peer) {
+        return "UPDATE " + T + " SET last_ts=COALESCE((SELECT display_ts FROM messages m "
+                + "WHERE m.id=" + T + ".last_id),0) WHERE peer_key=" + peer;
+    }
+}
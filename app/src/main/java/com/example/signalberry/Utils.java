@@ -2,17 +2,15 @@ package com.example.signalberry;
 
 import org.json.JSONObject;
 
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
 
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
 final class Utils {
 
     /** App accent (Signal blue). Single source for code; XML uses #2196F3. */
@@ -167,82 +165,39 @@ final class Utils {
         return "ws://" + httpBase;
     }
 
+    // Thin wrappers over the shared pooled client (see Http): 8s timeouts,
+    // auth headers, connection reuse.
+
     static int httpCodeGet(String urlStr) throws Exception {
-        HttpURLConnection c = (HttpURLConnection) new URL(urlStr).openConnection();
-        c.setConnectTimeout(8000);
-        c.setReadTimeout(8000);
-        c.setRequestMethod("GET");
-        Auth.apply(c);
-        int code = c.getResponseCode();
-        c.disconnect();
-        return code;
+        try (Response r = Http.client().newCall(Http.request(urlStr).get().build()).execute()) {
+            return r.code();
+        }
     }
 
     static String httpGet(String urlStr) throws Exception {
-        HttpURLConnection c = (HttpURLConnection) new URL(urlStr).openConnection();
-        c.setConnectTimeout(8000);
-        c.setReadTimeout(8000);
-        c.setRequestMethod("GET");
-        Auth.apply(c);
-        int code = c.getResponseCode();
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(
-                code >= 400 ? c.getErrorStream() : c.getInputStream()))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null) sb.append(line);
-            String out = sb.toString();
+        try (Response r = Http.client().newCall(Http.request(urlStr).get().build()).execute()) {
+            ResponseBody b = r.body();
+            String out = b == null ? "" : b.string();
             return out.isEmpty() ? "[]" : out;
-        } finally {
-            c.disconnect();
         }
     }
 
     static int httpPostJson(String urlStr, String json) throws Exception {
-        HttpURLConnection c = (HttpURLConnection) new URL(urlStr).openConnection();
-        c.setConnectTimeout(8000);
-        c.setReadTimeout(8000);
-        c.setRequestMethod("POST");
-        Auth.apply(c);
-        c.setRequestProperty("Content-Type", "application/json; charset=utf-8");
-        c.setDoOutput(true);
-        try (OutputStream os = new BufferedOutputStream(c.getOutputStream())) {
-            os.write(json.getBytes("UTF-8"));
-        }
-        int code = c.getResponseCode();
-        c.disconnect();
-        return code;
+        return httpJson(Http.request(urlStr).post(Http.json(json)));
     }
 
     static int httpPutJson(String urlStr, String json) throws Exception {
-        HttpURLConnection c = (HttpURLConnection) new URL(urlStr).openConnection();
-        c.setConnectTimeout(8000);
-        c.setReadTimeout(8000);
-        c.setRequestMethod("PUT");
-        Auth.apply(c);
-        c.setRequestProperty("Content-Type", "application/json; charset=utf-8");
-        c.setDoOutput(true);
-        try (OutputStream os = new BufferedOutputStream(c.getOutputStream())) {
-            os.write(json.getBytes("UTF-8"));
-        }
-        int code = c.getResponseCode();
-        c.disconnect();
-        return code;
+        return httpJson(Http.request(urlStr).put(Http.json(json)));
     }
 
     static int httpDeleteJson(String urlStr, String json) throws Exception {
-        HttpURLConnection c = (HttpURLConnection) new URL(urlStr).openConnection();
-        c.setConnectTimeout(8000);
-        c.setReadTimeout(8000);
-        c.setRequestMethod("DELETE");
-        Auth.apply(c);
-        c.setRequestProperty("Content-Type", "application/json; charset=utf-8");
-        c.setDoOutput(true);
-        try (OutputStream os = new BufferedOutputStream(c.getOutputStream())) {
-            os.write(json.getBytes("UTF-8"));
+        return httpJson(Http.request(urlStr).delete(Http.json(json)));
+    }
+
+    private static int httpJson(Request.Builder b) throws Exception {
+        try (Response r = Http.client().newCall(b.build()).execute()) {
+            return r.code();
         }
-        int code = c.getResponseCode();
-        c.disconnect();
-        return code;
     }
 
     // ── Signal contact display name ───────────────────────────────────────────
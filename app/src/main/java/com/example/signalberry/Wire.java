@@ -0,0 +1,509 @@
+package com.example.signalberry;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed decode of the two inbound wire shapes: signal-api WebSocket frames
+ * ({"envelope":{…}}) and bridge /v2/changes pages. Streams through JsonPull
+ * and keeps only the fields Repo reads — everything else is skipped without
+ * being materialised (a 200-row page used to build a full org.json tree).
+ *
+ * Field defaults mirror the org.json opt* calls they replaced: absent or null
+ * strings are "" unless noted, absent numbers 0, absent objects null.
+ */
+final class Wire {
+
+    private Wire() {}
+
+    // ── envelope records ──────────────────────────────────────────────────────
+
+    static final class Envelope {
+        String sourceNumber = "";
+        String sourceUuid = "";
+        long timestamp;
+        Msg dataMessage;
+        boolean hasSync;
+        Msg sentMessage;               // syncMessage.sentMessage
+        List<ReadMark> readMessages;   // syncMessage.readMessages; null if absent
+        Receipt receipt;
+        Typing typing;
+    }
+
+    /** dataMessage and syncMessage.sentMessage share this shape. */
+    static final class Msg {
+        String message = "";
+        long timestamp = -1;          // -1 = absent (sentMessage falls back to the envelope ts)
+        String destinationNumber = "";
+        String destination = "";
+        String destinationUuid = "";
+        String groupId;               // null = no groupInfo object; "" = groupInfo without id
+        Reaction reaction;
+        boolean isRemoteDelete;
+        long remoteDeleteTs;
+        boolean isEdit;
+        long editTargetTs;
+        Msg editData;                 // editMessage.dataMessage (the new revision)
+        List<Mention> mentions;
+        List<Att> attachments;
+        Quote quote;
+        int expiresInSeconds;
+
+        /** Edit envelopes nest the group marker inside the new revision. */
+        String effectiveGroupId() {
+            if (groupId != null) return groupId;
+            return editData != null ? editData.groupId : null;
+        }
+    }
+
+    static final class Reaction {
+        String emoji = "";
+        long targetSentTimestamp;
+        boolean isRemove;
+    }
+
+    static final class Mention {
+        int start = -1;
+        int length;
+        String name = "";
+        String number = "";
+    }
+
+    static final class Att {
+        String id = "";
+        String contentType = "";
+    }
+
+    static final class Quote {
+        long id;
+        String text = "";
+        String authorNumber = "";
+        String author = "";
+        String authorUuid = "";
+    }
+
+    static final class ReadMark {
+        String senderNumber = "";
+        String sender = "";
+        String senderUuid = "";
+        long timestamp;
+    }
+
+    static final class Receipt {
+        boolean isDelivery, isRead, isViewed;
+        long[] timestamps;            // null if absent
+    }
+
+    static final class Typing {
+        String action = "";
+        String groupId = "";
+    }
+
+    // ── change-feed records ───────────────────────────────────────────────────
+
+    static final class ChangeRow {
+        String peer = "";
+        String dir = "in";
+        String kind = "text";
+        String body = "";
+        String attId = "";
+        String mime = "";
+        String author = "";
+        String quoteText;             // null when absent or JSON null
+        String quoteAuthor = "";
+        long serverTs, quoteTs, editedTs;
+        long modSeq = -1;             // -1 = absent
+        int status = 1;
+        boolean deleted;
+        Map<String, String> reactions; // null if absent
+    }
+
+    static final class Marker {
+        String peer = "";
+        long lastReadTs;
+        long modSeq = -1;
+    }
+
+    static final class ChangesPage {
+        List<ChangeRow> items;        // null if absent
+        List<Marker> markers;         // null if absent
+        Map<String, String> peerMap;  // null if absent
+        long maxSeq = -1;
+    }
+
+    // ── decoding ──────────────────────────────────────────────────────────────
+
+    /** @return the frame's envelope, or null if it has none. */
+    static Envelope decodeFrame(String raw) throws IOException {
+        JsonPull r = new JsonPull(raw);
+        if (r.peek() != JsonPull.Token.BEGIN_OBJECT) return null;
+        Envelope env = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            if ("envelope".equals(r.nextName()) && r.peek() == JsonPull.Token.BEGIN_OBJECT)
+                env = readEnvelope(r);
+            else r.skipValue();
+        }
+        r.endObject();
+        return env;
+    }
+
+    static ChangesPage decodePage(Reader in) throws IOException {
+        JsonPull r = new JsonPull(in);
+        ChangesPage p = new ChangesPage();
+        if (r.peek() != JsonPull.Token.BEGIN_OBJECT) return p;
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            JsonPull.Token t = r.peek();
+            if ("items".equals(name) && t == JsonPull.Token.BEGIN_ARRAY) {
+                p.items = new ArrayList<>();
+                r.beginArray();
+                while (r.hasNext()) {
+                    if (r.peek() == JsonPull.Token.BEGIN_OBJECT) p.items.add(readChangeRow(r));
+                    else r.skipValue();
+                }
+                r.endArray();
+            } else if ("markers".equals(name) && t == JsonPull.Token.BEGIN_ARRAY) {
+                p.markers = new ArrayList<>();
+                r.beginArray();
+                while (r.hasNext()) {
+                    if (r.peek() == JsonPull.Token.BEGIN_OBJECT) p.markers.add(readMarker(r));
+                    else r.skipValue();
+                }
+                r.endArray();
+            } else if ("peerMap".equals(name) && t == JsonPull.Token.BEGIN_OBJECT) {
+                p.peerMap = readStringMap(r);
+            } else if ("max_seq".equals(name)) {
+                p.maxSeq = r.nextLong(-1);
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+        return p;
+    }
+
+    private static Envelope readEnvelope(JsonPull r) throws IOException {
+        Envelope e = new Envelope();
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            boolean obj = r.peek() == JsonPull.Token.BEGIN_OBJECT;
+            switch (name) {
+                case "sourceNumber": e.sourceNumber = r.nextString(""); break;
+                case "sourceUuid":   e.sourceUuid = r.nextString(""); break;
+                case "timestamp":    e.timestamp = r.nextLong(0); break;
+                case "dataMessage":
+                    if (obj) e.dataMessage = readMsg(r); else r.skipValue();
+                    break;
+                case "syncMessage":
+                    if (obj) readSync(r, e); else r.skipValue();
+                    break;
+                case "receiptMessage":
+                    if (obj) e.receipt = readReceipt(r); else r.skipValue();
+                    break;
+                case "typingMessage":
+                    if (obj) e.typing = readTyping(r); else r.skipValue();
+                    break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return e;
+    }
+
+    private static void readSync(JsonPull r, Envelope e) throws IOException {
+        e.hasSync = true;
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            JsonPull.Token t = r.peek();
+            if ("sentMessage".equals(name) && t == JsonPull.Token.BEGIN_OBJECT) {
+                e.sentMessage = readMsg(r);
+            } else if ("readMessages".equals(name) && t == JsonPull.Token.BEGIN_ARRAY) {
+                e.readMessages = new ArrayList<>();
+                r.beginArray();
+                while (r.hasNext()) {
+                    if (r.peek() != JsonPull.Token.BEGIN_OBJECT) { r.skipValue(); continue; }
+                    ReadMark m = new ReadMark();
+                    r.beginObject();
+                    while (r.hasNext()) {
+                        switch (r.nextName()) {
+                            case "senderNumber": m.senderNumber = r.nextString(""); break;
+                            case "sender":       m.sender = r.nextString(""); break;
+                            case "senderUuid":   m.senderUuid = r.nextString(""); break;
+                            case "timestamp":    m.timestamp = r.nextLong(0); break;
+                            default: r.skipValue();
+                        }
+                    }
+                    r.endObject();
+                    e.readMessages.add(m);
+                }
+                r.endArray();
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+    }
+
+    private static Msg readMsg(JsonPull r) throws IOException {
+        Msg m = new Msg();
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            JsonPull.Token t = r.peek();
+            boolean obj = t == JsonPull.Token.BEGIN_OBJECT;
+            boolean arr = t == JsonPull.Token.BEGIN_ARRAY;
+            switch (name) {
+                case "message":           m.message = r.nextString(""); break;
+                case "timestamp":         m.timestamp = r.nextLong(-1); break;
+                case "destinationNumber": m.destinationNumber = r.nextString(""); break;
+                case "destination":       m.destination = r.nextString(""); break;
+                case "destinationUuid":   m.destinationUuid = r.nextString(""); break;
+                case "expiresInSeconds":  m.expiresInSeconds = r.nextInt(0); break;
+                case "groupInfo":
+                    if (obj) m.groupId = readGroupId(r); else r.skipValue();
+                    break;
+                case "reaction":
+                    if (obj) m.reaction = readReaction(r); else r.skipValue();
+                    break;
+                case "remoteDelete":
+                    if (obj) {
+                        m.isRemoteDelete = true;
+                        r.beginObject();
+                        while (r.hasNext()) {
+                            if ("timestamp".equals(r.nextName())) m.remoteDeleteTs = r.nextLong(0);
+                            else r.skipValue();
+                        }
+                        r.endObject();
+                    } else r.skipValue();
+                    break;
+                case "editMessage":
+                    if (obj) {
+                        m.isEdit = true;
+                        r.beginObject();
+                        while (r.hasNext()) {
+                            String en = r.nextName();
+                            if ("targetSentTimestamp".equals(en)) m.editTargetTs = r.nextLong(0);
+                            else if ("dataMessage".equals(en) && r.peek() == JsonPull.Token.BEGIN_OBJECT)
+                                m.editData = readMsg(r);
+                            else r.skipValue();
+                        }
+                        r.endObject();
+                    } else r.skipValue();
+                    break;
+                case "mentions":
+                    if (arr) m.mentions = readMentions(r); else r.skipValue();
+                    break;
+                case "attachments":
+                    if (arr) m.attachments = readAtts(r); else r.skipValue();
+                    break;
+                case "quote":
+                    if (obj) m.quote = readQuote(r); else r.skipValue();
+                    break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return m;
+    }
+
+    private static String readGroupId(JsonPull r) throws IOException {
+        String gid = "";
+        r.beginObject();
+        while (r.hasNext()) {
+            if ("groupId".equals(r.nextName())) gid = r.nextString("");
+            else r.skipValue();
+        }
+        r.endObject();
+        return gid;
+    }
+
+    private static Reaction readReaction(JsonPull r) throws IOException {
+        Reaction x = new Reaction();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "emoji":               x.emoji = r.nextString(""); break;
+                case "targetSentTimestamp": x.targetSentTimestamp = r.nextLong(0); break;
+                case "isRemove":            x.isRemove = r.nextBoolean(); break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return x;
+    }
+
+    private static List<Mention> readMentions(JsonPull r) throws IOException {
+        List<Mention> out = new ArrayList<>();
+        r.beginArray();
+        while (r.hasNext()) {
+            if (r.peek() != JsonPull.Token.BEGIN_OBJECT) { r.skipValue(); out.add(null); continue; }
+            Mention x = new Mention();
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    case "start":  x.start = r.nextInt(-1); break;
+                    case "length": x.length = r.nextInt(0); break;
+                    case "name":   x.name = r.nextString(""); break;
+                    case "number": x.number = r.nextString(""); break;
+                    default: r.skipValue();
+                }
+            }
+            r.endObject();
+            out.add(x);
+        }
+        r.endArray();
+        return out;
+    }
+
+    private static List<Att> readAtts(JsonPull r) throws IOException {
+        List<Att> out = new ArrayList<>();
+        r.beginArray();
+        while (r.hasNext()) {
+            if (r.peek() != JsonPull.Token.BEGIN_OBJECT) { r.skipValue(); continue; }
+            Att x = new Att();
+            r.beginObject();
+            while (r.hasNext()) {
+                switch (r.nextName()) {
+                    case "id":          x.id = r.nextString(""); break;
+                    case "contentType": x.contentType = r.nextString(""); break;
+                    default: r.skipValue();
+                }
+            }
+            r.endObject();
+            out.add(x);
+        }
+        r.endArray();
+        return out;
+    }
+
+    private static Quote readQuote(JsonPull r) throws IOException {
+        Quote q = new Quote();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "id":           q.id = r.nextLong(0); break;
+                case "text":         q.text = r.nextString(""); break;
+                case "authorNumber": q.authorNumber = r.nextString(""); break;
+                case "author":       q.author = r.nextString(""); break;
+                case "authorUuid":   q.authorUuid = r.nextString(""); break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return q;
+    }
+
+    private static Receipt readReceipt(JsonPull r) throws IOException {
+        Receipt x = new Receipt();
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            switch (name) {
+                case "isDelivery": x.isDelivery = r.nextBoolean(); break;
+                case "isRead":     x.isRead = r.nextBoolean(); break;
+                case "isViewed":   x.isViewed = r.nextBoolean(); break;
+                case "timestamps":
+                    if (r.peek() != JsonPull.Token.BEGIN_ARRAY) { r.skipValue(); break; }
+                    long[] ts = new long[8];
+                    int n = 0;
+                    r.beginArray();
+                    while (r.hasNext()) {
+                        if (n == ts.length) ts = java.util.Arrays.copyOf(ts, n * 2);
+                        ts[n++] = r.nextLong(0);
+                    }
+                    r.endArray();
+                    x.timestamps = java.util.Arrays.copyOf(ts, n);
+                    break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return x;
+    }
+
+    private static Typing readTyping(JsonPull r) throws IOException {
+        Typing x = new Typing();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "action":  x.action = r.nextString(""); break;
+                case "groupId": x.groupId = r.nextString(""); break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return x;
+    }
+
+    private static ChangeRow readChangeRow(JsonPull r) throws IOException {
+        ChangeRow row = new ChangeRow();
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            switch (name) {
+                case "peer":        row.peer = r.nextString(""); break;
+                case "dir":         row.dir = r.nextString("in"); break;
+                case "kind":        row.kind = r.nextString("text"); break;
+                case "body":        row.body = r.nextString(""); break;
+                case "attId":       row.attId = r.nextString(""); break;
+                case "mime":        row.mime = r.nextString(""); break;
+                case "author":      row.author = r.nextString(""); break;
+                case "quoteText":   row.quoteText = r.nextString(); break;
+                case "quoteAuthor": row.quoteAuthor = r.nextString(""); break;
+                case "serverTs":    row.serverTs = r.nextLong(0); break;
+                case "quoteTs":     row.quoteTs = r.nextLong(0); break;
+                case "editedTs":    row.editedTs = r.nextLong(0); break;
+                case "modSeq":      row.modSeq = r.nextLong(-1); break;
+                case "status":      row.status = r.nextInt(1); break;
+                case "deleted":     row.deleted = readFlag(r); break;
+                case "reactions":
+                    if (r.peek() == JsonPull.Token.BEGIN_OBJECT) row.reactions = readStringMap(r);
+                    else r.skipValue();
+                    break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return row;
+    }
+
+    private static Marker readMarker(JsonPull r) throws IOException {
+        Marker m = new Marker();
+        r.beginObject();
+        while (r.hasNext()) {
+            switch (r.nextName()) {
+                case "peer":       m.peer = r.nextString(""); break;
+                case "lastReadTs": m.lastReadTs = r.nextLong(0); break;
+                case "modSeq":     m.modSeq = r.nextLong(-1); break;
+                default: r.skipValue();
+            }
+        }
+        r.endObject();
+        return m;
+    }
+
+    /** Bridge flags arrive as true/false or 0/1. */
+    private static boolean readFlag(JsonPull r) throws IOException {
+        if (r.peek() == JsonPull.Token.NUMBER) return r.nextLong(0) != 0;
+        return r.nextBoolean();
+    }
+
+    private static Map<String, String> readStringMap(JsonPull r) throws IOException {
+        Map<String, String> out = new HashMap<>();
+        r.beginObject();
+        while (r.hasNext()) {
+            String k = r.nextName();
+            out.put(k, r.nextString(""));
+        }
+        r.endObject();
+        return out;
+    }
+}
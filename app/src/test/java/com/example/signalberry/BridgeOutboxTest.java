@@ -0,0 +1,51 @@
+package com.example.signalberry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Outbox policy: retries back off exponentially inside a jittered band, and
+ * queued read receipts for one peer fold into one capped request.
+ */
+public class BridgeOutboxTest {
+
+    @Test public void backoffDoublesWithinJitterBandAndCaps() {
+        Random rnd = new Random(7);
+        for (int attempts = 1; attempts <= 30; attempts++) {
+            long d = Math.min(BridgeOutbox.BACKOFF_MAX_MS,
+                    BridgeOutbox.BACKOFF_BASE_MS << Math.min(attempts - 1, 20));
+            for (int i = 0; i < 50; i++) {
+                long b = BridgeOutbox.backoffMs(attempts, rnd);
+                assertTrue(b >= d / 2 && b < d);
+            }
+        }
+    }
+
+    @Test public void receiptsFoldIntoNewestCapped() throws Exception {
+        long[] first = new long[20], second = new long[20];
+        for (int i = 0; i < 20; i++) { first[i] = 100 + i; second[i] = 110 + i; }
+        JSONObject o = new JSONObject(BridgeOutbox.receiptBody(Arrays.asList(
+                row(1, "alice", first), row(2, "alice-new", second))));
+        assertEquals("alice-new", o.getString("recipient"));
+        JSONArray ts = o.getJSONArray("timestamps");
+        assertEquals(BridgeOutbox.MAX_RECEIPTS, ts.length()); // 30 distinct → newest 25
+        assertEquals(105, ts.getLong(0));
+        assertEquals(129, ts.getLong(ts.length() - 1));
+    }
+
+    private static BridgeOutbox.Row row(long id, String recipient, long[] ts) throws Exception {
+        JSONArray a = new JSONArray();
+        for (long t : ts) a.put(t);
+        JSONObject o = new JSONObject().put("peer", "15550001").put("recipient", recipient)
+                .put("timestamps", a);
+        return new BridgeOutbox.Row(id, BridgeOutbox.OP_RECEIPTS, "15550001", ts[ts.length - 1],
+                o.toString(), 0, 0);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.signalberry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Change events fold per frame: many writes → one scheduled dispatch with one
+ * Change per peer; held (in-transaction) writes stay invisible until release.
+ */
+public class ChangeBusTest {
+
+    private final List<Runnable> frames = new ArrayList<>();
+    private final ChangeBus bus = new ChangeBus(frames::add);
+    private final List<List<ChangeBus.Change>> seen = new ArrayList<>();
+    private final List<String> typing = new ArrayList<>();
+
+    {
+        bus.addListener(new ChangeBus.Listener() {
+            @Override public void onChanges(Collection<ChangeBus.Change> changes) {
+                seen.add(new ArrayList<>(changes));
+            }
+            @Override public void onEphemeral(String peerKey, String kind) {
+                typing.add(peerKey + ":" + kind);
+            }
+        });
+    }
+
+    @Test public void burstFoldsIntoOneDispatchPerFrame() {
+        for (int i = 1; i <= 500; i++) bus.inserted("a", i);
+        bus.changed("a", 42, false);
+        bus.changed("b", 7, false);
+        bus.ephemeral("b", "typing_started");
+        assertEquals(1, frames.size());
+
+        frames.remove(0).run();
+        assertEquals(1, seen.size());
+        List<ChangeBus.Change> cs = seen.get(0);
+        assertEquals(2, cs.size());
+        assertEquals("a", cs.get(0).peerKey);
+        assertEquals(500, cs.get(0).insertedIds.size());
+        assertTrue(cs.get(0).changedTs.contains(42L));
+        assertTrue(cs.get(0).summaryChanged);
+        assertFalse(cs.get(1).summaryChanged); // a receipt alone leaves the list alone
+        assertEquals("b:typing_started", typing.get(0));
+
+        bus.summary("a");
+        assertEquals(1, frames.size()); // next frame schedules afresh
+    }
+
+    @Test public void heldChangesWaitForRelease() {
+        bus.hold();
+        bus.inserted("a", 1);
+        bus.changed("a", 0, true); // unspecific → reload
+        assertTrue(frames.isEmpty());
+        bus.release();
+        assertEquals(1, frames.size());
+        frames.remove(0).run();
+        ChangeBus.Change c = seen.get(0).get(0);
+        assertTrue(c.reload);
+        assertTrue(c.insertedIds.contains(1L));
+    }
+
+    @Test public void ephemeralInsideAHoldIsDeliveredAtOnce() {
+        bus.hold();
+        bus.ephemeral("a", "typing_started"); // a batch with no row writes
+        bus.release();
+        assertEquals(1, frames.size());
+        frames.remove(0).run();
+        assertEquals("a:typing_started", typing.get(0));
+        assertTrue(frames.isEmpty());
+    }
+}
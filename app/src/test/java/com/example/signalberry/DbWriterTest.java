@@ -0,0 +1,58 @@
+package com.example.signalberry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+/**
+ * One writer thread: queued commands drain USER before LIVE before BULK and
+ * FIFO within a lane; a nested call from the writer runs inline.
+ */
+public class DbWriterTest {
+
+    private final DbWriter writer = new DbWriter();
+
+    @After public void tearDown() { writer.shutdown(); }
+
+    @Test public void lanesDrainInPriorityThenFifo() throws Exception {
+        CountDownLatch started = new CountDownLatch(1), gate = new CountDownLatch(1);
+        writer.submit(DbWriter.Lane.BULK, () -> { started.countDown(); gate.await(); return null; });
+        started.await(); // the writer is busy: everything below queues behind it
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        List<Future<?>> all = new ArrayList<>();
+        all.add(writer.submit(DbWriter.Lane.BULK, () -> order.add("bulk1")));
+        all.add(writer.submit(DbWriter.Lane.LIVE, () -> order.add("live")));
+        all.add(writer.submit(DbWriter.Lane.BULK, () -> order.add("bulk2")));
+        all.add(writer.submit(DbWriter.Lane.USER, () -> order.add("user1")));
+        all.add(writer.submit(DbWriter.Lane.USER, () -> order.add("user2")));
+        gate.countDown();
+        for (Future<?> f : all) f.get();
+        assertEquals(java.util.Arrays.asList("user1", "user2", "live", "bulk1", "bulk2"), order);
+    }
+
+    @Test public void nestedCallRunsInlineOnTheWriter() {
+        int v = writer.call(DbWriter.Lane.BULK, () -> {
+            assertTrue(writer.onWriter());
+            return writer.call(DbWriter.Lane.USER, () -> 41) + 1;
+        });
+        assertEquals(42, v);
+    }
+
+    @Test public void failureReachesTheCaller() {
+        try {
+            writer.call(DbWriter.Lane.USER, () -> { throw new IllegalArgumentException("boom"); });
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("boom", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.signalberry;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The windowed two-pointer pairing picks exactly what the old all-pairs scan
+ * picked: per local in order, the nearest unconsumed echo, earlier on a tie.
+ */
+public class ImageTwinsTest {
+
+    @Test public void nearestWithinWindowEachEchoOnce() {
+        long[] locals = {1_000, 1_500, 400_000};
+        long[] echoes = {1_200, 1_300, 200_000};
+        assertArrayEquals(new int[]{0, 1, -1}, ImageTwins.pair(locals, echoes, 120_000));
+    }
+
+    @Test public void tieGoesToTheEarlierEcho() {
+        assertArrayEquals(new int[]{0}, ImageTwins.pair(new long[]{100}, new long[]{50, 150}, 120));
+    }
+
+    @Test public void matchesAllPairsScan() {
+        Random rnd = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            long[] locals = sorted(rnd, rnd.nextInt(12));
+            long[] echoes = sorted(rnd, rnd.nextInt(12));
+            assertArrayEquals(allPairs(locals, echoes, 100), ImageTwins.pair(locals, echoes, 100));
+        }
+    }
+
+    private static long[] sorted(Random rnd, int n) {
+        long[] a = new long[n];
+        for (int i = 0; i < n; i++) a[i] = rnd.nextInt(600);
+        Arrays.sort(a);
+        return a;
+    }
+
+    /** The pre-rewrite nested loop. */
+    private static int[] allPairs(long[] locals, long[] echoes, long window) {
+        int[] pair = new int[locals.length];
+        boolean[] used = new boolean[echoes.length];
+        for (int i = 0; i < locals.length; i++) {
+            int best = -1;
+            long bestDelta = Long.MAX_VALUE;
+            for (int j = 0; j < echoes.length; j++) {
+                if (used[j]) continue;
+                long delta = Math.abs(locals[i] - echoes[j]);
+                if (delta <= window && delta < bestDelta) { best = j; bestDelta = delta; }
+            }
+            pair[i] = best;
+            if (best >= 0) used[best] = true;
+        }
+        return pair;
+    }
+}
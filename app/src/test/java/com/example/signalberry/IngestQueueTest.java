@@ -0,0 +1,143 @@
+package com.example.signalberry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Overflow spills to the journal without dropping or reordering frames, a
+ * batch leaves only when acked, the journal goes away once read dry, and a
+ * killed process's journal replays.
+ */
+public class IngestQueueTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test public void spillKeepsArrivalOrder() throws Exception {
+        File f = new File(tmp.getRoot(), "j");
+        IngestQueue q = new IngestQueue(f, 3);
+        for (int i = 0; i < 5; i++) q.offer("f" + i, i);
+        assertTrue(q.spilling());
+        assertEquals(5, q.depth());
+
+        List<String> got = new ArrayList<>(q.poll(4));
+        q.ack();
+        // memory has room again, but new frames still queue behind the journal
+        q.offer("f5", 5);
+        got.addAll(q.poll(10));
+        q.ack();
+        assertEquals(list("f0", "f1", "f2", "f3", "f4", "f5"), got);
+
+        assertTrue(q.poll(10).isEmpty());
+        assertFalse(q.spilling());
+        assertFalse(f.exists());
+        assertEquals(3, q.spilledTotal());
+    }
+
+    @Test public void depthAndAgeCoverMemoryThenJournal() throws Exception {
+        IngestQueue q = new IngestQueue(new File(tmp.getRoot(), "j"), 1);
+        assertEquals(0, q.oldestAgeMs(100));
+        q.offer("a", 10);
+        q.offer("b", 20);
+        q.offer("c", 30);
+        assertEquals(90, q.oldestAgeMs(100));
+        q.poll(1);
+        q.ack();
+        assertEquals(80, q.oldestAgeMs(100));
+        q.poll(1);
+        q.ack();
+        assertEquals(70, q.oldestAgeMs(100));
+        assertEquals(1, q.depth());
+    }
+
+    @Test public void recoversJournalAndDropsTornTail() throws Exception {
+        File f = new File(tmp.getRoot(), "j");
+        IngestQueue dead = new IngestQueue(f, 0);
+        dead.offer("x", 1);
+        dead.offer("y", 2);
+        dead.close();
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.setLength(raf.length() - 1); // killed mid-write of "y"
+        raf.close();
+
+        IngestQueue q = new IngestQueue(f, 8);
+        assertEquals(1, q.depth());
+        q.offer("z", 3);
+        assertEquals(list("x", "z"), q.poll(10));
+        q.ack();
+        assertFalse(f.exists());
+    }
+
+    @Test public void pollsRecoveredJournalBeforeAnyNewFrame() throws Exception {
+        File f = new File(tmp.getRoot(), "j");
+        IngestQueue dead = new IngestQueue(f, 0);
+        dead.offer("x", 1);
+        dead.offer("y", 2);
+        dead.close();
+
+        IngestQueue q = new IngestQueue(f, 8); // journal open for reading only
+        assertEquals(list("x", "y"), q.poll(10));
+    }
+
+    @Test public void journalOutlivesAnUnackedBatch() throws Exception {
+        File f = new File(tmp.getRoot(), "j");
+        IngestQueue q = new IngestQueue(f, 0);
+        q.offer("x", 1);
+        q.offer("y", 2);
+        assertEquals(list("x", "y"), q.poll(10));
+        assertEquals(list("x", "y"), q.poll(10)); // not acked: handed out again
+        q.close(); // killed before the batch committed
+
+        IngestQueue next = new IngestQueue(f, 8);
+        assertEquals(2, next.depth());
+        assertEquals(list("x", "y"), next.poll(10));
+        next.ack();
+        assertEquals(0, next.depth());
+        assertFalse(f.exists());
+    }
+
+    @Test public void unackedMemoryFramesComeBack() throws Exception {
+        IngestQueue q = new IngestQueue(new File(tmp.getRoot(), "j"), 8);
+        q.offer("a", 1);
+        q.offer("b", 2);
+        q.offer("c", 3);
+        assertEquals(list("a", "b"), q.poll(2));
+        assertEquals(list("a", "b"), q.poll(2)); // not acked: handed out again
+        assertEquals(3, q.depth());
+        q.ack();
+        assertEquals(list("c"), q.poll(10));
+        q.ack();
+        assertEquals(0, q.depth());
+    }
+
+    @Test public void failedBatchStaysAtTheHead() throws Exception {
+        File f = new File(tmp.getRoot(), "j");
+        IngestQueue q = new IngestQueue(f, 1);
+        q.offer("a", 1);
+        q.offer("b", 2); // journal
+        assertEquals(list("a", "b"), q.poll(10));
+        q.unpoll(); // the batch failed to commit
+        q.ack();    // a stray ack afterwards commits nothing
+        q.offer("c", 3);
+        assertEquals(3, q.depth());
+        assertEquals(list("a", "b", "c"), q.poll(10));
+        q.ack();
+        assertEquals(0, q.depth());
+        assertFalse(f.exists());
+    }
+
+    private static List<String> list(String... s) {
+        List<String> l = new ArrayList<>();
+        for (String x : s) l.add(x);
+        return l;
+    }
+}
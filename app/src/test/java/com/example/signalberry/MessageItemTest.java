@@ -0,0 +1,34 @@
+package com.example.signalberry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * The packed reactions column (Reactions.COLUMN) unpacks per reactor, group
+ * members staying apart.
+ */
+public class MessageItemTest {
+
+    private static final String US = String.valueOf(MessageItem.REACTION_UNIT);
+    private static final String RS = String.valueOf(MessageItem.REACTION_RECORD);
+
+    @Test public void unpacksEveryReactor() {
+        Map<String, String> m = MessageItem.unpackReactions(
+                "me" + US + "👍" + RS + "peer:123" + US + "❤️" + RS + "peer:456" + US + "😂");
+        assertEquals(3, m.size());
+        assertEquals("👍", m.get("me"));
+        assertEquals("❤️", m.get("peer:123"));
+        assertEquals("😂", m.get("peer:456"));
+    }
+
+    @Test public void noneIsNull() {
+        assertNull(MessageItem.unpackReactions(null));
+        assertNull(MessageItem.unpackReactions(""));
+        MessageItem it = new MessageItem("me", "hi", 1);
+        assertNull(it.reactions());
+    }
+}
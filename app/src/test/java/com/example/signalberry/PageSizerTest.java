@@ -0,0 +1,73 @@
+package com.example.signalberry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Change-feed page sizing: grows on fast full pages (never more than 2× a
+ * step), ignores short pages, backs off on slow links and timeouts, and
+ * always stays inside the configured bounds.
+ */
+public class PageSizerTest {
+
+    private static PageSizer sizer() {
+        return new PageSizer(50, 1000, 200, 3000, 512 * 1024);
+    }
+
+    @Test public void fastLanGrowsAtMostDoublePerPage() {
+        PageSizer s = sizer();
+        s.onPage(200, 200, 200 * 300, 80);   // one size seen: all of it counts per row
+        assertEquals(400, s.limit());
+        s.onPage(400, 400, 400 * 300, 120);
+        assertEquals(800, s.limit());
+        s.onPage(800, 800, 800 * 300, 200);
+        assertEquals(1000, s.limit());       // capped at max
+    }
+
+    @Test public void shortPageSaysNothingAboutLargerSizes() {
+        PageSizer s = sizer();
+        assertFalse(s.onPage(200, 12, 12 * 300, 60));
+        assertEquals(200, s.limit());
+    }
+
+    @Test public void slowLinkShrinksBelowTheTarget() {
+        PageSizer s = sizer();
+        s.onPage(200, 200, 200 * 300, 400);  // rtt floor 400ms
+        s.onPage(400, 400, 400 * 300, 7000); // ~16ms/row over a 2.6s budget
+        assertTrue("shrunk: " + s.limit(), s.limit() < 400);
+        assertTrue(s.limit() >= 50);
+    }
+
+    @Test public void slowFirstPageNeverGrows() {
+        PageSizer s = new PageSizer(50, 1000, 200, 3000, 512 * 1024);
+        s.onPage(200, 200, 60000, 7000);     // 7s against a 3s target
+        assertTrue("shrunk: " + s.limit(), s.limit() < 200);
+    }
+
+    @Test public void fastestPageIsNotItsOwnFloor() {
+        PageSizer s = sizer();
+        s.onPage(200, 200, 200 * 300, 2000); // 10ms/row → 300
+        assertEquals(300, s.limit());
+        s.onPage(300, 300, 300 * 300, 1500); // fastest yet, but still ~5-7ms/row
+        assertTrue("grew to " + s.limit(), s.limit() < 600);
+    }
+
+    @Test public void fatRowsAreCappedByBytes() {
+        PageSizer s = new PageSizer(50, 1000, 800, 3000, 512 * 1024);
+        s.onPage(800, 800, 800 * 4096L, 100); // 4 KB rows → 128 rows fit the cap
+        assertEquals(128, s.limit());
+    }
+
+    @Test public void timeoutHalvesDownToTheFloor() {
+        PageSizer s = sizer();
+        assertTrue(s.onTimeout());
+        assertEquals(100, s.limit());
+        s.onTimeout();
+        s.onTimeout();
+        assertEquals(50, s.limit());
+        assertFalse(s.onTimeout());
+    }
+}
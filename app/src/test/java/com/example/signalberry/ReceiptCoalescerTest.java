@@ -0,0 +1,38 @@
+package com.example.signalberry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Receipts collapse per (peer, ts) to the highest status, and a drain starts
+ * a fresh window.
+ */
+public class ReceiptCoalescerTest {
+
+    @Test public void collapsesToMaxStatusPerTarget() {
+        ReceiptCoalescer c = new ReceiptCoalescer();
+        assertEquals(1, c.add("a", 10, 3));
+        assertEquals(1, c.add("a", 10, 2)); // late delivered after read
+        assertEquals(2, c.add("a", 11, 2));
+        assertEquals(3, c.add("b", 10, 2));
+        assertEquals(3, c.add("b", 10, 3));
+
+        Map<String, Map<Long, Integer>> due = c.drain();
+        assertEquals(Integer.valueOf(3), due.get("a").get(10L));
+        assertEquals(Integer.valueOf(2), due.get("a").get(11L));
+        assertEquals(Integer.valueOf(3), due.get("b").get(10L));
+    }
+
+    @Test public void drainOpensANewWindow() {
+        ReceiptCoalescer c = new ReceiptCoalescer();
+        c.add("a", 1, 2);
+        c.drain();
+        assertEquals(0, c.size());
+        assertTrue(c.drain().isEmpty());
+        assertEquals(1, c.add("a", 1, 2));
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.signalberry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Search input becomes an all-words prefix MATCH; FTS syntax in the input is
+ * never passed through.
+ */
+public class SearchIndexTest {
+
+    @Test public void wordsBecomeLowercasePrefixTerms() {
+        assertEquals("sig* berry*", SearchIndex.matchQuery("  Sig BERRY "));
+        assertEquals("café* 42*", SearchIndex.matchQuery("Café, 42!"));
+    }
+
+    @Test public void onlyAsciiIsFolded() {
+        // the simple tokenizer indexes "Über" as-is; "über*" would miss it
+        assertEquals("Über* École* straße*", SearchIndex.matchQuery("Über École STRAßE"));
+    }
+
+    @Test public void operatorsAndShortTermsAreDropped() {
+        assertEquals("foo* or* bar*", SearchIndex.matchQuery("\"foo\" OR -bar*"));
+        assertEquals("hi*", SearchIndex.matchQuery("a hi b"));
+        assertNull(SearchIndex.matchQuery("x"));
+        assertNull(SearchIndex.matchQuery("\"*\""));
+        assertNull(SearchIndex.matchQuery(null));
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.signalberry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+/**
+ * Streaming decode of WebSocket frames and /v2/changes pages must pick the
+ * same values the org.json path did (string-or-number timestamps, null vs
+ * absent, nested edit group info). The benchmark decodes the same synthetic
+ * 200-row page both ways and prints time and allocation per page.
+ */
+public class WireTest {
+
+    @Test public void dataMessageWithQuoteAttachmentsAndMentions() throws Exception {
+        String raw = "{\"envelope\":{\"sourceNumber\":\"+15550001\",\"sourceUuid\":\"u-1\","
+                + "\"timestamp\":1700000000123,\"ignored\":{\"deep\":[1,2,{\"x\":\"y\"}]},"
+                + "\"dataMessage\":{\"message\":\"hi \\uFFFC \\\"there\\\"\",\"expiresInSeconds\":60,"
+                + "\"groupInfo\":{\"groupId\":\"g1\",\"type\":\"DELIVER\"},"
+                + "\"mentions\":[{\"start\":3,\"length\":1,\"name\":\"Ann\",\"number\":null}],"
+                + "\"attachments\":[{\"id\":\"a1\",\"contentType\":\"image/jpeg\",\"size\":12},5],"
+                + "\"quote\":{\"id\":\"1699999999999\",\"text\":null,\"authorNumber\":\"+1555\"}}},"
+                + "\"account\":\"+1555\"}";
+        Wire.Envelope e = Wire.decodeFrame(raw);
+        assertNotNull(e);
+        assertEquals("+15550001", e.sourceNumber);
+        assertEquals(1700000000123L, e.timestamp);
+        Wire.Msg m = e.dataMessage;
+        assertEquals("hi \uFFFC \"there\"", m.message);
+        assertEquals(60, m.expiresInSeconds);
+        assertEquals("g1", m.effectiveGroupId());
+        assertEquals("Ann", m.mentions.get(0).name);
+        assertEquals("", m.mentions.get(0).number);
+        assertEquals(1, m.attachments.size());
+        assertEquals("image/jpeg", m.attachments.get(0).contentType);
+        assertEquals(1699999999999L, m.quote.id);
+        assertEquals("", m.quote.text);
+        assertFalse(e.hasSync);
+    }
+
+    @Test public void editNestsGroupInfoInNewRevision() throws Exception {
+        Wire.Envelope e = Wire.decodeFrame("{\"envelope\":{\"dataMessage\":{\"editMessage\":"
+                + "{\"targetSentTimestamp\":42,\"dataMessage\":{\"message\":\"new\","
+                + "\"groupInfo\":{\"groupId\":\"\"}}}}}}");
+        Wire.Msg m = e.dataMessage;
+        assertTrue(m.isEdit);
+        assertEquals(42, m.editTargetTs);
+        assertEquals("new", m.editData.message);
+        assertEquals("", m.effectiveGroupId()); // present but empty: Repo drops it
+        assertNull(Wire.decodeFrame("{\"envelope\":{\"dataMessage\":{}}}").dataMessage.effectiveGroupId());
+    }
+
+    @Test public void syncReceiptAndTypingShapes() throws Exception {
+        Wire.Envelope sent = Wire.decodeFrame("{\"envelope\":{\"timestamp\":9,\"syncMessage\":"
+                + "{\"sentMessage\":{\"destination\":\"+1\",\"message\":\"x\"}}}}");
+        assertTrue(sent.hasSync);
+        assertEquals(-1, sent.sentMessage.timestamp); // absent: Repo falls back to envelope ts
+        assertEquals("+1", sent.sentMessage.destination);
+
+        Wire.Envelope read = Wire.decodeFrame("{\"envelope\":{\"syncMessage\":{\"readMessages\":"
+                + "[{\"sender\":\"+2\",\"timestamp\":77}]}}}");
+        assertEquals(77, read.readMessages.get(0).timestamp);
+
+        Wire.Envelope rc = Wire.decodeFrame("{\"envelope\":{\"receiptMessage\":"
+                + "{\"isDelivery\":true,\"timestamps\":[1,\"2\",3]}}}");
+        assertTrue(rc.receipt.isDelivery);
+        assertEquals(3, rc.receipt.timestamps.length);
+        assertEquals(2, rc.receipt.timestamps[1]);
+
+        Wire.Envelope ty = Wire.decodeFrame("{\"envelope\":{\"typingMessage\":{\"action\":\"STARTED\"}}}");
+        assertEquals("STARTED", ty.typing.action);
+        assertNull(Wire.decodeFrame("{\"account\":\"+1\"}"));
+    }
+
+    @Test public void changesPageMatchesOrgJson() throws Exception {
+        String page = syntheticPage(200);
+        Wire.ChangesPage p = Wire.decodePage(new StringReader(page));
+        JSONObject o = new JSONObject(page);
+        JSONArray items = o.getJSONArray("items");
+        assertEquals(items.length(), p.items.size());
+        for (int i = 0; i < items.length(); i++) {
+            JSONObject row = items.getJSONObject(i);
+            Wire.ChangeRow r = p.items.get(i);
+            assertEquals(row.optString("peer", ""), r.peer);
+            assertEquals(row.optLong("serverTs", 0), r.serverTs);
+            assertEquals(row.optLong("modSeq", -1), r.modSeq);
+            assertEquals(row.isNull("body") ? "" : row.optString("body", ""), r.body);
+            assertEquals(row.isNull("quoteText") ? null : row.optString("quoteText", null), r.quoteText);
+            assertEquals(row.optBoolean("deleted"), r.deleted);
+        }
+        assertEquals(1, p.markers.size());
+        assertEquals(555, p.markers.get(0).lastReadTs);
+        assertEquals("15550001", p.peerMap.get("u-1"));
+        assertEquals(1234, p.maxSeq);
+    }
+
+    @Test public void benchmarkAgainstOrgJson() throws Exception {
+        String page = syntheticPage(200);
+        for (int i = 0; i < 50; i++) { viaOrgJson(page); viaWire(page); } // warm-up
+
+        int rounds = 200;
+        long a0 = allocated(), t0 = System.nanoTime();
+        long sumJson = 0;
+        for (int i = 0; i < rounds; i++) sumJson += viaOrgJson(page);
+        long t1 = System.nanoTime(), a1 = allocated();
+        long sumWire = 0;
+        for (int i = 0; i < rounds; i++) sumWire += viaWire(page);
+        long t2 = System.nanoTime(), a2 = allocated();
+
+        assertEquals(sumJson, sumWire);
+        System.out.println(String.format(java.util.Locale.US,
+                "200-row page: org.json %.2f ms / %d KB, Wire %.2f ms / %d KB",
+                (t1 - t0) / 1e6 / rounds, (a1 - a0) / 1024 / rounds,
+                (t2 - t1) / 1e6 / rounds, (a2 - a1) / 1024 / rounds));
+    }
+
+    /** The fields Repo.catchUp/ingestBridgeRow read, via the tree path. */
+    private static long viaOrgJson(String page) throws Exception {
+        JSONObject o = new JSONObject(page);
+        JSONArray items = o.optJSONArray("items");
+        long acc = 0;
+        for (int i = 0; i < items.length(); i++) {
+            JSONObject row = items.optJSONObject(i);
+            acc += row.optLong("serverTs", 0) + row.optLong("modSeq", 0) + row.optInt("status", 1)
+                    + row.optString("peer", "").length() + row.optString("body", "").length()
+                    + row.optString("kind", "text").length();
+        }
+        return acc;
+    }
+
+    private static long viaWire(String page) throws Exception {
+        Wire.ChangesPage p = Wire.decodePage(new StringReader(page));
+        long acc = 0;
+        for (Wire.ChangeRow row : p.items)
+            acc += row.serverTs + row.modSeq + row.status
+                    + row.peer.length() + row.body.length() + row.kind.length();
+        return acc;
+    }
+
+    private static long allocated() {
+        java.lang.management.ThreadMXBean mx = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (mx instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        return 0;
+    }
+
+    /** Bridge-shaped rows, including fields the app never reads. */
+    private static String syntheticPage(int rows) throws Exception {
+        JSONArray items = new JSONArray();
+        for (int i = 0; i < rows; i++) {
+            JSONObject r = new JSONObject();
+            r.put("modSeq", 1000 + i);
+            r.put("peer", i % 3 == 0 ? "group:abc" + i % 7 : "1555000" + i % 11);
+            r.put("dir", i % 2 == 0 ? "in" : "out");
+            r.put("kind", i % 5 == 0 ? "image" : "text");
+            r.put("serverTs", 1700000000000L + i * 1000L);
+            r.put("body", "message body number " + i + " with some ordinary length to it");
+            r.put("status", 1 + i % 3);
+            if (i % 5 == 0) { r.put("attId", "att" + i); r.put("mime", "image/jpeg"); }
+            if (i % 4 == 0) { r.put("quoteTs", 1699999999000L); r.put("quoteText", JSONObject.NULL); }
+            if (i % 9 == 0) r.put("deleted", true);
+            r.put("author", "");
+            r.put("createdAt", "2026-06-11T10:00:00Z");
+            r.put("raw", new JSONObject().put("envelope", new JSONObject()
+                    .put("source", "+1555").put("sourceDevice", 1)
+                    .put("dataMessage", new JSONObject().put("message", "body " + i))));
+            items.put(r);
+        }
+        JSONObject page = new JSONObject();
+        page.put("items", items);
+        page.put("markers", new JSONArray().put(new JSONObject()
+                .put("peer", "15550001").put("lastReadTs", 555).put("modSeq", 1100)));
+        page.put("peerMap", new JSONObject().put("u-1", "15550001"));
+        page.put("max_seq", 1234);
+        return page.toString();
+    }
+}